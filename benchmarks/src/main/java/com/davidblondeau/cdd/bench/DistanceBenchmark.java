@@ -0,0 +1,73 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.NtSequenceImpl;
+import com.davidblondeau.cdd.na.RnaImpl;
+
+/**
+ * Distance between two sequences of the same length, such as an siRNA and a window of an mRNA
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+	@Param({"21", "500"})
+	public int length;
+
+	/**
+	 * string: NtSequenceImpl, packed: sequences built by the NaFactory
+	 */
+	@Param({"string", "packed"})
+	public String representation;
+
+	private NtSequence _seq1;
+	private NtSequence _seq2;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(SyntheticMRnas.SEED);
+		String seq1 = SyntheticMRnas.sequence(random, length);
+		// a few substitutions, as between an siRNA and a window that hybridizes well with it
+		char[] seq2 = seq1.toCharArray();
+		seq2[length / 3] = seq2[length / 3] == 'a' ? 'c' : 'a';
+		seq2[length / 2] = seq2[length / 2] == 'g' ? 'u' : 'g';
+		if ("string".equals(representation)) {
+			_seq1 = new NtSequenceImpl(seq1);
+			_seq2 = new RnaImpl(new String(seq2));
+		} else {
+			_seq1 = NaFactory.newRna(seq1);
+			_seq2 = NaFactory.newRna(new String(seq2));
+		}
+	}
+
+	@Benchmark
+	public int distanceTo() {
+		return _seq1.distanceTo(_seq2);
+	}
+
+	@Benchmark
+	public int boundedDistanceTo() {
+		return _seq1.distanceTo(_seq2, RnaImpl.MAX_DISTANCE_TO_HYBRIDIZE_WELL);
+	}
+}
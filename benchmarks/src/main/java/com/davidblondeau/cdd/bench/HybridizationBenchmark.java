@@ -0,0 +1,60 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Checking whether an siRNA of another mRNA hybridizes well with an mRNA. The siRNA does not, so that the whole
+ * mRNA is swept, as it is for most of the mRNAs during the off-target checks.
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridizationBenchmark {
+	@Param({"500", "2000", "20000"})
+	public int length;
+
+	/**
+	 * packed: mRNA built by the NaFactory, string: RnaImpl
+	 */
+	@Param({"packed", "string"})
+	public String representation;
+
+	private Rna _mRna;
+	private SiRna _siRna;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(SyntheticMRnas.SEED);
+		String seq = SyntheticMRnas.sequence(random, length);
+		_mRna = "packed".equals(representation) ? NaFactory.newRna(seq) : new RnaImpl(seq);
+		_siRna = new SiRna(NaFactory.newRna(SyntheticMRnas.sequence(random, 100)), 40, 21);
+	}
+
+	@Benchmark
+	public boolean hybridizeWellWith() {
+		return _mRna.hybridizeWellWith(_siRna);
+	}
+}
@@ -0,0 +1,77 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.na.WeightedHybridizationPolicy;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetStrategy;
+
+/**
+ * Checking whether one siRNA candidate can off-target the other mRNAs of a set. The candidates checked are the
+ * ones of the first mRNAs of the set, checked in turn, with the default mismatch count or with the seed and
+ * cleavage site policy (pruned on the exact seed match by the seed index).
+ *
+ * The brute force checks of the 20k transcripts sets take seconds each: restrict the runs with -p when needed.
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class OffTargetBenchmark {
+	static final int QUERY_MRNA_COUNT = 10;
+
+	@Param({"10", "1000", "20000"})
+	public int transcripts;
+
+	@Param({"BRUTE_FORCE", "SEED_INDEX", "NEIGHBORHOOD"})
+	public OffTargetStrategy strategy;
+
+	@Param({"MISMATCH_COUNT", "SEED_AND_CLEAVAGE_SITE"})
+	public String policy;
+
+	private Set<Rna> _mRnas;
+	private OffTargetEngine _engine;
+	private List<SiRna> _candidates;
+	private int _next;
+
+	@Setup
+	public void setUp() {
+		_mRnas = SyntheticMRnas.mRnas(SyntheticMRnas.SEED, transcripts);
+		HybridizationPolicy hybridizationPolicy = policy.equals("MISMATCH_COUNT") ? MismatchCountPolicy.DEFAULT : WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE;
+		_engine = strategy.newEngine(_mRnas, hybridizationPolicy);
+		_candidates = SyntheticMRnas.candidates(_mRnas, QUERY_MRNA_COUNT);
+	}
+
+	private SiRna nextCandidate() {
+		SiRna candidate = _candidates.get(_next);
+		_next = (_next + 1) % _candidates.size();
+		return candidate;
+	}
+
+	@Benchmark
+	public boolean canOffTarget() {
+		return _engine.canOffTarget(nextCandidate());
+	}
+}
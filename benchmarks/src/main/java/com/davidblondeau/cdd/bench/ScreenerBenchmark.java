@@ -0,0 +1,92 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.RnaiScreenerCreator;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.OffTargetStrategy;
+
+/**
+ * Creating the screener of a whole set of mRNAs, from the candidate search to the off-target checks.
+ *
+ * Only the seed index runs by default: the brute force takes hours on the larger sets and the neighborhood table of
+ * the 20k transcripts set does not fit in memory. Use -p strategy=... to compare them on the smaller sets.
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ScreenerBenchmark {
+	@Param({"10", "1000", "20000"})
+	public int transcripts;
+
+	@Param({"SEED_INDEX"})
+	public OffTargetStrategy strategy;
+
+	/**
+	 * 0 for a serial run, otherwise the parallelism of the executor
+	 */
+	@Param({"0", "4"})
+	public int parallelism;
+
+	/**
+	 * Number of isoforms of each gene, 1 for unrelated mRNAs
+	 */
+	@Param({"1"})
+	public int isoforms;
+
+	/**
+	 * Number of windows whose off-target hits are kept, 0 not to keep any
+	 */
+	@Param({"65536"})
+	public int memoCapacity;
+
+	private Set<Rna> _mRnas;
+	private RnaiScreenerCreator _creator;
+	private ForkJoinPool _pool;
+
+	@Setup
+	public void setUp() {
+		_mRnas = isoforms == 1 ? SyntheticMRnas.mRnas(SyntheticMRnas.SEED, transcripts) : SyntheticMRnas.isoforms(SyntheticMRnas.SEED, transcripts, isoforms);
+		_creator = new RnaiScreenerCreator();
+		_creator.setOffTargetStrategy(strategy);
+		_creator.setOffTargetMemoCapacity(memoCapacity);
+		if (parallelism > 0) {
+			_pool = new ForkJoinPool(parallelism);
+			_creator.setExecutor(_pool);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (_pool != null) {
+			_pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public Map<Rna, Set<SiRna>> createScreener() {
+		return _creator.createScreener(_mRnas);
+	}
+}
@@ -0,0 +1,53 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * SiRna.canOffTargetOtherMRnas, which sweeps every mRNA of the set. Same queries as OffTargetBenchmark.
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SiRnaBenchmark {
+	@Param({"10", "1000", "20000"})
+	public int transcripts;
+
+	private Set<Rna> _mRnas;
+	private List<SiRna> _candidates;
+	private int _next;
+
+	@Setup
+	public void setUp() {
+		_mRnas = SyntheticMRnas.mRnas(SyntheticMRnas.SEED, transcripts);
+		_candidates = SyntheticMRnas.candidates(_mRnas, OffTargetBenchmark.QUERY_MRNA_COUNT);
+	}
+
+	@Benchmark
+	public boolean canOffTargetOtherMRnas() {
+		SiRna candidate = _candidates.get(_next);
+		_next = (_next + 1) % _candidates.size();
+		return candidate.canOffTargetOtherMRnas(_mRnas);
+	}
+}
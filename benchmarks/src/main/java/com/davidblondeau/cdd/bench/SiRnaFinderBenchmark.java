@@ -0,0 +1,70 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Finding the siRNA candidates of one mRNA
+ *
+ * @author david
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SiRnaFinderBenchmark {
+	@Param({"500", "2000", "20000"})
+	public int length;
+
+	/**
+	 * packed: mRNA built by the NaFactory, string: RnaImpl
+	 */
+	@Param({"packed", "string"})
+	public String representation;
+
+	private SiRnaFinder _finder;
+	private SiRnaFinder _multiLengthFinder;
+	private Rna _mRna;
+
+	@Setup
+	public void setUp() {
+		String seq = SyntheticMRnas.sequence(new Random(SyntheticMRnas.SEED), length);
+		_mRna = "packed".equals(representation) ? NaFactory.newRna(seq) : new RnaImpl(seq);
+		_finder = new SiRnaFinder();
+		_multiLengthFinder = new SiRnaFinder(21, 22, 23);
+	}
+
+	@Benchmark
+	public Set<SiRna> findCandidates() {
+		return _finder.findCandidates(_mRna);
+	}
+
+	/**
+	 * The 21, 22 and 23 nt candidates in a single scan, to compare with 3 times findCandidates
+	 */
+	@Benchmark
+	public Set<SiRna> findCandidates21To23() {
+		return _multiLengthFinder.findCandidates(_mRna);
+	}
+}
@@ -0,0 +1,147 @@
+package com.davidblondeau.cdd.bench;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Generates reproducible sets of mRNAs for the benchmarks.
+ *
+ * The lengths are spread log-uniformly between a minimum and a maximum length. One mRNA out of SHARED_SEGMENT_RATE
+ * shares a segment, with a few substitutions, with an earlier mRNA of the set, so that some siRNAs do off-target
+ * other mRNAs as they would in a real transcriptome.
+ *
+ * The mRNAs can also be generated as isoforms: the transcripts of a gene are its sequence with one of its segments
+ * spliced out, so that they share most of their windows.
+ *
+ * @author david
+ */
+public final class SyntheticMRnas {
+	/**
+	 * Seed used by the benchmarks, so that every run measures the same inputs
+	 */
+	public static final long SEED = 20081117L;
+
+	public static final int MIN_LENGTH = 500;
+	public static final int MAX_LENGTH = 20000;
+
+	private static final int SHARED_SEGMENT_RATE = 4;
+	private static final int SHARED_SEGMENT_LENGTH = 200;
+	private static final int SHARED_SEGMENT_SUBSTITUTIONS = 4;
+	private static final char[] NTS = {'a', 'c', 'g', 'u'};
+
+	/**
+	 * Length of the segment spliced out of each isoform but the first
+	 */
+	private static final int SPLICED_SEGMENT_LENGTH = 150;
+
+	private SyntheticMRnas() {
+	}
+
+	/**
+	 * Returns the sequences of count mRNAs between MIN_LENGTH and MAX_LENGTH nt
+	 */
+	public static List<String> sequences(long seed, int count) {
+		return sequences(seed, count, MIN_LENGTH, MAX_LENGTH);
+	}
+
+	/**
+	 * Returns the sequences of count mRNAs whose lengths are between minLength and maxLength nt
+	 */
+	public static List<String> sequences(long seed, int count, int minLength, int maxLength) {
+		if (minLength < SHARED_SEGMENT_LENGTH || maxLength < minLength) throw new IllegalArgumentException("Invalid lengths: " + minLength + "-" + maxLength);
+
+		Random random = new Random(seed);
+		List<String> sequences = new ArrayList<String>(count);
+		double logRange = Math.log((double) maxLength / minLength);
+		for (int i = 0; i < count; ++i) {
+			int length = (int) Math.round(minLength * Math.exp(random.nextDouble() * logRange));
+			char[] seq = randomNts(random, length);
+			if (i > 0 && i % SHARED_SEGMENT_RATE == 0) {
+				copySegment(random, sequences.get(random.nextInt(i)), seq);
+			}
+			sequences.add(new String(seq));
+		}
+		return sequences;
+	}
+
+	/**
+	 * Returns count mRNAs between MIN_LENGTH and MAX_LENGTH nt, built by the NaFactory
+	 */
+	public static Set<Rna> mRnas(long seed, int count) {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		for (String seq : sequences(seed, count)) {
+			mRnas.add(NaFactory.newRna(seq));
+		}
+		return mRnas;
+	}
+
+	/**
+	 * Returns count mRNAs between MIN_LENGTH and MAX_LENGTH nt, grouped in genes of the given number of isoforms
+	 */
+	public static Set<Rna> isoforms(long seed, int count, int isoformsPerGene) {
+		if (isoformsPerGene < 1) throw new IllegalArgumentException("Invalid isoform count: " + isoformsPerGene);
+
+		Random random = new Random(seed);
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		List<String> genes = sequences(seed, (count + isoformsPerGene - 1) / isoformsPerGene);
+		for (int i = 0; mRnas.size() < count; ++i) {
+			String gene = genes.get(i / isoformsPerGene);
+			if (i % isoformsPerGene == 0) {
+				mRnas.add(NaFactory.newRna(gene));
+			} else {
+				int from = random.nextInt(gene.length() - SPLICED_SEGMENT_LENGTH + 1);
+				mRnas.add(NaFactory.newRna(gene.substring(0, from) + gene.substring(from + SPLICED_SEGMENT_LENGTH)));
+			}
+		}
+		return mRnas;
+	}
+
+	/**
+	 * Returns the siRNA candidates of the first mRNAs of a set
+	 */
+	public static List<SiRna> candidates(Set<Rna> mRnas, int mRnaCount) {
+		SiRnaFinder finder = new SiRnaFinder();
+		List<SiRna> candidates = new ArrayList<SiRna>();
+		Iterator<Rna> it = mRnas.iterator();
+		for (int i = 0; i < mRnaCount && it.hasNext(); ++i) {
+			candidates.addAll(finder.findCandidates(it.next()));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns a random sequence of the given length
+	 */
+	public static String sequence(Random random, int length) {
+		return new String(randomNts(random, length));
+	}
+
+	private static char[] randomNts(Random random, int length) {
+		char[] seq = new char[length];
+		for (int i = 0; i < length; ++i) {
+			seq[i] = NTS[random.nextInt(NTS.length)];
+		}
+		return seq;
+	}
+
+	/**
+	 * Copies a random segment of source to a random place of seq, with a few substitutions
+	 */
+	private static void copySegment(Random random, String source, char[] seq) {
+		int from = random.nextInt(source.length() - SHARED_SEGMENT_LENGTH + 1);
+		int to = random.nextInt(seq.length - SHARED_SEGMENT_LENGTH + 1);
+		source.getChars(from, from + SHARED_SEGMENT_LENGTH, seq, to);
+		for (int i = 0; i < SHARED_SEGMENT_SUBSTITUTIONS; ++i) {
+			seq[to + random.nextInt(SHARED_SEGMENT_LENGTH)] = NTS[random.nextInt(NTS.length)];
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.davidblondeau.cdd;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Writes the screener in a compact binary format, big-endian:
+ * - header: the int MAGIC and the short VERSION;
+ * - then one record per mRNA:
+ *   - the id of the mRNA: the byte ID_NAME followed by the int length and the UTF-8 bytes of its name, or, if it has no name,
+ *     the byte ID_SEQUENCE followed by its packed sequence;
+ *   - the byte number of siRNAs, then for each siRNA its int offset in the mRNA and the packed sequence it matches;
+ *   - the byte 0 if the mRNA has its 4 siRNAs, otherwise the ordinal of the reason of its shortfall plus 1 followed by
+ *     the int number of candidates and the int number of selected candidates.
+ *
+ * A packed sequence is its int length followed by its nt, 4 per byte, the first one in the lowest 2 bits: a=0, c=1, g=2, u=3.
+ *
+ * @author david
+ */
+public class BinaryScreenerSink implements ScreenerSink {
+	/**
+	 * "RSCR"
+	 */
+	public static final int MAGIC = 0x52534352;
+	public static final short VERSION = 1;
+
+	public static final byte ID_NAME = 0;
+	public static final byte ID_SEQUENCE = 1;
+
+	private static final int NTS_PER_BYTE = 4;
+
+	private DataOutputStream _out;
+
+	/**
+	 * @param out Closed by close()
+	 */
+	public BinaryScreenerSink(OutputStream out)
+		throws IOException
+	{
+		if (out == null) throw new IllegalArgumentException("Null output stream");
+		_out = new DataOutputStream(new BufferedOutputStream(out));
+		_out.writeInt(MAGIC);
+		_out.writeShort(VERSION);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerSink#write(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+	 */
+	public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		if (mRna.getName() != null) {
+			byte[] name = mRna.getName().getBytes(StandardCharsets.UTF_8);
+			_out.writeByte(ID_NAME);
+			_out.writeInt(name.length);
+			_out.write(name);
+		} else {
+			_out.writeByte(ID_SEQUENCE);
+			writeNts(mRna, 1, mRna.length());
+		}
+
+		_out.writeByte(siRnas.size());
+		for (SiRna siRna: siRnas) {
+			_out.writeInt(siRna.getMRnaOffset());
+			writeNts(mRna, siRna.getMRnaOffset() + 1, siRna.getMRnaOffset() + siRna.getLength());
+		}
+
+		if (shortfall == null) {
+			_out.writeByte(0);
+		} else {
+			_out.writeByte(shortfall.getReason().ordinal() + 1);
+			_out.writeInt(shortfall.getCandidateCount());
+			_out.writeInt(shortfall.getSelectedCount());
+		}
+		// so that the record can be read as soon as the siRNAs of the mRNA are selected
+		_out.flush();
+	}
+
+	/**
+	 * Writes the nt of a sequence packed, 4 per byte
+	 */
+	private void writeNts(NtSequence seq, int firstNt, int lastNt)
+		throws IOException
+	{
+		_out.writeInt(lastNt - firstNt + 1);
+		int packed = 0;
+		int count = 0;
+		for (int pos = firstNt; pos <= lastNt; ++pos) {
+			packed |= NtCodec.encode(seq.getNt(pos)) << (2 * count);
+			if (++count == NTS_PER_BYTE) {
+				_out.writeByte(packed);
+				packed = 0;
+				count = 0;
+			}
+		}
+		if (count > 0) {
+			_out.writeByte(packed);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+		throws IOException
+	{
+		_out.close();
+	}
+}
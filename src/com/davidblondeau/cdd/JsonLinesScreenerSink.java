@@ -0,0 +1,85 @@
+package com.davidblondeau.cdd;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Writes the screener as JSON Lines, one object per mRNA. For example:
+ * {"mrna":"NM_000014","sirnas":[{"offset":1,"sequence":"auguacguauugacugacuga"}],"shortfall":{"reason":"NOT_ENOUGH_CANDIDATES","candidates":1,"selected":1,"missing":3}}
+ * 
+ * The mRNA is identified by its name, by its sequence if it has none. The shortfall is null if the mRNA has its 4 siRNAs.
+ * 
+ * @author david
+ */
+public class JsonLinesScreenerSink extends TextScreenerSink {
+	
+	/**
+	 * @param writer Closed by close()
+	 */
+	public JsonLinesScreenerSink(Writer writer) {
+		super(writer);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.TextScreenerSink#writeRecord(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+	 */
+	protected void writeRecord(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		_writer.write("{\"mrna\":\"");
+		if (mRna.getName() != null) {
+			writeEscaped(mRna.getName());
+		} else {
+			writeId(mRna);
+		}
+		_writer.write("\",\"sirnas\":[");
+		boolean first = true;
+		for (SiRna siRna: siRnas) {
+			_writer.write(first ? "{\"offset\":" : ",{\"offset\":");
+			_writer.write(Integer.toString(siRna.getMRnaOffset()));
+			_writer.write(",\"sequence\":\"");
+			writeSequence(siRna);
+			_writer.write("\"}");
+			first = false;
+		}
+		_writer.write("],\"shortfall\":");
+		if (shortfall == null) {
+			_writer.write("null");
+		} else {
+			_writer.write("{\"reason\":\"");
+			_writer.write(shortfall.getReason().name());
+			_writer.write("\",\"candidates\":");
+			_writer.write(Integer.toString(shortfall.getCandidateCount()));
+			_writer.write(",\"selected\":");
+			_writer.write(Integer.toString(shortfall.getSelectedCount()));
+			_writer.write(",\"missing\":");
+			_writer.write(Integer.toString(shortfall.getMissingCount()));
+			_writer.write('}');
+		}
+		_writer.write("}\n");
+	}
+	
+	/**
+	 * Writes a string as the content of a JSON string
+	 */
+	private void writeEscaped(String s)
+		throws IOException
+	{
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				_writer.write('\\');
+				_writer.write(c);
+			} else if (c < 0x20) {
+				_writer.write(String.format("\\u%04x", (int) c));
+			} else {
+				_writer.write(c);
+			}
+		}
+	}
+}
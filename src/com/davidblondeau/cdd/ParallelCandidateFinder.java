@@ -0,0 +1,86 @@
+package com.davidblondeau.cdd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Finds the siRNA candidates of mRNAs in parallel.
+ *
+ * The mRNAs can be submitted as soon as they are read, so that the search overlaps the reading of the input.
+ * The searches are awaited in the order they complete, so that a shortfall can cancel the others right away.
+ *
+ * @author david
+ */
+class ParallelCandidateFinder {
+	private SiRnaFinder _siRnaFinder;
+	private List<Rna> _mRnas = new ArrayList<Rna>();
+	private List<Future<Set<SiRna>>> _futures = new ArrayList<Future<Set<SiRna>>>();
+	private CompletionService<Set<SiRna>> _completionService;
+
+	ParallelCandidateFinder(ExecutorService executor, SiRnaFinder siRnaFinder) {
+		_completionService = new ExecutorCompletionService<Set<SiRna>>(executor);
+		_siRnaFinder = siRnaFinder;
+	}
+
+	/**
+	 * Starts the search of the candidates of the given mRNA
+	 */
+	void submit(final Rna mRna) {
+		_mRnas.add(mRna);
+		_futures.add(_completionService.submit(new Callable<Set<SiRna>>() {
+			public Set<SiRna> call() {
+				Set<SiRna> candidates = _siRnaFinder.findCandidates(mRna);
+				RnaiScreenerCreator.hasEnoughCandidates(mRna, candidates);
+				return candidates;
+			}
+		}));
+	}
+
+	/**
+	 * Waits for the searches and returns the candidates of each mRNA, in the order the mRNAs were submitted.
+	 *
+	 * @param failFast Whether to cancel the searches and return null as soon as one of them finds less than 4
+	 * candidates. Otherwise the candidates are returned whether there are enough of them or not.
+	 */
+	Map<Rna,Set<SiRna>> await(boolean failFast)
+		throws InterruptedException, ExecutionException
+	{
+		Map<Rna,Set<SiRna>> siRnaCandidates = new LinkedHashMap<Rna,Set<SiRna>>();
+		try {
+			if (failFast) {
+				for (int i = 0; i < _futures.size(); ++i) {
+					if (_completionService.take().get().size() < RnaiScreenerCreator.SIRNA_SCREEN_SIZE) {
+						return null;
+					}
+				}
+			}
+			for (int i = 0; i < _futures.size(); ++i) {
+				siRnaCandidates.put(_mRnas.get(i), _futures.get(i).get());
+			}
+		} finally {
+			cancel();
+		}
+		return siRnaCandidates;
+	}
+
+	/**
+	 * Cancels the searches still running
+	 */
+	void cancel() {
+		for (Future<Set<SiRna>> future: _futures) {
+			future.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.davidblondeau.cdd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+
+/**
+ * Selects the off-targeting free siRNAs of several mRNAs, running the off-target checks in parallel.
+ *
+ * The checks of every mRNA are submitted to the executor up front, a few candidates at a time, so that the mRNAs
+ * and the candidates of each mRNA are checked in parallel. The results are then consumed in the order of the mRNAs
+ * and of the candidates: the first off-targeting free candidates by offset are selected, as the serial selection does.
+ * The checks still running for an mRNA are cancelled once its siRNAs are selected.
+ *
+ * @author david
+ */
+class ParallelOffTargetSelector {
+	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
+
+	/**
+	 * Number of checks submitted ahead for each mRNA
+	 */
+	private static final int CHECKS_IN_FLIGHT = 2 * RnaiScreenerCreator.SIRNA_SCREEN_SIZE;
+
+	private ExecutorService _executor;
+	private OffTargetEngine _offTargetEngine;
+	private List<Checks> _checks = new ArrayList<Checks>();
+
+	ParallelOffTargetSelector(ExecutorService executor, OffTargetEngine offTargetEngine) {
+		_executor = executor;
+		_offTargetEngine = offTargetEngine;
+	}
+
+	/**
+	 * Starts checking the given candidates of an mRNA.
+	 *
+	 * @return The index to pass to select(int) to get the siRNAs selected among these candidates
+	 */
+	int submit(Set<SiRna> candidates) {
+		Checks checks = new Checks(candidates.iterator());
+		checks.fill();
+		_checks.add(checks);
+		return _checks.size() - 1;
+	}
+
+	/**
+	 * Waits for the checks of the candidates submitted at the given index and returns the first 4 off-targeting free ones.
+	 *
+	 * The checks are released once selected: the siRNAs of each index can only be selected once.
+	 *
+	 * @return Less than 4 siRNAs if there are not enough off-targeting free candidates
+	 */
+	Set<SiRna> select(int index)
+		throws InterruptedException, ExecutionException
+	{
+		return _checks.set(index, null).select();
+	}
+
+	/**
+	 * Cancels all the checks still running
+	 */
+	void cancel() {
+		for (Checks checks: _checks) {
+			if (checks != null) {
+				checks.cancel();
+			}
+		}
+	}
+
+	/**
+	 * The checks of the candidates of one mRNA
+	 */
+	private class Checks {
+		private Iterator<SiRna> _candidates;
+		private Deque<SiRna> _pendingCandidates = new ArrayDeque<SiRna>();
+		private Deque<Future<Boolean>> _pendingChecks = new ArrayDeque<Future<Boolean>>();
+
+		Checks(Iterator<SiRna> candidates) {
+			_candidates = candidates;
+		}
+
+		/**
+		 * Submits the next candidates until enough checks are running
+		 */
+		void fill() {
+			while (_pendingChecks.size() < CHECKS_IN_FLIGHT && _candidates.hasNext()) {
+				final SiRna candidate = _candidates.next();
+				_pendingCandidates.add(candidate);
+				_pendingChecks.add(_executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return _offTargetEngine.canOffTarget(candidate);
+					}
+				}));
+			}
+		}
+
+		Set<SiRna> select()
+			throws InterruptedException, ExecutionException
+		{
+			Set<SiRna> offTargetingFreeCandidates = new LinkedHashSet<SiRna>();
+			try {
+				while (offTargetingFreeCandidates.size() < RnaiScreenerCreator.SIRNA_SCREEN_SIZE && !_pendingChecks.isEmpty()) {
+					SiRna candidate = _pendingCandidates.poll();
+					boolean offTargeting = _pendingChecks.poll().get();
+					if (!offTargeting) {
+						offTargetingFreeCandidates.add(candidate);
+					}
+					if (LOG.isLoggable(Level.FINE)) {
+						LOG.fine(candidate + (offTargeting ? " could" : " would not") + " off-target the other mRNAs");
+					}
+					fill();
+				}
+			} finally {
+				cancel();
+			}
+
+			if (offTargetingFreeCandidates.size() < RnaiScreenerCreator.SIRNA_SCREEN_SIZE && LOG.isLoggable(Level.FINE)) {
+				LOG.fine("Found only " + offTargetingFreeCandidates.size() + " siRNA(s) that would not off-target other mRNAs");
+			}
+			return offTargetingFreeCandidates;
+		}
+
+		void cancel() {
+			for (Future<Boolean> check: _pendingChecks) {
+				check.cancel(true);
+			}
+			_pendingChecks.clear();
+			_pendingCandidates.clear();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.davidblondeau.cdd;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Writes the screener in the format of RnaiScreenerCreator#createScreener(Reader, Writer): one line per mRNA of the form
+ * <mRNA name or sequence>|<offset>:<siRNA sequence>... followed by |# and the shortfall of the mRNA if it has one.
+ * 
+ * @author david
+ */
+public class PipeScreenerSink extends TextScreenerSink {
+	private boolean _first = true;
+	
+	/**
+	 * @param writer Closed by close()
+	 */
+	public PipeScreenerSink(Writer writer) {
+		super(writer);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.TextScreenerSink#writeRecord(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+	 */
+	protected void writeRecord(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		// no line separator after the last mRNA
+		if (!_first) {
+			_writer.newLine();
+		}
+		_first = false;
+		
+		writeId(mRna);
+		for (SiRna siRna: siRnas) {
+			_writer.write('|');
+			_writer.write(Integer.toString(siRna.getMRnaOffset()));
+			_writer.write(':');
+			writeSequence(siRna);
+		}
+		if (shortfall != null) {
+			_writer.write("|# ");
+			_writer.write(shortfall.toString());
+		}
+	}
+}
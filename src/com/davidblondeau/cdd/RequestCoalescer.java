@@ -0,0 +1,49 @@
+package com.davidblondeau.cdd;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the answer of identical requests once: a request arriving while an identical one is computed waits for 
+ * its answer instead of computing it again. The answers are not kept once computed.
+ * 
+ * @author david
+ */
+final class RequestCoalescer<K,V> {
+	private ConcurrentMap<K,FutureTask<V>> _running = new ConcurrentHashMap<K,FutureTask<V>>();
+	private AtomicLong _coalescedCount = new AtomicLong();
+	
+	/**
+	 * Returns the answer of the request of the given key, computed by the given computation unless the answer of an 
+	 * identical request is being computed
+	 * 
+	 * @throws ExecutionException If the computation failed, the same for every coalesced request
+	 */
+	V get(K key, Callable<V> computation)
+		throws InterruptedException, ExecutionException
+	{
+		FutureTask<V> task = new FutureTask<V>(computation);
+		FutureTask<V> running = _running.putIfAbsent(key, task);
+		if (running != null) {
+			_coalescedCount.incrementAndGet();
+			return running.get();
+		}
+		try {
+			task.run();
+			return task.get();
+		} finally {
+			_running.remove(key, task);
+		}
+	}
+	
+	/**
+	 * Returns the number of requests answered by the computation of an identical request
+	 */
+	long getCoalescedCount() {
+		return _coalescedCount.get();
+	}
+}
@@ -0,0 +1,146 @@
+package com.davidblondeau.cdd;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * An RNAi screener: the siRNAs selected for each of a set of mRNAs.
+ *
+ * The screener is complete when 4 siRNAs could be selected for every mRNA. Otherwise the mRNAs that fall short
+ * keep the siRNAs that could be selected, and their shortfall tells why the others are missing.
+ *
+ * @author david
+ */
+public class RnaiScreener {
+	/**
+	 * Why an mRNA has less than 4 siRNAs in the screener
+	 */
+	public static class Shortfall {
+		public enum Reason {
+			/**
+			 * Less than 4 subsequences of the mRNA satisfy the siRNA rules
+			 */
+			NOT_ENOUGH_CANDIDATES,
+			/**
+			 * The mRNA has enough candidates but too many of them could off-target the other mRNAs
+			 */
+			OFF_TARGETS
+		}
+
+		private Reason _reason;
+		private int _candidateCount;
+		private int _selectedCount;
+
+		/**
+		 * @param reason
+		 * @param candidateCount The number of siRNA candidates found for the mRNA
+		 * @param selectedCount The number of candidates that would not off-target the other mRNAs
+		 */
+		public Shortfall(Reason reason, int candidateCount, int selectedCount) {
+			if (reason == null) throw new IllegalArgumentException("Null reason");
+			_reason = reason;
+			_candidateCount = candidateCount;
+			_selectedCount = selectedCount;
+		}
+
+		public Reason getReason() {
+			return _reason;
+		}
+
+		public int getCandidateCount() {
+			return _candidateCount;
+		}
+
+		public int getSelectedCount() {
+			return _selectedCount;
+		}
+
+		/**
+		 * Returns the number of siRNAs missing to complete the screen of the mRNA
+		 */
+		public int getMissingCount() {
+			return RnaiScreenerCreator.SIRNA_SCREEN_SIZE - _selectedCount;
+		}
+
+		/**
+		 * Returns a sentence describing the shortfall, as written to the screener output
+		 */
+		@Override
+		public String toString() {
+			if (_reason == Reason.NOT_ENOUGH_CANDIDATES) {
+				return getMissingCount() + " siRNA(s) missing: only " + _candidateCount + " candidate(s) found";
+			}
+			return getMissingCount() + " siRNA(s) missing: only " + _selectedCount + " of " + _candidateCount + " candidate(s) would not off-target the other mRNAs";
+		}
+	}
+
+	private Map<Rna,Set<SiRna>> _siRnas = new LinkedHashMap<Rna,Set<SiRna>>();
+	private Map<Rna,Shortfall> _shortfalls = new LinkedHashMap<Rna,Shortfall>();
+
+	/**
+	 * Adds the siRNAs selected for an mRNA
+	 *
+	 * @param mRna
+	 * @param siRnas
+	 * @param shortfall Why there are less than 4 siRNAs, null if there are 4 of them
+	 */
+	void put(Rna mRna, Set<SiRna> siRnas, Shortfall shortfall) {
+		_siRnas.put(mRna, siRnas);
+		if (shortfall != null) {
+			_shortfalls.put(mRna, shortfall);
+		} else {
+			_shortfalls.remove(mRna);
+		}
+	}
+
+	/**
+	 * Returns the screened mRNAs, in the order they were given
+	 */
+	public Set<Rna> getMRnas() {
+		return Collections.unmodifiableSet(_siRnas.keySet());
+	}
+
+	/**
+	 * Returns the siRNAs selected for the given mRNA, less than 4 of them if the mRNA has a shortfall
+	 *
+	 * @return Null if the mRNA is not part of the screener
+	 */
+	public Set<SiRna> getSiRnas(Rna mRna) {
+		return _siRnas.get(mRna);
+	}
+
+	/**
+	 * Returns the siRNAs selected for each mRNA, in the order of the mRNAs
+	 */
+	public Map<Rna,Set<SiRna>> getSiRnas() {
+		return Collections.unmodifiableMap(_siRnas);
+	}
+
+	/**
+	 * Returns why the given mRNA has less than 4 siRNAs
+	 *
+	 * @return Null if the mRNA has its 4 siRNAs
+	 */
+	public Shortfall getShortfall(Rna mRna) {
+		return _shortfalls.get(mRna);
+	}
+
+	/**
+	 * Returns the shortfalls of the mRNAs that have less than 4 siRNAs, in the order of the mRNAs
+	 */
+	public Map<Rna,Shortfall> getShortfalls() {
+		return Collections.unmodifiableMap(_shortfalls);
+	}
+
+	/**
+	 * Returns true if every mRNA has its 4 siRNAs
+	 */
+	public boolean isComplete() {
+		return _shortfalls.isEmpty();
+	}
+}
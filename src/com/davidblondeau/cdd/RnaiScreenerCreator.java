@@ -1,24 +1,43 @@
 package com.davidblondeau.cdd;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
 import com.davidblondeau.cdd.na.NaFactory;
 import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaStore;
 import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.BackgroundOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.BruteForceOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.CompositeOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.MemoizingOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetStrategy;
+import com.davidblondeau.cdd.offtarget.SeedIndexOffTargetEngine;
 
 import java.util.logging.*;
 
+import javax.management.JMException;
+
 /**
  * Creates RNAi screeners.
  * 
@@ -33,13 +52,265 @@ public class RnaiScreenerCreator {
 	/**
 	 * Numbers of siRNAs expected for each mRNA.
 	 */
-	private static final int SIRNA_SCREEN_SIZE = 4;
+	static final int SIRNA_SCREEN_SIZE = 4;
 	
 	/**
 	 * Logger
 	 */
 	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
 	
+	/**
+	 * How the siRNAs are checked against the other mRNAs
+	 */
+	private OffTargetStrategy _offTargetStrategy = OffTargetStrategy.SEED_INDEX;
+	
+	/**
+	 * The lengths of the siRNAs, in the order of preference
+	 */
+	private int[] _siRnaLengths = {21};
+	
+	/**
+	 * Ranks the candidates of each mRNA to select the best ones. Null to select the first ones by offset.
+	 */
+	private SiRnaRanker _siRnaRanker;
+	
+	/**
+	 * How well an siRNA must hybridize with another mRNA to off-target it
+	 */
+	private HybridizationPolicy _hybridizationPolicy = MismatchCountPolicy.DEFAULT;
+	
+	/**
+	 * Runs the work on the mRNAs in parallel. Null to run it on the calling thread.
+	 */
+	private ExecutorService _executor;
+	
+	/**
+	 * File the seed index of the mRNAs is saved to and reused from. Null to build the off-target engine on each run.
+	 */
+	private File _offTargetIndexFile;
+	
+	/**
+	 * Transcripts the siRNAs must not off-target either, in addition to the screened mRNAs. Null if there are none.
+	 */
+	private OffTargetEngine _background;
+	
+	/**
+	 * Whether the sense strand of the siRNAs must not off-target the other mRNAs either
+	 */
+	private boolean _checkSenseStrand;
+	
+	/**
+	 * Number of distinct windows whose off-target hits are kept during a run, 0 not to keep any
+	 */
+	private int _offTargetMemoCapacity = MemoizingOffTargetEngine.DEFAULT_CAPACITY;
+	
+	/**
+	 * Counters and timers of the screener creation
+	 */
+	private ScreenerMetrics _metrics = new ScreenerMetrics();
+	
+	/**
+	 * Whether the mRNAs read from FASTA are kept in an RnaStore
+	 */
+	private boolean _offHeap;
+	
+	/**
+	 * Journal of the mRNAs written by the streaming creation, null not to keep any
+	 */
+	private ScreenerJournal _journal;
+	
+	/**
+	 * Returns how the siRNAs are checked against the other mRNAs
+	 */
+	public OffTargetStrategy getOffTargetStrategy() {
+		return _offTargetStrategy;
+	}
+
+	/**
+	 * Sets how the siRNAs are checked against the other mRNAs. Defaults to OffTargetStrategy.SEED_INDEX.
+	 */
+	public void setOffTargetStrategy(OffTargetStrategy offTargetStrategy) {
+		if (offTargetStrategy == null) throw new IllegalArgumentException("Null off-target strategy");
+		_offTargetStrategy = offTargetStrategy;
+	}
+	
+	/**
+	 * Returns the lengths of the siRNAs, in the order of preference
+	 */
+	public int[] getSiRnaLengths() {
+		return _siRnaLengths.clone();
+	}
+
+	/**
+	 * Sets the lengths of the siRNAs, in the order of preference. Defaults to 21 only.
+	 * With 21, 22 and 23 for instance, the 22 and 23 nt candidates are only selected for the mRNAs that do not have 
+	 * 4 good 21 nt siRNAs. The candidates of all the lengths are found in a single scan of each mRNA.
+	 */
+	public void setSiRnaLengths(int... siRnaLengths) {
+		// checks the lengths
+		_siRnaLengths = new SiRnaFinder(siRnaLengths).getLengths();
+	}
+	
+	/**
+	 * Returns the ranker selecting the best candidates of each mRNA, null if the first ones by offset are selected
+	 */
+	public SiRnaRanker getSiRnaRanker() {
+		return _siRnaRanker;
+	}
+
+	/**
+	 * Sets the ranker selecting the best candidates of each mRNA, for instance SiRnaRanker.DEFAULT. The selected 
+	 * siRNAs are then listed best first.
+	 * Null, the default, to select the first off-targeting free candidates by offset.
+	 */
+	public void setSiRnaRanker(SiRnaRanker siRnaRanker) {
+		_siRnaRanker = siRnaRanker;
+	}
+	
+	/**
+	 * Returns how well an siRNA must hybridize with another mRNA to off-target it
+	 */
+	public HybridizationPolicy getHybridizationPolicy() {
+		return _hybridizationPolicy;
+	}
+
+	/**
+	 * Sets how well an siRNA must hybridize with another mRNA to off-target it, for instance
+	 * WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE. Defaults to MismatchCountPolicy.DEFAULT: at most 2 mismatches.
+	 */
+	public void setHybridizationPolicy(HybridizationPolicy hybridizationPolicy) {
+		if (hybridizationPolicy == null) throw new IllegalArgumentException("Null hybridization policy");
+		_hybridizationPolicy = hybridizationPolicy;
+	}
+	
+	/**
+	 * Returns the executor the work on the mRNAs is run by, null if it is run on the calling thread.
+	 */
+	public ExecutorService getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * Sets the executor to run the work on the mRNAs in parallel, for instance a ForkJoinPool. 
+	 * Null, the default, to run it on the calling thread.
+	 * The executor is not shut down by this class.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		_executor = executor;
+	}
+	
+	/**
+	 * Returns the file the seed index of the mRNAs is saved to and reused from, null if there is none
+	 */
+	public File getOffTargetIndexFile() {
+		return _offTargetIndexFile;
+	}
+
+	/**
+	 * Sets the file the seed index of the mRNAs is saved to and reused from. When set, the off-target checks
+	 * use this index whatever the strategy. The index is opened from the file if it was built over the same mRNAs,
+	 * otherwise it is built and saved to the file.
+	 * Null, the default, to build the off-target engine of the strategy on each run.
+	 */
+	public void setOffTargetIndexFile(File offTargetIndexFile) {
+		_offTargetIndexFile = offTargetIndexFile;
+	}
+	
+	/**
+	 * Returns the engine over the background transcripts, null if there is none
+	 */
+	public OffTargetEngine getBackground() {
+		return _background;
+	}
+
+	/**
+	 * Sets an engine over background transcripts, for instance a BackgroundOffTargetEngine over a whole transcriptome.
+	 * The selected siRNAs must not off-target these transcripts either. They are checked against the background 
+	 * once they are known not to off-target the screened mRNAs, with the hybridization policy of the creator when the 
+	 * background is a BackgroundOffTargetEngine or a SeedIndexOffTargetEngine: other engines keep their own policy.
+	 * Null, the default, to only check the siRNAs against the screened mRNAs.
+	 */
+	public void setBackground(OffTargetEngine background) {
+		_background = background;
+	}
+	
+	/**
+	 * Returns true if the sense strand of the siRNAs is checked for off-targets as well as the antisense strand
+	 */
+	public boolean isCheckSenseStrand() {
+		return _checkSenseStrand;
+	}
+
+	/**
+	 * Sets whether the sense strand of the siRNAs is checked for off-targets as well as the antisense strand.
+	 * The sense strand can be loaded in RISC instead of the antisense strand and then silence the mRNAs it matches.
+	 * Defaults to false: only the antisense strand is checked.
+	 */
+	public void setCheckSenseStrand(boolean checkSenseStrand) {
+		_checkSenseStrand = checkSenseStrand;
+	}
+	
+	/**
+	 * Returns the number of distinct windows whose off-target hits are kept during a run
+	 */
+	public int getOffTargetMemoCapacity() {
+		return _offTargetMemoCapacity;
+	}
+
+	/**
+	 * Sets the number of distinct windows whose off-target hits are kept during a run, so that the candidates
+	 * shared by several mRNAs, such as isoforms, are only checked once (see MemoizingOffTargetEngine). 
+	 * Only applies to the seed index engines. Defaults to MemoizingOffTargetEngine.DEFAULT_CAPACITY, 0 not to keep any.
+	 */
+	public void setOffTargetMemoCapacity(int offTargetMemoCapacity) {
+		if (offTargetMemoCapacity < 0) throw new IllegalArgumentException("Invalid memo capacity: " + offTargetMemoCapacity);
+		_offTargetMemoCapacity = offTargetMemoCapacity;
+	}
+	
+	/**
+	 * Returns the counters and timers of the screener creation, accumulated over the runs
+	 */
+	public ScreenerMetrics getMetrics() {
+		return _metrics;
+	}
+
+	/**
+	 * Sets the counters and timers the screener creation adds to, for instance to share them between creators
+	 */
+	public void setMetrics(ScreenerMetrics metrics) {
+		if (metrics == null) throw new IllegalArgumentException("Null metrics");
+		_metrics = metrics;
+	}
+	
+	public boolean isOffHeap() {
+		return _offHeap;
+	}
+	
+	/**
+	 * Sets whether the mRNAs read by createScreenerFromFasta are kept off the heap, in an RnaStore, along with the 
+	 * index of their seeds. For sets of mRNAs the size of a transcriptome. Defaults to false.
+	 */
+	public void setOffHeap(boolean offHeap) {
+		_offHeap = offHeap;
+	}
+	
+	/**
+	 * Returns the journal of the mRNAs written by createScreener(Set, ScreenerSink) and createScreenerFromFasta, null if none
+	 */
+	public ScreenerJournal getJournal() {
+		return _journal;
+	}
+	
+	/**
+	 * Sets the journal the mRNAs written by createScreener(Set, ScreenerSink) and createScreenerFromFasta are recorded 
+	 * to as they are written. The mRNAs the journal already holds are written from the journal instead of being 
+	 * screened again, so that a run stopped midway can be resumed (see ScreenerJournal). The journal is not closed 
+	 * by the creator. Null, the default, not to journal the mRNAs.
+	 */
+	public void setJournal(ScreenerJournal journal) {
+		_journal = journal;
+	}
+	
 	/**
 	 * Outputs an RNAi screener to the given writer based on the mRNAs retrieved from the given reader.
 	 * 
@@ -56,8 +327,12 @@ public class RnaiScreenerCreator {
 	 * aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga|1:auguacguauugacugacuga|4:uacguauugacugacugaaua|10:uugacugacugaauacacuau|23:uacacuauacugacugacucu
 	 * aaugucuaugcucacugacugaauucacuauacucacugagucaa|1:augucuaugcucacugacuga|3:gucuaugcucacugacugaau|8:ugcucacugacugaauucacu|10:cucacugacugaauucacuau
 	 * 
+	 * The mRNAs for which 4 siRNAs cannot be found are still written with the siRNAs found, followed by 
+	 * |# and the reason why the others are missing. For example:
+	 * aauguauguacugacugacuga|1:auguauguacugacugacuga|# 3 siRNA(s) missing: only 1 candidate(s) found
+	 * 
 	 * @param reader
-	 * @param writer
+	 * @param writer Closed once written
 	 * @throws IOException
 	 */
 	public void createScreener(Reader reader, Writer writer) 
@@ -66,20 +341,145 @@ public class RnaiScreenerCreator {
 		if (reader == null) throw new IllegalArgumentException("Null writer");
 		if (writer == null) throw new IllegalArgumentException("Null reader");
 		
-		Set<Rna> mRnas = readMRnas(reader);
+		long start = _metrics.startPhase();
+		Set<Rna> mRnas;
+		try {
+			mRnas = readMRnas(reader);
+		} finally {
+			_metrics.endPhase(ScreenerMetrics.Phase.READ, start);
+		}
 
+		ScreenerSink sink = new PipeScreenerSink(writer);
+		try {
+			if (mRnas.isEmpty()) {
+				LOG.info("No valid mRNAs could be retrieved from input");
+				return;
+			}
+			createScreener(mRnas, sink);
+		} finally {
+			sink.close();
+		}
+	}
+	
+	/**
+	 * Writes an RNAi screener for the given mRNAs to the given sink, as complete as possible.
+	 * 
+	 * The siRNAs of each mRNA are written as soon as they are selected, in the order of the mRNAs, and are not kept
+	 * once written: the screener is never held whole in memory. The mRNAs are written as createRnaiScreener(Set)
+	 * would return them.
+	 * 
+	 * @param mRnas The set of mRNA to screen
+	 * @param sink Not closed
+	 * @throws IOException
+	 */
+	public void createScreener(Set<Rna> mRnas, ScreenerSink sink) 
+		throws IOException
+	{
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA list");
+		if (sink == null) throw new IllegalArgumentException("Null sink");
+		
+		writeScreener(findAllCandidateSiRnas(mRnas), mRnas, sink);
+	}
+	
+	/**
+	 * Outputs an RNAi screener to the given writer based on the mRNAs read from the given FASTA reader.
+	 * 
+	 * When an executor is set, the search of the siRNA candidates of each mRNA starts as soon as the mRNA is read.
+	 * The output is the same as the one of createScreener(Reader, Writer), except that the mRNAs that have a name 
+	 * are identified by their name instead of their sequence.
+	 * 
+	 * @param reader Closed once read
+	 * @param writer Closed once written
+	 * @throws IOException
+	 */
+	public void createScreenerFromFasta(FastaReader reader, Writer writer) 
+		throws IOException
+	{
+		if (writer == null) throw new IllegalArgumentException("Null writer");
+		
+		ScreenerSink sink = new PipeScreenerSink(writer);
+		try {
+			createScreenerFromFasta(reader, sink);
+		} finally {
+			sink.close();
+		}
+	}
+	
+	/**
+	 * Same as createScreenerFromFasta(FastaReader, Writer), the screener being written to the given sink as it is 
+	 * created (see createScreener(Set, ScreenerSink)).
+	 * 
+	 * @param reader Closed once read
+	 * @param sink Not closed
+	 * @throws IOException
+	 */
+	public void createScreenerFromFasta(FastaReader reader, ScreenerSink sink) 
+		throws IOException
+	{
+		if (reader == null) throw new IllegalArgumentException("Null reader");
+		if (sink == null) throw new IllegalArgumentException("Null sink");
+		
+		RnaStore store = _offHeap ? new RnaStore() : null;
+		Set<Rna> mRnas = store != null ? store : new LinkedHashSet<Rna>();
+		ParallelCandidateFinder candidateFinder = _executor == null ? null : new ParallelCandidateFinder(_executor, newSiRnaFinder());
+		long start = _metrics.startPhase();
+		try {
+			Rna mRna;
+			while ((mRna = reader.read()) != null) {
+				if (store != null) {
+					// the siRNAs must refer to the stored mRNA
+					mRna = store.append(mRna);
+				} else {
+					mRnas.add(mRna);
+				}
+				if (candidateFinder != null) {
+					candidateFinder.submit(mRna);
+				}
+			}
+		} catch (IOException ioe) {
+			if (candidateFinder != null) {
+				candidateFinder.cancel();
+			}
+			throw ioe;
+		} finally {
+			reader.close();
+			_metrics.endPhase(ScreenerMetrics.Phase.READ, start);
+		}
+		
 		if (mRnas.isEmpty()) {
 			LOG.info("No valid mRNAs could be retrieved from input");
 			return;
 		}
-		
-		Map<Rna,Set<SiRna>> screener = createScreener(mRnas);
-		if (screener == null) {
-			LOG.info("Could not find a good screener for the given mRNAs");
-			return;
+
+		Map<Rna,Set<SiRna>> candidates;
+		if (candidateFinder != null) {
+			start = _metrics.startPhase();
+			try {
+				candidates = awaitCandidates(candidateFinder, false);
+			} finally {
+				_metrics.endPhase(ScreenerMetrics.Phase.FIND, start);
+			}
+		} else {
+			candidates = findAllCandidateSiRnas(mRnas);
 		}
 		
-		writeScreener(screener, writer, mRnas);
+		writeScreener(candidates, mRnas, sink);
+	}
+	
+	/**
+	 * Selects the siRNAs of each mRNA and writes them to the sink, journaling them if there is a journal. The mRNAs 
+	 * the journal already holds are written from the journal. The sink is not closed.
+	 */
+	private void writeScreener(Map<Rna,Set<SiRna>> siRnaCandidates, Set<Rna> mRnas, ScreenerSink sink) 
+		throws IOException
+	{
+		RnaiScreener resumed = _journal == null ? new RnaiScreener() : _journal.resume(mRnas);
+		TimingSink timedSink = new TimingSink(_journal == null ? sink : _journal.journaling(sink), _metrics);
+		try {
+			selectOffTargetingFreeSiRnas(siRnaCandidates, mRnas, resumed, timedSink);
+		} finally {
+			timedSink.close();
+		}
 	}
 
 	/**
@@ -87,30 +487,335 @@ public class RnaiScreenerCreator {
 	 * 
 	 * @param mRnas The set of mRNA to screen
 	 * @return A set of 4 siRNAs for each mRNA. Each siRNA will not off-target the other mRNAs. Null if a screener cannot be created.
+	 * @see #createRnaiScreener(Set) to get the siRNAs found when the screener cannot be completed
 	 */
 	public Map<Rna,Set<SiRna>> createScreener(Set<Rna> mRnas) {
 		if (mRnas == null) throw new IllegalArgumentException("Null mRNA list");
-
-		Map<Rna,Set<SiRna>> rnaiScreener = findCandidateSiRnas(mRnas);
-		if (rnaiScreener == null) {
-			// not enough siRNA candidates to create a screener.
+		
+		// no off-target check when an mRNA has not enough candidates
+		Map<Rna,Set<SiRna>> siRnaCandidates = findCandidateSiRnas(mRnas);
+		if (siRnaCandidates == null) {
+			return null;
+		}
+		RnaiScreener rnaiScreener = selectOffTargetingFreeSiRnas(siRnaCandidates, mRnas);
+		if (!rnaiScreener.isComplete()) {
 			return null;
 		}
+		return new LinkedHashMap<Rna,Set<SiRna>>(rnaiScreener.getSiRnas());
+	}
+	
+	/**
+	 * Return an RNAi screener for the given mRNAs, as complete as possible.
+	 * 
+	 * Every mRNA is screened, even when some of them cannot get 4 siRNAs: these mRNAs get the siRNAs that could be 
+	 * found and a shortfall telling why the others are missing.
+	 * 
+	 * @param mRnas The set of mRNA to screen
+	 * @return At most 4 siRNAs for each mRNA. Each siRNA will not off-target the other mRNAs.
+	 */
+	public RnaiScreener createRnaiScreener(Set<Rna> mRnas) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA list");
+		
+		return selectOffTargetingFreeSiRnas(findAllCandidateSiRnas(mRnas), mRnas);
+	}
+	
+	/**
+	 * Updates a screener after mRNAs are added to or removed from the screened set.
+	 * 
+	 * Only the mRNAs affected by the change are screened again:
+	 * - the added mRNAs;
+	 * - the mRNAs whose siRNAs could off-target one of the added mRNAs. The siRNAs are only checked against the added mRNAs,
+	 * since they are known not to off-target the others;
+	 * - when mRNAs are removed, the mRNAs that fell short because some of their candidates could off-target other mRNAs, 
+	 * which may have been the removed ones.
+	 * The other mRNAs keep the siRNAs of the previous screener. When mRNAs are only added, the result is the same as 
+	 * screening the whole new set again.
+	 * 
+	 * @param previous The screener to update. Not modified.
+	 * @param addedMRnas The mRNAs to screen in addition to the ones of the previous screener. The ones already screened are screened again.
+	 * @param removedMRnas The mRNAs of the previous screener to remove from the screened set
+	 * @return The screener of the new set of mRNAs
+	 */
+	public RnaiScreener updateScreener(RnaiScreener previous, Set<Rna> addedMRnas, Set<Rna> removedMRnas) {
+		if (previous == null) throw new IllegalArgumentException("Null previous screener");
+		if (addedMRnas == null) throw new IllegalArgumentException("Null added mRNA list");
+		if (removedMRnas == null) throw new IllegalArgumentException("Null removed mRNA list");
+		
+		Set<Rna> mRnas = new LinkedHashSet<Rna>(previous.getMRnas());
+		mRnas.removeAll(removedMRnas);
+		mRnas.addAll(addedMRnas);
+		
+		// Only the added mRNAs can be off-targeted by the siRNAs of the previous screener
+		OffTargetEngine addedMRnasEngine = addedMRnas.isEmpty() ? null : checkingStrands(memoizing(_offTargetStrategy.newEngine(addedMRnas, _hybridizationPolicy)));
+		Set<Rna> affectedMRnas = new LinkedHashSet<Rna>();
+		for (Rna mRna: mRnas) {
+			RnaiScreener.Shortfall shortfall = previous.getShortfall(mRna);
+			if (addedMRnas.contains(mRna)) {
+				affectedMRnas.add(mRna);
+			} else if (!removedMRnas.isEmpty() && shortfall != null && shortfall.getSelectedCount() < shortfall.getCandidateCount()) {
+				affectedMRnas.add(mRna);
+			} else if (addedMRnasEngine != null && canOffTargetAny(previous.getSiRnas(mRna), addedMRnasEngine)) {
+				if (LOG.isLoggable(Level.FINE)) {
+					LOG.fine("The siRNAs of " + mRna + " have to be selected again");
+				}
+				affectedMRnas.add(mRna);
+			}
+		}
+		LOG.info("Screening " + affectedMRnas.size() + " of the " + mRnas.size() + " mRNAs again");
 		
-		// For each mRNA, find 4 siRNA candidates that do not hybridize well with the other mRNA
-		for(Rna mRna: mRnas) {
-			Set<SiRna> currentMRnaCandidates = rnaiScreener.get(mRna);
+		RnaiScreener affectedScreener = affectedMRnas.isEmpty() ? new RnaiScreener() : selectOffTargetingFreeSiRnas(findAllCandidateSiRnas(affectedMRnas), mRnas);
+		RnaiScreener rnaiScreener = new RnaiScreener();
+		for (Rna mRna: mRnas) {
+			RnaiScreener screener = affectedMRnas.contains(mRna) ? affectedScreener : previous;
+			rnaiScreener.put(mRna, screener.getSiRnas(mRna), screener.getShortfall(mRna));
+		}
+		return rnaiScreener;
+	}
+	
+	/**
+	 * Returns an engine whose canOffTarget(SiRna) checks both strands of the siRNAs if the sense strand must be checked,
+	 * the given engine otherwise
+	 */
+	private OffTargetEngine checkingStrands(final OffTargetEngine offTargetEngine) {
+		if (!_checkSenseStrand) {
+			return offTargetEngine;
+		}
+		return new OffTargetEngine() {
+			public boolean canOffTarget(SiRna siRna) {
+				return offTargetEngine.canEitherStrandOffTarget(siRna);
+			}
+			
+			public boolean canEitherStrandOffTarget(SiRna siRna) {
+				return offTargetEngine.canEitherStrandOffTarget(siRna);
+			}
+		};
+	}
+	
+	/**
+	 * Returns an engine counting the checks of the given engine and the candidates it finds off-targeting
+	 */
+	private OffTargetEngine counting(final OffTargetEngine offTargetEngine) {
+		final ScreenerMetrics metrics = _metrics;
+		return new OffTargetEngine() {
+			public boolean canOffTarget(SiRna siRna) {
+				boolean hit = offTargetEngine.canOffTarget(siRna);
+				metrics.addHybridizationCheck(hit);
+				return hit;
+			}
 			
-			Set<SiRna> offTargetingFreeCandidates = selectOffTargetingFreeSiRnas(currentMRnaCandidates, mRnas);
-			if (offTargetingFreeCandidates == null) {
-				// not enough siRNA that would not off target other mRNAs.
-				return null;
+			public boolean canEitherStrandOffTarget(SiRna siRna) {
+				boolean hit = offTargetEngine.canEitherStrandOffTarget(siRna);
+				metrics.addHybridizationCheck(hit);
+				return hit;
 			}
-			rnaiScreener.put(mRna, offTargetingFreeCandidates);
+		};
+	}
+	
+	/**
+	 * Returns an engine keeping the off-target hits of the windows checked by the given engine if it is a seed index 
+	 * and the memo is enabled, the given engine otherwise
+	 */
+	private OffTargetEngine memoizing(OffTargetEngine offTargetEngine) {
+		if (_offTargetMemoCapacity == 0 || !(offTargetEngine instanceof SeedIndexOffTargetEngine)) {
+			return offTargetEngine;
+		}
+		return new MemoizingOffTargetEngine((SeedIndexOffTargetEngine) offTargetEngine, _offTargetMemoCapacity);
+	}
+	
+	/**
+	 * Returns the given background checking the siRNAs with the hybridization policy of the creator, when it is a 
+	 * seed index or a BackgroundOffTargetEngine. Other engines are used as they are.
+	 */
+	private OffTargetEngine withHybridizationPolicy(OffTargetEngine background) {
+		if (background instanceof BackgroundOffTargetEngine) {
+			return ((BackgroundOffTargetEngine) background).withHybridizationPolicy(_hybridizationPolicy);
+		}
+		if (background instanceof SeedIndexOffTargetEngine) {
+			return ((SeedIndexOffTargetEngine) background).withHybridizationPolicy(_hybridizationPolicy);
+		}
+		return background;
+	}
+	
+	/**
+	 * Returns the engine checking the siRNAs against the given mRNAs, reusing the index file if one is set
+	 */
+	private OffTargetEngine newMRnasOffTargetEngine(Set<Rna> mRnas) {
+		if (_offTargetIndexFile == null) {
+			return _offTargetStrategy.newEngine(mRnas, _hybridizationPolicy);
 		}
 		
+		if (_offTargetIndexFile.exists()) {
+			try {
+				return SeedIndexOffTargetEngine.open(_offTargetIndexFile, mRnas).withHybridizationPolicy(_hybridizationPolicy);
+			} catch (IOException ioe) {
+				LOG.info("Rebuilding the seed index: " + ioe.getMessage());
+			}
+		}
+		SeedIndexOffTargetEngine offTargetEngine = new SeedIndexOffTargetEngine(mRnas, _hybridizationPolicy);
+		try {
+			offTargetEngine.save(_offTargetIndexFile);
+		} catch (IOException ioe) {
+			LOG.warning("Could not save the seed index to " + _offTargetIndexFile + ": " + ioe.getMessage());
+		}
+		return offTargetEngine;
+	}
+	
+	/**
+	 * Returns true if one of the given siRNAs can off-target the mRNAs of the given engine
+	 */
+	private static boolean canOffTargetAny(Set<SiRna> siRnas, OffTargetEngine offTargetEngine) {
+		for (SiRna siRna: siRnas) {
+			if (offTargetEngine.canOffTarget(siRna)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Selects, among the siRNA candidates of each mRNA, 4 of them that do not off-target the other mRNAs.
+	 * 
+	 * @param siRnaCandidates The siRNA candidates of each mRNA
+	 * @param mRnas The set of mRNA to screen
+	 * @return The screener, with a shortfall for the mRNAs that do not have enough candidates or off-targeting free siRNAs
+	 */
+	private RnaiScreener selectOffTargetingFreeSiRnas(Map<Rna,Set<SiRna>> siRnaCandidates, Set<Rna> mRnas) {
+		final RnaiScreener rnaiScreener = new RnaiScreener();
+		try {
+			// the sink is not closed, putting the siRNAs in the screener not being a WRITE phase
+			selectOffTargetingFreeSiRnas(siRnaCandidates, mRnas, new RnaiScreener(), new TimingSink(new ScreenerSink() {
+				public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall) {
+					rnaiScreener.put(mRna, siRnas, shortfall);
+				}
+				
+				public void close() {
+				}
+			}, _metrics));
+		} catch (IOException ioe) {
+			// the screener sink does not throw any
+			throw new IllegalStateException(ioe);
+		}
 		return rnaiScreener;
+	}
+	
+	/**
+	 * Same as selectOffTargetingFreeSiRnas(Map, Set), the siRNAs of each mRNA being written to the given sink as soon 
+	 * as they are selected, in the order of the mRNAs. The candidates of each mRNA are removed from the map once its 
+	 * siRNAs are written.
+	 * 
+	 * @param resumed The mRNAs whose siRNAs are already known: they are written as they are, without being checked again
+	 * @param sink The time spent writing to it is left out of the OFF_TARGET phase, being the WRITE phase
+	 */
+	private void selectOffTargetingFreeSiRnas(Map<Rna,Set<SiRna>> siRnaCandidates, Set<Rna> mRnas, RnaiScreener resumed, TimingSink sink) 
+		throws IOException
+	{
+		long start = _metrics.startPhase();
+		try {
+			// The mRNAs are indexed once for all the off-target checks
+			OffTargetEngine mRnasEngine = memoizing(newMRnasOffTargetEngine(mRnas));
+			OffTargetEngine offTargetEngine = counting(checkingStrands(_background == null ? mRnasEngine : new CompositeOffTargetEngine(mRnasEngine, withHybridizationPolicy(_background))));
+			
+			int mRnaCount = siRnaCandidates.size();
+			int shortfallCount;
+			if (_executor != null) {
+				shortfallCount = selectOffTargetingFreeSiRnasInParallel(siRnaCandidates, offTargetEngine, resumed, sink);
+			} else {
+				// For each mRNA, find 4 siRNA candidates that do not hybridize well with the other mRNA
+				shortfallCount = 0;
+				Iterator<Map.Entry<Rna,Set<SiRna>>> entries = siRnaCandidates.entrySet().iterator();
+				while (entries.hasNext()) {
+					Map.Entry<Rna,Set<SiRna>> entry = entries.next();
+					boolean complete = resumed.getSiRnas(entry.getKey()) != null ? write(sink, entry.getKey(), resumed)
+						: write(sink, entry.getKey(), entry.getValue().size(), select(entry.getValue(), offTargetEngine));
+					if (!complete) {
+						shortfallCount++;
+					}
+					entries.remove();
+				}
+			}
+			
+			if (mRnasEngine instanceof MemoizingOffTargetEngine) {
+				_metrics.addCacheHits(((MemoizingOffTargetEngine) mRnasEngine).getHitCount());
+			}
+			if (shortfallCount > 0) {
+				LOG.info("Could not find 4 siRNAs for " + shortfallCount + " of the " + mRnaCount + " mRNAs");
+			}
+		} finally {
+			_metrics.addPhaseNanos(ScreenerMetrics.Phase.OFF_TARGET, System.nanoTime() - start - sink.getNanos());
+		}
+	}
+	
+	/**
+	 * Writes the siRNAs selected for an mRNA to the sink, with the shortfall of the mRNA if it has one
+	 * 
+	 * @param candidateCount The number of candidates of the mRNA
+	 * @return True if the mRNA has its 4 siRNAs
+	 */
+	private static boolean write(ScreenerSink sink, Rna mRna, int candidateCount, Set<SiRna> siRnas)
+		throws IOException
+	{
+		RnaiScreener.Shortfall shortfall = null;
+		if (candidateCount < SIRNA_SCREEN_SIZE) {
+			shortfall = new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, candidateCount, siRnas.size());
+		} else if (siRnas.size() < SIRNA_SCREEN_SIZE) {
+			shortfall = new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.OFF_TARGETS, candidateCount, siRnas.size());
+		}
+		sink.write(mRna, siRnas, shortfall);
+		return shortfall == null;
+	}
+	
+	/**
+	 * Writes the siRNAs of an mRNA resumed from a journal to the sink
+	 * 
+	 * @return True if the mRNA has its 4 siRNAs
+	 */
+	private static boolean write(ScreenerSink sink, Rna mRna, RnaiScreener resumed)
+		throws IOException
+	{
+		sink.write(mRna, resumed.getSiRnas(mRna), resumed.getShortfall(mRna));
+		return resumed.getShortfall(mRna) == null;
+	}
+	
+	/**
+	 * A sink writing to another sink, adding the time spent writing to the WRITE phase of the metrics once closed. The 
+	 * other sink is not closed.
+	 */
+	private static class TimingSink implements ScreenerSink {
+		private final ScreenerSink _sink;
+		private final ScreenerMetrics _metrics;
+		private long _nanos;
+		
+		TimingSink(ScreenerSink sink, ScreenerMetrics metrics) {
+			_sink = sink;
+			_metrics = metrics;
+		}
 		
+		/**
+		 * Returns the time spent writing so far
+		 */
+		long getNanos() {
+			return _nanos;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.ScreenerSink#write(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+		 */
+		public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+			throws IOException
+		{
+			long start = System.nanoTime();
+			_sink.write(mRna, siRnas, shortfall);
+			_nanos += System.nanoTime() - start;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.ScreenerSink#close()
+		 */
+		public void close() {
+			_metrics.addPhaseNanos(ScreenerMetrics.Phase.WRITE, _nanos);
+		}
 	}
 
 	/**
@@ -149,60 +854,116 @@ public class RnaiScreenerCreator {
 	}
 
 	/**
-	 * Write the screener to the provided writer
+	 * Returns a set of of at least 4 siRNA candidates for each given mRNA.
+	 *  
+	 * Returns null if one of the given mRNA does not have at least 4 siRNA candidates.
+	 * 
+	 * @param mRnas
+	 * @return
 	 */
-	private void writeScreener(Map<Rna, Set<SiRna>> screener, Writer writer, Set<Rna> mRnas)
-		throws IOException
-	{
-		BufferedWriter bufWriter = new BufferedWriter(writer);
+	protected Map<Rna,Set<SiRna>> findCandidateSiRnas(Set<Rna> mRnas) {
+		return findCandidateSiRnas(mRnas, true);
+	}
+	
+	/**
+	 * Returns the siRNA candidates of each given mRNA, however many there are, in the order of the given set.
+	 */
+	private Map<Rna,Set<SiRna>> findAllCandidateSiRnas(Set<Rna> mRnas) {
+		return findCandidateSiRnas(mRnas, false);
+	}
+	
+	/**
+	 * Returns the siRNA candidates of each given mRNA, in the order of the given set.
+	 * 
+	 * @param failFast Whether to stop the search and return null as soon as an mRNA has less than 4 candidates
+	 */
+	private Map<Rna,Set<SiRna>> findCandidateSiRnas(Set<Rna> mRnas, boolean failFast) {
+		long start = _metrics.startPhase();
 		try {
-			Iterator<Rna> mRnaIter = mRnas.iterator();
-			while(mRnaIter.hasNext()) {
-				Rna mRna = mRnaIter.next();
-				bufWriter.append(mRna.toString());
-				Set<SiRna> siRnas = screener.get(mRna);
-				for (SiRna siRna: siRnas) {
-					bufWriter.append('|').append(Integer.toString(siRna.getMRnaOffset())).append(':').append(siRna.getAntisenseMatchingSequence().toString());
-				}
-				if (mRnaIter.hasNext()) {
-					bufWriter.newLine();
+			if (_executor != null) {
+				return findCandidateSiRnasInParallel(mRnas, failFast);
+			}
+			
+			// Find siRNA candidates for each mRNA
+			SiRnaFinder siRnaFinder = newSiRnaFinder();
+			Map<Rna,Set<SiRna>> siRnaCandidates = new LinkedHashMap<Rna,Set<SiRna>>();
+			for(Rna mRna: mRnas) {
+				Set<SiRna> candidates = siRnaFinder.findCandidates(mRna);
+				if (!hasEnoughCandidates(mRna, candidates) && failFast) {
+					return null;
 				}
+				siRnaCandidates.put(mRna, candidates);
 			}
-			LOG.info("RNAi screener written to output");
+			
+			return siRnaCandidates;
 		} finally {
-			bufWriter.flush();
-			bufWriter.close();
+			_metrics.endPhase(ScreenerMetrics.Phase.FIND, start);
 		}
 	}
-
-
+	
 	/**
-	 * Returns a set of of at least 4 siRNA candidates for each given mRNA.
-	 *  
-	 * Fails fast if one of the given mRNA does not have at least 4 siRNA candidates. Returns null then.
+	 * Returns a finder of the siRNAs of the lengths set, counting the windows scanned
+	 */
+	private SiRnaFinder newSiRnaFinder() {
+		SiRnaFinder siRnaFinder = new SiRnaFinder(_siRnaLengths);
+		siRnaFinder.setMetrics(_metrics);
+		return siRnaFinder;
+	}
+	
+	/**
+	 * Same as findCandidateSiRnas(Set, boolean) with the mRNAs dispatched to the executor.
+	 */
+	private Map<Rna,Set<SiRna>> findCandidateSiRnasInParallel(Set<Rna> mRnas, boolean failFast) {
+		ParallelCandidateFinder candidateFinder = new ParallelCandidateFinder(_executor, newSiRnaFinder());
+		for (Rna mRna: mRnas) {
+			candidateFinder.submit(mRna);
+		}
+		return awaitCandidates(candidateFinder, failFast);
+	}
+	
+	/**
+	 * Waits for the siRNA candidates searched by the given finder
 	 * 
-	 * @param mRnas
-	 * @return
+	 * @param failFast Whether to cancel the searches and return null as soon as an mRNA has less than 4 candidates
 	 */
-	protected Map<Rna,Set<SiRna>> findCandidateSiRnas(Set<Rna> mRnas) {
-		// Find siRNA candidates for each mRNA
-		SiRnaFinder siRnaFinder = new SiRnaFinder();
-		Map<Rna,Set<SiRna>> siRnaCandidates = new HashMap<Rna,Set<SiRna>>();
-		for(Rna mRna: mRnas) {
-			Set<SiRna> candidates = siRnaFinder.findCandidates(mRna);
-			if (candidates.size() < SIRNA_SCREEN_SIZE) {
+	private Map<Rna,Set<SiRna>> awaitCandidates(ParallelCandidateFinder candidateFinder, boolean failFast) {
+		try {
+			return candidateFinder.await(failFast);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while finding siRNA candidates");
+		} catch (ExecutionException ee) {
+			throw rethrow(ee);
+		}
+	}
+	
+	/**
+	 * Returns true if there are enough siRNA candidates for the given mRNA to create a screener.
+	 */
+	static boolean hasEnoughCandidates(Rna mRna, Set<SiRna> candidates) {
+		if (candidates.size() < SIRNA_SCREEN_SIZE) {
+			if (LOG.isLoggable(Level.FINE)) {
 				LOG.fine("Found only " + candidates.size() + " siRNA for mRNA " + mRna);
-				return null;
-			} else {
-				LOG.fine("siRNA candidates for " + mRna);
-				for (SiRna siRna: candidates) {
-					LOG.fine(siRna.toString());
-				}
 			}
-			siRnaCandidates.put(mRna, candidates);
+			return false;
+		} 
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("siRNA candidates for " + mRna);
+			for (SiRna siRna: candidates) {
+				LOG.fine(siRna.toString());
+			}
 		}
-		
-		return siRnaCandidates;
+		return true;
+	}
+	
+	/**
+	 * Rethrows the cause of an exception thrown by a task run by the executor
+	 */
+	private static RuntimeException rethrow(ExecutionException ee) {
+		Throwable cause = ee.getCause();
+		if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+		if (cause instanceof Error) throw (Error) cause;
+		throw new IllegalStateException(cause);
 	}
 	
 	/**
@@ -214,48 +975,259 @@ public class RnaiScreenerCreator {
 	 * @return
 	 */
 	protected Set<SiRna> selectOffTargetingFreeSiRnas(Set<SiRna> siRnas, Set<Rna> mRnas) {
+		return selectOffTargetingFreeSiRnas(siRnas, new BruteForceOffTargetEngine(mRnas, _hybridizationPolicy));
+	}
+	
+	/**
+	 * Same as selectOffTargetingFreeSiRnas(Set, Set) with the other mRNAs indexed by the given engine.
+	 * 
+	 * @param siRnas
+	 * @param offTargetEngine
+	 * @return
+	 */
+	protected Set<SiRna> selectOffTargetingFreeSiRnas(Set<SiRna> siRnas, OffTargetEngine offTargetEngine) {
+		Set<SiRna> offTargetingFreeCandidates = select(siRnas, offTargetEngine);
+		return offTargetingFreeCandidates.size() < SIRNA_SCREEN_SIZE ? null : offTargetingFreeCandidates;
+	}
+	
+	/**
+	 * Returns 4 of the given siRNAs that do not off-target the other mRNAs, less if there are not enough of them:
+	 * the best ones if a ranker is set, the first ones otherwise.
+	 */
+	private Set<SiRna> select(Set<SiRna> siRnas, OffTargetEngine offTargetEngine) {
+		if (_siRnaRanker != null) {
+			return _siRnaRanker.select(siRnas, offTargetEngine, SIRNA_SCREEN_SIZE);
+		}
+		return selectAtMostScreenSize(siRnas, offTargetEngine);
+	}
+	
+	/**
+	 * Returns the first 4 of the given siRNAs by offset that do not off-target the other mRNAs, less if there are not enough of them.
+	 */
+	private static Set<SiRna> selectAtMostScreenSize(Set<SiRna> siRnas, OffTargetEngine offTargetEngine) {
 		Set<SiRna> offTargetingFreeCandidates = new LinkedHashSet<SiRna>();
 		for (SiRna candidate: siRnas) {
-			if (!candidate.canOffTargetOtherMRnas(mRnas)) {
-				LOG.fine(candidate  + " would not off-target the other mRNAs");
+			boolean offTargeting = offTargetEngine.canOffTarget(candidate);
+			if (!offTargeting) {
 				offTargetingFreeCandidates.add(candidate);
-			} else {
-				LOG.fine(candidate  + " could off-target the other mRNAs");
-			}				
+			}
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine(candidate + (offTargeting ? " could" : " would not") + " off-target the other mRNAs");
+			}
 			if (offTargetingFreeCandidates.size() == SIRNA_SCREEN_SIZE) {
 				break;
 			}
 		}
-		if (offTargetingFreeCandidates.size() < SIRNA_SCREEN_SIZE) {
+		if (offTargetingFreeCandidates.size() < SIRNA_SCREEN_SIZE && !siRnas.isEmpty() && LOG.isLoggable(Level.FINE)) {
 			LOG.fine("Found only " + offTargetingFreeCandidates.size() + " siRNA(s) that would not off-targe other mRNAs for mRNA " + siRnas.iterator().next().getTargetMRna());
-			return null;
 		}
 		
 		return offTargetingFreeCandidates;
 	}
 	
 	/**
-	 * Reads a list of mRNAs from an input file and writes an RNAi screener to the output file if one exists.
-	 * Usage: java com.davidblondeau.cdd.RnaiScreenerCreator <inputFilePath> <outputFilePath>
+	 * Same as the selection done by createRnaiScreener(Set) with the off-target checks dispatched to the executor.
+	 * The siRNAs of each mRNA are written to the sink in the order of the mRNAs, as soon as they and those of the 
+	 * previous mRNAs are selected.
+	 * 
+	 * @param siRnaCandidates The siRNA candidates of each mRNA, removed once the siRNAs of the mRNA are written
+	 * @param offTargetEngine
+	 * @param resumed The mRNAs whose siRNAs are already known
+	 * @param sink
+	 * @return The number of mRNAs that have less than 4 siRNAs
+	 */
+	private int selectOffTargetingFreeSiRnasInParallel(Map<Rna,Set<SiRna>> siRnaCandidates, OffTargetEngine offTargetEngine, 
+		RnaiScreener resumed, ScreenerSink sink) 
+		throws IOException
+	{
+		if (_siRnaRanker != null) {
+			return selectRankedSiRnasInParallel(siRnaCandidates, offTargetEngine, resumed, sink);
+		}
+		
+		ParallelOffTargetSelector selector = new ParallelOffTargetSelector(_executor, offTargetEngine);
+		for (Map.Entry<Rna,Set<SiRna>> entry: siRnaCandidates.entrySet()) {
+			if (resumed.getSiRnas(entry.getKey()) == null) {
+				selector.submit(entry.getValue());
+			}
+		}
+		
+		int shortfallCount = 0;
+		try {
+			int index = 0;
+			Iterator<Map.Entry<Rna,Set<SiRna>>> entries = siRnaCandidates.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<Rna,Set<SiRna>> entry = entries.next();
+				boolean complete = resumed.getSiRnas(entry.getKey()) != null ? write(sink, entry.getKey(), resumed)
+					: write(sink, entry.getKey(), entry.getValue().size(), selector.select(index++));
+				if (!complete) {
+					shortfallCount++;
+				}
+				entries.remove();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while checking siRNA candidates");
+		} catch (ExecutionException ee) {
+			throw rethrow(ee);
+		} finally {
+			selector.cancel();
+		}
+		return shortfallCount;
+	}
+	
+	/**
+	 * Same as selectOffTargetingFreeSiRnasInParallel(Map, OffTargetEngine, RnaiScreener, ScreenerSink) with the candidates 
+	 * ranked: the candidates of each mRNA are checked in the order of their rank, the mRNAs in parallel.
+	 */
+	private int selectRankedSiRnasInParallel(Map<Rna,Set<SiRna>> siRnaCandidates, final OffTargetEngine offTargetEngine, 
+		RnaiScreener resumed, ScreenerSink sink) 
+		throws IOException
+	{
+		final SiRnaRanker siRnaRanker = _siRnaRanker;
+		List<Future<Set<SiRna>>> futures = new ArrayList<Future<Set<SiRna>>>();
+		for (Map.Entry<Rna,Set<SiRna>> entry: siRnaCandidates.entrySet()) {
+			if (resumed.getSiRnas(entry.getKey()) != null) {
+				continue;
+			}
+			final Set<SiRna> candidates = entry.getValue();
+			futures.add(_executor.submit(new Callable<Set<SiRna>>() {
+				public Set<SiRna> call() {
+					return siRnaRanker.select(candidates, offTargetEngine, SIRNA_SCREEN_SIZE);
+				}
+			}));
+		}
+		
+		int shortfallCount = 0;
+		try {
+			int index = 0;
+			Iterator<Map.Entry<Rna,Set<SiRna>>> entries = siRnaCandidates.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<Rna,Set<SiRna>> entry = entries.next();
+				boolean complete = resumed.getSiRnas(entry.getKey()) != null ? write(sink, entry.getKey(), resumed)
+					: write(sink, entry.getKey(), entry.getValue().size(), futures.get(index++).get());
+				if (!complete) {
+					shortfallCount++;
+				}
+				entries.remove();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while checking siRNA candidates");
+		} catch (ExecutionException ee) {
+			throw rethrow(ee);
+		} finally {
+			for (Future<Set<SiRna>> future: futures) {
+				future.cancel(true);
+			}
+		}
+		return shortfallCount;
+	}
+	
+	/**
+	 * Reads a list of mRNAs from an input file and writes an RNAi screener to the output file.
+	 * The input file can be in FASTA format, possibly gzipped, or contain one mRNA sequence by line.
+	 * The seed index of the mRNAs is saved to the index file, if given, and reused by the next runs on the same mRNAs.
+	 * The background, if given, is a FASTA file, a seed index file or a directory of background shards 
+	 * (see BackgroundOffTargetEngine) whose transcripts the siRNAs must not off-target either.
+	 * With --both-strands, the sense strand of the siRNAs must not off-target the other mRNAs either.
+	 * With --lengths, the siRNAs have the given lengths, in the order of preference, for instance 21,22,23.
+	 * With --rank, the best candidates of each mRNA are selected rather than the first ones (see SiRnaRanker).
+	 * With --format, the screener is written in the given format rather than the pipe-separated one (see ScreenerFormat).
+	 * With --journal, the mRNAs are journaled to the given file as they are written, and with --resume, the mRNAs 
+	 * journaled by a previous run with the same options are not screened again (see ScreenerJournal).
+	 * With --off-heap, the mRNAs and their seed index are kept off the heap (see RnaStore).
+	 * Usage: java com.davidblondeau.cdd.RnaiScreenerCreator [--index <indexFilePath>] [--background <backgroundPath>] [--both-strands] [--lengths <l1,l2,...>] [--rank] [--format pipe|tsv|jsonl|binary] [--journal <journalFilePath> [--resume]] [--off-heap] <inputFilePath> <outputFilePath>
 	 */
 	public static void main(String[] args) {
-		FileReader reader = null;
-		FileWriter writer = null;
+		FastaReader reader = null;
+		ScreenerSink sink = null;
+		ScreenerJournal journal = null;
 		
-		if (args.length != 2) {
-			LOG.info("Usage: java com.davidblondeau.cdd.RnaiScreenerCreator <inputFilePath> <outputFilePath>");
+		String indexFileName = null;
+		String backgroundFileName = null;
+		boolean checkSenseStrand = false;
+		String lengths = null;
+		boolean rank = false;
+		String format = null;
+		String journalFileName = null;
+		boolean resume = false;
+		boolean offHeap = false;
+		List<String> fileNames = new ArrayList<String>();
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--index") && i + 1 < args.length) {
+				indexFileName = args[++i].trim();
+			} else if (args[i].equals("--background") && i + 1 < args.length) {
+				backgroundFileName = args[++i].trim();
+			} else if (args[i].equals("--both-strands")) {
+				checkSenseStrand = true;
+			} else if (args[i].equals("--lengths") && i + 1 < args.length) {
+				lengths = args[++i].trim();
+			} else if (args[i].equals("--rank")) {
+				rank = true;
+			} else if (args[i].equals("--format") && i + 1 < args.length) {
+				format = args[++i].trim();
+			} else if (args[i].equals("--journal") && i + 1 < args.length) {
+				journalFileName = args[++i].trim();
+			} else if (args[i].equals("--resume")) {
+				resume = true;
+			} else if (args[i].equals("--off-heap")) {
+				offHeap = true;
+			} else {
+				fileNames.add(args[i].trim());
+			}
+		}
+		if (fileNames.size() != 2 || (resume && journalFileName == null)) {
+			LOG.info("Usage: java com.davidblondeau.cdd.RnaiScreenerCreator [--index <indexFilePath>] [--background <backgroundPath>] [--both-strands] [--lengths <l1,l2,...>] [--rank] [--format pipe|tsv|jsonl|binary] [--journal <journalFilePath> [--resume]] [--off-heap] <inputFilePath> <outputFilePath>");
 			return;
 		}
 		
-		String inputFileName = args[0].trim();
-		String outputFileName = args[1].trim();
+		String inputFileName = fileNames.get(0);
+		String outputFileName = fileNames.get(1);
 		
 		
 		try {
-			reader = new FileReader(inputFileName);
-			writer = new FileWriter(outputFileName);
-		
-			new RnaiScreenerCreator().createScreener(reader, writer);
+			RnaiScreenerCreator creator = new RnaiScreenerCreator();
+			creator.setExecutor(ForkJoinPool.commonPool());
+			creator.setCheckSenseStrand(checkSenseStrand);
+			creator.setOffHeap(offHeap);
+			if (rank) {
+				creator.setSiRnaRanker(SiRnaRanker.DEFAULT);
+			}
+			if (lengths != null) {
+				String[] lengthArgs = lengths.split(",");
+				int[] siRnaLengths = new int[lengthArgs.length];
+				for (int i = 0; i < lengthArgs.length; ++i) {
+					siRnaLengths[i] = Integer.parseInt(lengthArgs[i].trim());
+				}
+				creator.setSiRnaLengths(siRnaLengths);
+			}
+			if (indexFileName != null) {
+				creator.setOffTargetIndexFile(new File(indexFileName));
+			}
+			if (backgroundFileName != null) {
+				creator.setBackground(BackgroundOffTargetEngine.load(new File(backgroundFileName)));
+			}
+			
+			try {
+				creator.getMetrics().register(ScreenerMetrics.DEFAULT_NAME);
+			} catch (JMException jme) {
+				LOG.warning("Could not register the metrics: " + jme.getMessage());
+			}
+			
+			ScreenerFormat screenerFormat = format == null ? ScreenerFormat.PIPE : ScreenerFormat.valueOf(format.toUpperCase());
+			if (journalFileName != null) {
+				journal = resume ? ScreenerJournal.open(new File(journalFileName)) : ScreenerJournal.create(new File(journalFileName));
+				creator.setJournal(journal);
+			}
+			
+			reader = FastaReader.open(new File(inputFileName));
+			sink = screenerFormat.newSink(new FileOutputStream(outputFileName));
+			creator.createScreenerFromFasta(reader, sink);
+			// closed here rather than below, so that an error flushing the output is reported
+			ScreenerSink written = sink;
+			sink = null;
+			written.close();
+			LOG.info(creator.getMetrics().toString());
 		} catch(Exception e) {
 			LOG.severe("Exception while creating RNAi screener: " + e.getMessage());
 		} finally {
@@ -266,9 +1238,16 @@ public class RnaiScreenerCreator {
 					// we tried
 				}
 			}
-			if (writer != null) {
+			if (sink != null) {
+				try  {
+					sink.close();
+				} catch(IOException ioe) {
+					// we tried
+				}
+			}
+			if (journal != null) {
 				try  {
-					writer.close();
+					journal.close();
 				} catch(IOException ioe) {
 					// we tried
 				}
@@ -0,0 +1,74 @@
+package com.davidblondeau.cdd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The formats a screener can be written in.
+ *
+ * @author david
+ */
+public enum ScreenerFormat {
+	/**
+	 * One line per mRNA, the siRNAs separated by pipes (see PipeScreenerSink)
+	 */
+	PIPE("text/plain; charset=UTF-8") {
+		public ScreenerSink newSink(OutputStream out) {
+			return new PipeScreenerSink(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+	},
+
+	/**
+	 * Tab-separated values (see TsvScreenerSink)
+	 */
+	TSV("text/tab-separated-values; charset=UTF-8") {
+		public ScreenerSink newSink(OutputStream out)
+			throws IOException
+		{
+			return new TsvScreenerSink(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+	},
+
+	/**
+	 * JSON Lines (see JsonLinesScreenerSink)
+	 */
+	JSONL("application/x-ndjson") {
+		public ScreenerSink newSink(OutputStream out) {
+			return new JsonLinesScreenerSink(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+	},
+
+	/**
+	 * Compact binary format (see BinaryScreenerSink)
+	 */
+	BINARY("application/octet-stream") {
+		public ScreenerSink newSink(OutputStream out)
+			throws IOException
+		{
+			return new BinaryScreenerSink(out);
+		}
+	};
+
+	private String _contentType;
+
+	private ScreenerFormat(String contentType) {
+		_contentType = contentType;
+	}
+
+	/**
+	 * Returns the MIME type of the screeners written in this format
+	 */
+	public String getContentType() {
+		return _contentType;
+	}
+
+	/**
+	 * Returns a sink writing the screener in this format to the given stream
+	 *
+	 * @param out Closed when the sink is closed
+	 */
+	public abstract ScreenerSink newSink(OutputStream out)
+		throws IOException;
+}
@@ -0,0 +1,327 @@
+package com.davidblondeau.cdd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.SeedIndexOffTargetEngine;
+
+/**
+ * Append-only journal of the mRNAs whose siRNAs are selected, so that a long screener run can resume where it stopped.
+ *
+ * Each mRNA written to the sink returned by journaling(ScreenerSink) is recorded with its position in the screened
+ * set, the checksum of its name and sequence, the offsets and lengths of its siRNAs and its shortfall. The records
+ * are buffered and the journal is forced to the disk at most once per sync interval, so that journaling costs a
+ * buffered write per mRNA: a crash loses the records of the last interval at most, whose mRNAs are screened again.
+ *
+ * The file is a header, the int MAGIC and the short VERSION, followed by the records, each one being its int length,
+ * its bytes and their int CRC32. A record cut short by a crash is dropped when the journal is opened again.
+ *
+ * The journal does not record the settings of the creator: a run must be resumed with the same settings as the run
+ * that started the journal, and the same mRNAs.
+ *
+ * @author david
+ */
+public class ScreenerJournal implements Closeable {
+	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
+
+	/**
+	 * "RJNL"
+	 */
+	public static final int MAGIC = 0x524a4e4c;
+	public static final short VERSION = 1;
+
+	/**
+	 * Default time between two syncs of the journal to the disk
+	 */
+	public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+	private static final int HEADER_SIZE = 6;
+
+	/**
+	 * The records read when the journal was opened, by position of their mRNA
+	 */
+	private Map<Integer,Record> _records = new HashMap<Integer,Record>();
+
+	/**
+	 * The positions of the mRNAs resumed from the records
+	 */
+	private Set<Integer> _resumed = new HashSet<Integer>();
+
+	private RandomAccessFile _file;
+	private DataOutputStream _out;
+	private long _syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+	private long _lastSync = System.currentTimeMillis();
+
+	/**
+	 * A journaled mRNA
+	 */
+	private static class Record {
+		private long _checksum;
+		private int[] _offsets;
+		private int[] _lengths;
+		private RnaiScreener.Shortfall _shortfall;
+	}
+
+	private ScreenerJournal(File file, boolean resume)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		_file = new RandomAccessFile(file, "rw");
+		try {
+			long end = resume ? readRecords() : -1;
+			if (end < 0) {
+				_file.setLength(0);
+				_file.writeInt(MAGIC);
+				_file.writeShort(VERSION);
+				end = HEADER_SIZE;
+			}
+			// drops a record cut short by a crash
+			_file.setLength(end);
+			_file.seek(end);
+		} catch (IOException ioe) {
+			_file.close();
+			throw ioe;
+		}
+		_out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(_file.getChannel())));
+	}
+
+	/**
+	 * Starts a new journal in the given file, discarding the records it may contain
+	 */
+	public static ScreenerJournal create(File file)
+		throws IOException
+	{
+		return new ScreenerJournal(file, false);
+	}
+
+	/**
+	 * Opens the journal of the given file to resume the run that wrote it. The file is created if it does not exist.
+	 */
+	public static ScreenerJournal open(File file)
+		throws IOException
+	{
+		return new ScreenerJournal(file, true);
+	}
+
+	/**
+	 * Reads the records of the file
+	 *
+	 * @return The end of the last complete record, -1 if the file is not a journal
+	 */
+	private long readRecords()
+		throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(_file.getChannel())));
+		long end;
+		try {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+				if (_file.length() > 0) {
+					LOG.warning("Not a screener journal, starting a new one");
+				}
+				return -1;
+			}
+			end = HEADER_SIZE;
+		} catch (EOFException eofe) {
+			return -1;
+		}
+
+		CRC32 crc = new CRC32();
+		try {
+			while (true) {
+				int length = in.readInt();
+				if (length <= 0 || length > _file.length() - end) {
+					break;
+				}
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				crc.reset();
+				crc.update(bytes);
+				if (in.readInt() != (int) crc.getValue()) {
+					break;
+				}
+				readRecord(new DataInputStream(new ByteArrayInputStream(bytes)));
+				end += 4 + length + 4;
+			}
+		} catch (EOFException eofe) {
+			// the last record is incomplete
+		}
+		LOG.info("Resuming from " + _records.size() + " journaled mRNA(s)");
+		return end;
+	}
+
+	private void readRecord(DataInputStream in)
+		throws IOException
+	{
+		int index = in.readInt();
+		Record record = new Record();
+		record._checksum = in.readLong();
+		int siRnaCount = in.readUnsignedByte();
+		record._offsets = new int[siRnaCount];
+		record._lengths = new int[siRnaCount];
+		for (int i = 0; i < siRnaCount; ++i) {
+			record._offsets[i] = in.readInt();
+			record._lengths[i] = in.readUnsignedByte();
+		}
+		int reason = in.readUnsignedByte();
+		if (reason > 0) {
+			record._shortfall = new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.values()[reason - 1], in.readInt(), in.readInt());
+		}
+		_records.put(index, record);
+	}
+
+	/**
+	 * Sets the time between two syncs of the journal to the disk. 0 syncs every record.
+	 */
+	public void setSyncIntervalMillis(long syncIntervalMillis) {
+		if (syncIntervalMillis < 0) throw new IllegalArgumentException("Negative sync interval: " + syncIntervalMillis);
+		_syncIntervalMillis = syncIntervalMillis;
+	}
+
+	public long getSyncIntervalMillis() {
+		return _syncIntervalMillis;
+	}
+
+	/**
+	 * Returns the screener of the given mRNAs that were journaled at the same position in the set by the previous runs.
+	 * The mRNAs that do not match the journal are left out, to be screened again.
+	 */
+	public RnaiScreener resume(Set<Rna> mRnas) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+
+		RnaiScreener rnaiScreener = new RnaiScreener();
+		if (_records.isEmpty()) {
+			return rnaiScreener;
+		}
+		int index = -1;
+		int mismatchCount = 0;
+		for (Rna mRna: mRnas) {
+			Record record = _records.get(++index);
+			if (record == null) {
+				continue;
+			}
+			if (record._checksum != SeedIndexOffTargetEngine.checksum(Collections.singleton(mRna))) {
+				mismatchCount++;
+				continue;
+			}
+			_resumed.add(index);
+			Set<SiRna> siRnas = new LinkedHashSet<SiRna>();
+			for (int i = 0; i < record._offsets.length; ++i) {
+				siRnas.add(new SiRna(mRna, record._offsets[i], record._lengths[i]));
+			}
+			rnaiScreener.put(mRna, siRnas, record._shortfall);
+		}
+		if (mismatchCount > 0) {
+			LOG.warning(mismatchCount + " journaled mRNA(s) do not match the input and are screened again");
+		}
+		return rnaiScreener;
+	}
+
+	/**
+	 * Returns a sink writing to the given sink and journaling the mRNAs written, the n-th mRNA written being the n-th
+	 * of the screened set. The mRNAs returned by resume(Set) are not journaled again. Closing the returned sink syncs
+	 * the journal, the given sink is not closed.
+	 */
+	public ScreenerSink journaling(final ScreenerSink sink) {
+		if (sink == null) throw new IllegalArgumentException("Null sink");
+
+		return new ScreenerSink() {
+			private int _index;
+
+			public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+				throws IOException
+			{
+				sink.write(mRna, siRnas, shortfall);
+				if (!_resumed.contains(_index)) {
+					record(_index, mRna, siRnas, shortfall);
+				}
+				_index++;
+			}
+
+			public void close()
+				throws IOException
+			{
+				sync();
+			}
+		};
+	}
+
+	/**
+	 * Appends the record of an mRNA, syncing the journal if the sync interval has elapsed
+	 */
+	void record(int index, Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeInt(index);
+		record.writeLong(SeedIndexOffTargetEngine.checksum(Collections.singleton(mRna)));
+		record.writeByte(siRnas.size());
+		for (SiRna siRna: siRnas) {
+			record.writeInt(siRna.getMRnaOffset());
+			record.writeByte(siRna.getLength());
+		}
+		if (shortfall == null) {
+			record.writeByte(0);
+		} else {
+			record.writeByte(shortfall.getReason().ordinal() + 1);
+			record.writeInt(shortfall.getCandidateCount());
+			record.writeInt(shortfall.getSelectedCount());
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		_out.writeInt(bytes.size());
+		bytes.writeTo(_out);
+		_out.writeInt((int) crc.getValue());
+
+		if (System.currentTimeMillis() - _lastSync >= _syncIntervalMillis) {
+			sync();
+		}
+	}
+
+	/**
+	 * Writes the buffered records and forces them to the disk
+	 */
+	public void sync()
+		throws IOException
+	{
+		_out.flush();
+		_file.getChannel().force(false);
+		_lastSync = System.currentTimeMillis();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+		throws IOException
+	{
+		try {
+			sync();
+		} finally {
+			_out.close();
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package com.davidblondeau.cdd;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of the screener creation.
+ *
+ * The counters are updated from the worker threads: they are LongAdders, and the hot loops only add their local
+ * counts once they are done. The time spent in each phase of the creation is accumulated and reported to the
+ * listeners as each phase completes.
+ *
+ * The metrics can be read through JMX once registered with register(String).
+ *
+ * @author david
+ */
+public class ScreenerMetrics implements ScreenerMetricsMBean {
+	/**
+	 * Name the metrics of the command line are registered under
+	 */
+	public static final String DEFAULT_NAME = "com.davidblondeau.cdd:type=ScreenerMetrics";
+
+	/**
+	 * The phases of the screener creation
+	 */
+	public enum Phase {
+		READ,
+		FIND,
+		OFF_TARGET,
+		WRITE
+	}
+
+	/**
+	 * The rules of SiRnaFinder, in the order they are checked: a window is rejected by the first rule it breaks
+	 */
+	public enum Rule {
+		/**
+		 * i. A/U at the 5' end of the antisense strand
+		 */
+		ANTISENSE_END,
+		/**
+		 * ii. G/C at the 5' end of the sense strand
+		 */
+		SENSE_END,
+		/**
+		 * iii. AU-richness in the 5' terminal one-third of the antisense strand
+		 */
+		AU_RICHNESS,
+		/**
+		 * iv. the absence of any GC stretch over 9bp in length
+		 */
+		GC_STRETCH
+	}
+
+	/**
+	 * Notified of the phases of the screener creation
+	 */
+	public interface Listener {
+		/**
+		 * Called on the thread that ran the phase once it completes
+		 *
+		 * @param phase
+		 * @param nanos The time the phase took
+		 */
+		public void phaseCompleted(Phase phase, long nanos);
+	}
+
+	private LongAdder _windowsScanned = new LongAdder();
+	private Map<Rule,LongAdder> _ruleRejections = new EnumMap<Rule,LongAdder>(Rule.class);
+	private LongAdder _candidatesFound = new LongAdder();
+	private LongAdder _hybridizationChecks = new LongAdder();
+	private LongAdder _verifiedHits = new LongAdder();
+	private LongAdder _cacheHits = new LongAdder();
+	private Map<Phase,LongAdder> _phaseNanos = new EnumMap<Phase,LongAdder>(Phase.class);
+	private List<Listener> _listeners = new CopyOnWriteArrayList<Listener>();
+
+	public ScreenerMetrics() {
+		for (Rule rule: Rule.values()) {
+			_ruleRejections.put(rule, new LongAdder());
+		}
+		for (Phase phase: Phase.values()) {
+			_phaseNanos.put(phase, new LongAdder());
+		}
+	}
+
+	/**
+	 * Adds a listener notified of the phases of the screener creation
+	 */
+	public void addListener(Listener listener) {
+		if (listener == null) throw new IllegalArgumentException("Null listener");
+		_listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		_listeners.remove(listener);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server under the given name, for instance DEFAULT_NAME
+	 */
+	public ObjectName register(String name)
+		throws JMException
+	{
+		ObjectName objectName = new ObjectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Adds the counts of a scan of an mRNA
+	 *
+	 * @param windowCount The number of windows checked against the rules
+	 * @param rejections The number of windows rejected by each rule, indexed by the ordinal of the rules
+	 * @param candidateCount The number of windows satisfying every rule
+	 */
+	void addScan(int windowCount, int[] rejections, int candidateCount) {
+		_windowsScanned.add(windowCount);
+		for (Rule rule: Rule.values()) {
+			_ruleRejections.get(rule).add(rejections[rule.ordinal()]);
+		}
+		_candidatesFound.add(candidateCount);
+	}
+
+	/**
+	 * Counts an off-target check of an siRNA candidate
+	 *
+	 * @param hit Whether the candidate can off-target another mRNA
+	 */
+	void addHybridizationCheck(boolean hit) {
+		_hybridizationChecks.increment();
+		if (hit) {
+			_verifiedHits.increment();
+		}
+	}
+
+	void addCacheHits(long cacheHits) {
+		_cacheHits.add(cacheHits);
+	}
+
+	/**
+	 * Returns the start time of a phase, to pass to endPhase(Phase, long)
+	 */
+	long startPhase() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds the time of a phase started at the given time and notifies the listeners
+	 */
+	void endPhase(Phase phase, long start) {
+		addPhaseNanos(phase, System.nanoTime() - start);
+	}
+
+	/**
+	 * Adds the given time to a phase and notifies the listeners, for a phase whose time is not a single interval
+	 */
+	void addPhaseNanos(Phase phase, long nanos) {
+		_phaseNanos.get(phase).add(nanos);
+		for (Listener listener: _listeners) {
+			listener.phaseCompleted(phase, nanos);
+		}
+	}
+
+	/**
+	 * Returns the number of windows rejected by the given rule
+	 */
+	public long getRuleRejections(Rule rule) {
+		return _ruleRejections.get(rule).sum();
+	}
+
+	/**
+	 * Returns the time spent in the given phase, in nanoseconds
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return _phaseNanos.get(phase).sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getWindowsScanned()
+	 */
+	public long getWindowsScanned() {
+		return _windowsScanned.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getAntisenseEndRejections()
+	 */
+	public long getAntisenseEndRejections() {
+		return getRuleRejections(Rule.ANTISENSE_END);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getSenseEndRejections()
+	 */
+	public long getSenseEndRejections() {
+		return getRuleRejections(Rule.SENSE_END);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getAuRichnessRejections()
+	 */
+	public long getAuRichnessRejections() {
+		return getRuleRejections(Rule.AU_RICHNESS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getGcStretchRejections()
+	 */
+	public long getGcStretchRejections() {
+		return getRuleRejections(Rule.GC_STRETCH);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getCandidatesFound()
+	 */
+	public long getCandidatesFound() {
+		return _candidatesFound.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getHybridizationChecks()
+	 */
+	public long getHybridizationChecks() {
+		return _hybridizationChecks.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getVerifiedHits()
+	 */
+	public long getVerifiedHits() {
+		return _verifiedHits.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getCacheHits()
+	 */
+	public long getCacheHits() {
+		return _cacheHits.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getReadMillis()
+	 */
+	public long getReadMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.READ));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getFindMillis()
+	 */
+	public long getFindMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.FIND));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getOffTargetMillis()
+	 */
+	public long getOffTargetMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.OFF_TARGET));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#getWriteMillis()
+	 */
+	public long getWriteMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(Phase.WRITE));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerMetricsMBean#reset()
+	 */
+	public void reset() {
+		_windowsScanned.reset();
+		for (LongAdder rejections: _ruleRejections.values()) {
+			rejections.reset();
+		}
+		_candidatesFound.reset();
+		_hybridizationChecks.reset();
+		_verifiedHits.reset();
+		_cacheHits.reset();
+		for (LongAdder nanos: _phaseNanos.values()) {
+			nanos.reset();
+		}
+	}
+
+	/**
+	 * Returns a summary of the counters and timers, as logged at the end of a run
+	 */
+	@Override
+	public String toString() {
+		return getWindowsScanned() + " windows scanned, rejected by rule i. " + getAntisenseEndRejections()
+			+ ", ii. " + getSenseEndRejections() + ", iii. " + getAuRichnessRejections() + ", iv. " + getGcStretchRejections()
+			+ "; " + getCandidatesFound() + " candidates, " + getHybridizationChecks() + " checked for off-targets, "
+			+ getVerifiedHits() + " off-targeting, " + getCacheHits() + " cache hits; read " + getReadMillis() + " ms, find "
+			+ getFindMillis() + " ms, off-target " + getOffTargetMillis() + " ms, write " + getWriteMillis() + " ms";
+	}
+}
@@ -0,0 +1,80 @@
+package com.davidblondeau.cdd;
+
+/**
+ * JMX view of the metrics of the screener creation, see ScreenerMetrics.
+ *
+ * @author david
+ */
+public interface ScreenerMetricsMBean {
+
+	/**
+	 * Returns the number of mRNA windows checked against the siRNA rules
+	 */
+	public long getWindowsScanned();
+
+	/**
+	 * Returns the number of windows rejected because the 5' end of their antisense strand is not an A/U (rule i.)
+	 */
+	public long getAntisenseEndRejections();
+
+	/**
+	 * Returns the number of windows rejected because the 5' end of their sense strand is not a G/C (rule ii.)
+	 */
+	public long getSenseEndRejections();
+
+	/**
+	 * Returns the number of windows rejected because the 5' terminal one-third of their antisense strand is not
+	 * AU-rich (rule iii.)
+	 */
+	public long getAuRichnessRejections();
+
+	/**
+	 * Returns the number of windows rejected because of a GC stretch over 9 nt (rule iv.)
+	 */
+	public long getGcStretchRejections();
+
+	/**
+	 * Returns the number of windows satisfying every rule
+	 */
+	public long getCandidatesFound();
+
+	/**
+	 * Returns the number of siRNA candidates checked for off-targets
+	 */
+	public long getHybridizationChecks();
+
+	/**
+	 * Returns the number of siRNA candidates found to off-target another mRNA
+	 */
+	public long getVerifiedHits();
+
+	/**
+	 * Returns the number of windows whose off-target hits were already known, see MemoizingOffTargetEngine
+	 */
+	public long getCacheHits();
+
+	/**
+	 * Returns the time spent reading the mRNAs, in milliseconds
+	 */
+	public long getReadMillis();
+
+	/**
+	 * Returns the time spent finding the siRNA candidates, in milliseconds
+	 */
+	public long getFindMillis();
+
+	/**
+	 * Returns the time spent checking the siRNA candidates for off-targets, in milliseconds
+	 */
+	public long getOffTargetMillis();
+
+	/**
+	 * Returns the time spent writing the screeners, in milliseconds
+	 */
+	public long getWriteMillis();
+
+	/**
+	 * Sets every counter and timer back to 0
+	 */
+	public void reset();
+}
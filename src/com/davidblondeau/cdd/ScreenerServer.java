@@ -0,0 +1,365 @@
+package com.davidblondeau.cdd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.offtarget.BackgroundOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP server screening mRNAs against libraries kept in memory, so that the queries do not pay for the start of the
+ * JVM and the indexing of the libraries.
+ *
+ * The server only listens on the loopback interface:
+ * - GET /libraries lists the names of the libraries, one per line;
+ * - POST /screen?library=<name> screens the batch of mRNAs of the request body, in FASTA format or one sequence per line,
+ * the same as the command line of RnaiScreenerCreator with the library as background. The other parameters are the
+ * options of the command line: format=pipe|tsv|jsonl|binary, lengths=<l1,l2,...>, rank=true and both-strands=true.
+ *
+ * Identical queries received while the first of them is screened are answered by its screener (see RequestCoalescer).
+ *
+ * @author david
+ */
+public class ScreenerServer {
+	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
+
+	public static final int DEFAULT_PORT = 8021;
+
+	private HttpServer _server;
+
+	/**
+	 * Runs the requests, one thread each
+	 */
+	private ExecutorService _requestExecutor = Executors.newCachedThreadPool();
+
+	/**
+	 * Runs the off-target checks of the requests
+	 */
+	private ExecutorService _executor = ForkJoinPool.commonPool();
+
+	private Map<String,OffTargetEngine> _libraries = new ConcurrentHashMap<String,OffTargetEngine>();
+	private ScreenerMetrics _metrics = new ScreenerMetrics();
+	private RequestCoalescer<Query,byte[]> _coalescer = new RequestCoalescer<Query,byte[]>();
+
+	/**
+	 * A screening query: the library, format and options, and the mRNAs
+	 */
+	private static class Query {
+		private String _settings;
+		private byte[] _mRnas;
+
+		Query(String settings, byte[] mRnas) {
+			_settings = settings;
+			_mRnas = mRnas;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Query)) {
+				return false;
+			}
+			Query query = (Query) o;
+			return _settings.equals(query._settings) && Arrays.equals(_mRnas, query._mRnas);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * _settings.hashCode() + Arrays.hashCode(_mRnas);
+		}
+	}
+
+	/**
+	 * A query the server cannot answer
+	 */
+	private static class QueryException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private int _status;
+
+		QueryException(int status, String message) {
+			super(message);
+			_status = status;
+		}
+	}
+
+	/**
+	 * @param port The port to listen to on the loopback interface, 0 for any free port
+	 */
+	public ScreenerServer(int port)
+		throws IOException
+	{
+		if (port < 0) throw new IllegalArgumentException("Invalid port: " + port);
+
+		_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		_server.setExecutor(_requestExecutor);
+		_server.createContext("/libraries", new HttpHandler() {
+			public void handle(HttpExchange exchange)
+				throws IOException
+			{
+				StringBuilder names = new StringBuilder();
+				for (String name: getLibraries()) {
+					names.append(name).append('\n');
+				}
+				respond(exchange, 200, "text/plain; charset=UTF-8", names.toString().getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		_server.createContext("/screen", new HttpHandler() {
+			public void handle(HttpExchange exchange)
+				throws IOException
+			{
+				handleScreen(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Adds a library the mRNAs can be screened against, for instance a BackgroundOffTargetEngine over a transcriptome.
+	 * Replaces the library of the same name.
+	 */
+	public void addLibrary(String name, OffTargetEngine library) {
+		if (name == null) throw new IllegalArgumentException("Null library name");
+		if (library == null) throw new IllegalArgumentException("Null library");
+		_libraries.put(name, library);
+	}
+
+	/**
+	 * Returns the names of the libraries, sorted
+	 */
+	public Set<String> getLibraries() {
+		return new TreeSet<String>(_libraries.keySet());
+	}
+
+	/**
+	 * Sets the executor the off-target checks of the queries are dispatched to. Defaults to the common fork/join pool,
+	 * null to check the candidates of each query on the thread of the query.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		_executor = executor;
+	}
+
+	/**
+	 * Returns the counters and timers of the queries, accumulated since the server was created
+	 */
+	public ScreenerMetrics getMetrics() {
+		return _metrics;
+	}
+
+	/**
+	 * Returns the number of queries answered by the screener of an identical query
+	 */
+	public long getCoalescedCount() {
+		return _coalescer.getCoalescedCount();
+	}
+
+	/**
+	 * Returns the port the server listens to
+	 */
+	public int getPort() {
+		return _server.getAddress().getPort();
+	}
+
+	public void start() {
+		_server.start();
+		LOG.info("Screening " + getLibraries() + " on http://localhost:" + getPort() + "/screen");
+	}
+
+	/**
+	 * Stops the server once the queries being answered are, waiting at most the given delay
+	 */
+	public void stop(int delaySeconds) {
+		_server.stop(delaySeconds);
+		_requestExecutor.shutdown();
+	}
+
+	private void handleScreen(HttpExchange exchange)
+		throws IOException
+	{
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				throw new QueryException(405, "Screen queries must be POSTed");
+			}
+			Map<String,String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			final OffTargetEngine library = _libraries.get(parameters.get("library"));
+			if (library == null) {
+				throw new QueryException(404, "Unknown library: " + parameters.get("library"));
+			}
+			final ScreenerFormat format = parameters.containsKey("format") ? ScreenerFormat.valueOf(parameters.get("format").toUpperCase()) : ScreenerFormat.PIPE;
+			final boolean rank = Boolean.parseBoolean(parameters.get("rank"));
+			final boolean checkSenseStrand = Boolean.parseBoolean(parameters.get("both-strands"));
+			final int[] siRnaLengths = parameters.containsKey("lengths") ? parseLengths(parameters.get("lengths")) : null;
+
+			final byte[] mRnas = readAll(exchange.getRequestBody());
+			String settings = parameters.get("library") + '\t' + format + '\t' + rank + '\t' + checkSenseStrand + '\t' + Arrays.toString(siRnaLengths);
+			byte[] screener = _coalescer.get(new Query(settings, mRnas), new Callable<byte[]>() {
+				public byte[] call()
+					throws IOException
+				{
+					RnaiScreenerCreator creator = new RnaiScreenerCreator();
+					creator.setMetrics(_metrics);
+					creator.setExecutor(_executor);
+					creator.setBackground(library);
+					creator.setCheckSenseStrand(checkSenseStrand);
+					if (rank) {
+						creator.setSiRnaRanker(SiRnaRanker.DEFAULT);
+					}
+					if (siRnaLengths != null) {
+						creator.setSiRnaLengths(siRnaLengths);
+					}
+					return screen(creator, mRnas, format);
+				}
+			});
+			respond(exchange, 200, format.getContentType(), screener);
+		} catch (QueryException qe) {
+			respond(exchange, qe._status, qe.getMessage());
+		} catch (IllegalArgumentException iae) {
+			respond(exchange, 400, iae.getMessage());
+		} catch (ExecutionException ee) {
+			// invalid mRNAs
+			if (ee.getCause() instanceof IOException || ee.getCause() instanceof IllegalArgumentException) {
+				respond(exchange, 400, ee.getCause().getMessage());
+			} else {
+				LOG.log(Level.SEVERE, "Exception while screening", ee.getCause());
+				respond(exchange, 500, String.valueOf(ee.getCause()));
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "Interrupted");
+		}
+	}
+
+	/**
+	 * Screens the given mRNAs and returns the screener in the given format
+	 */
+	static byte[] screen(RnaiScreenerCreator creator, byte[] mRnas, ScreenerFormat format)
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ScreenerSink sink = format.newSink(out);
+		try {
+			creator.createScreenerFromFasta(new FastaReader(ByteBuffer.wrap(mRnas)), sink);
+		} finally {
+			sink.close();
+		}
+		return out.toByteArray();
+	}
+
+	private static Map<String,String> parseQuery(String query) {
+		Map<String,String> parameters = new HashMap<String,String>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String parameter: query.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+					URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	private static int[] parseLengths(String lengths) {
+		String[] lengthArgs = lengths.split(",");
+		int[] siRnaLengths = new int[lengthArgs.length];
+		for (int i = 0; i < lengthArgs.length; ++i) {
+			siRnaLengths[i] = Integer.parseInt(lengthArgs[i].trim());
+		}
+		return siRnaLengths;
+	}
+
+	private static byte[] readAll(InputStream in)
+		throws IOException
+	{
+		try {
+			return in.readAllBytes();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message)
+		throws IOException
+	{
+		respond(exchange, status, "text/plain; charset=UTF-8", (message + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+		throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads the libraries and serves the screen queries until the JVM is stopped.
+	 * Each library is a FASTA file, a seed index file or a directory of background shards (see BackgroundOffTargetEngine).
+	 * Usage: java com.davidblondeau.cdd.ScreenerServer [--port <port>] --library <name>=<libraryPath> [--library <name>=<libraryPath>]...
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		Map<String,String> libraryFileNames = new HashMap<String,String>();
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--port") && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i].trim());
+			} else if (args[i].equals("--library") && i + 1 < args.length && args[i + 1].indexOf('=') > 0) {
+				String library = args[++i].trim();
+				libraryFileNames.put(library.substring(0, library.indexOf('=')), library.substring(library.indexOf('=') + 1));
+			} else {
+				libraryFileNames.clear();
+				break;
+			}
+		}
+		if (libraryFileNames.isEmpty()) {
+			LOG.info("Usage: java com.davidblondeau.cdd.ScreenerServer [--port <port>] --library <name>=<libraryPath> [--library <name>=<libraryPath>]...");
+			return;
+		}
+
+		try {
+			ScreenerServer server = new ScreenerServer(port);
+			for (Map.Entry<String,String> library: libraryFileNames.entrySet()) {
+				server.addLibrary(library.getKey(), BackgroundOffTargetEngine.load(new File(library.getValue())));
+			}
+			try {
+				server.getMetrics().register(ScreenerMetrics.DEFAULT_NAME);
+			} catch (JMException jme) {
+				LOG.warning("Could not register the metrics: " + jme.getMessage());
+			}
+			server.start();
+		} catch(Exception e) {
+			LOG.severe("Exception while starting the screener server: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.davidblondeau.cdd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Receives the siRNAs selected for each mRNA as soon as they are final, in the order of the mRNAs, so that a screener
+ * can be written while it is still being created.
+ * 
+ * The sinks are only called from the thread creating the screener. A sink is closed by the code that created it, 
+ * once the screener is written: RnaiScreenerCreator never closes the sinks it is given.
+ * 
+ * @author david
+ */
+public interface ScreenerSink extends Closeable {
+
+	/**
+	 * Receives the siRNAs selected for an mRNA
+	 * 
+	 * @param mRna
+	 * @param siRnas The selected siRNAs, less than 4 of them if the mRNA has a shortfall
+	 * @param shortfall Why there are less than 4 siRNAs, null if there are 4 of them
+	 * @throws IOException
+	 */
+	public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall) 
+		throws IOException;
+}
@@ -0,0 +1,152 @@
+package com.davidblondeau.cdd;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * The siRNA candidates of an mRNA, kept as a table of their offsets and lengths rather than as siRNAs.
+ *
+ * The candidates of a transcriptome are counted in tens of millions: in a LinkedHashSet, each one takes an SiRna and
+ * a hash entry, about 80 bytes, where it takes an int and a byte here. The siRNAs are created as the candidates are
+ * iterated, and are equal to the siRNAs of the same windows (see SiRna#equals(Object)).
+ *
+ * The candidates are appended by the finder and the set cannot be modified through the Set interface.
+ *
+ * @author david
+ */
+class SiRnaCandidates extends AbstractSet<SiRna> {
+	private final Rna _mRna;
+	private int[] _offsets;
+	private byte[] _lengths;
+	private int _size;
+
+	/**
+	 * @param mRna The mRNA the candidates target
+	 * @param capacity The number of candidates expected
+	 */
+	SiRnaCandidates(Rna mRna, int capacity) {
+		_mRna = mRna;
+		_offsets = new int[Math.max(1, capacity)];
+		_lengths = new byte[_offsets.length];
+	}
+
+	/**
+	 * Returns the candidates of the given tables one table after the other
+	 */
+	static SiRnaCandidates concat(Rna mRna, List<SiRnaCandidates> tables) {
+		int size = 0;
+		for (SiRnaCandidates table: tables) {
+			size += table._size;
+		}
+		SiRnaCandidates candidates = new SiRnaCandidates(mRna, size);
+		for (SiRnaCandidates table: tables) {
+			System.arraycopy(table._offsets, 0, candidates._offsets, candidates._size, table._size);
+			System.arraycopy(table._lengths, 0, candidates._lengths, candidates._size, table._size);
+			candidates._size += table._size;
+		}
+		return candidates;
+	}
+
+	/**
+	 * Appends a candidate
+	 *
+	 * @param offset The offset of the targeted nt sequence on the mRNA
+	 * @param length At most SiRnaFinder.MAX_LENGTH
+	 */
+	void append(int offset, int length) {
+		if (_size == _offsets.length) {
+			int capacity = _size + (_size >> 1) + 1;
+			int[] offsets = new int[capacity];
+			System.arraycopy(_offsets, 0, offsets, 0, _size);
+			_offsets = offsets;
+			byte[] lengths = new byte[capacity];
+			System.arraycopy(_lengths, 0, lengths, 0, _size);
+			_lengths = lengths;
+		}
+		_offsets[_size] = offset;
+		_lengths[_size] = (byte) length;
+		_size++;
+	}
+
+	/**
+	 * Returns the mRNA the candidates target
+	 */
+	Rna getMRna() {
+		return _mRna;
+	}
+
+	/**
+	 * Returns the offset of the index-th candidate
+	 */
+	int getOffset(int index) {
+		return _offsets[index];
+	}
+
+	/**
+	 * Returns the length of the index-th candidate
+	 */
+	int getLength(int index) {
+		return _lengths[index];
+	}
+
+	/**
+	 * Returns the siRNA of the index-th candidate
+	 */
+	SiRna get(int index) {
+		if (index < 0 || index >= _size) throw new IndexOutOfBoundsException("Candidate #" + index + " out of [0," + _size + "[");
+		return new SiRna(_mRna, _offsets[index], _lengths[index]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Scans the candidates for the given siRNA: O(n), the table has no index.
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof SiRna)) {
+			return false;
+		}
+		SiRna siRna = (SiRna) o;
+		if (siRna.getTargetMRna() != _mRna && (_mRna == null || !_mRna.equals(siRna.getTargetMRna()))) {
+			return false;
+		}
+		for (int i = 0; i < _size; ++i) {
+			if (_offsets[i] == siRna.getMRnaOffset() && _lengths[i] == siRna.getLength()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Iterates the candidates in the order they were appended, creating their siRNAs as they are read
+	 */
+	@Override
+	public Iterator<SiRna> iterator() {
+		return new Iterator<SiRna>() {
+			private int _next;
+
+			public boolean hasNext() {
+				return _next < _size;
+			}
+
+			public SiRna next() {
+				if (_next >= _size) throw new NoSuchElementException();
+				return get(_next++);
+			}
+		};
+	}
+}
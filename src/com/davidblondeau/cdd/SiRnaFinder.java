@@ -3,12 +3,15 @@
  */
 package com.davidblondeau.cdd;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
 import com.davidblondeau.cdd.na.NaFactory;
-import com.davidblondeau.cdd.na.NtSequence;
 import com.davidblondeau.cdd.na.Rna;
 import com.davidblondeau.cdd.na.SiRna;
 
@@ -19,7 +22,7 @@ import com.davidblondeau.cdd.na.SiRna;
  * iii. AU-richness in the 5' terminal one-third of the antisense strand; and
  * iv. the absence of any GC stretch over 9bp in length.
  * 
- * This will find siRNA of the given length
+ * This will find siRNAs of one or several lengths, in a single scan of the mRNA.
  *  
  * @author david
  *
@@ -31,7 +34,40 @@ public class SiRnaFinder {
 	 */
 	private static final Logger LOG = Logger.getLogger("cdd.SiRnaFinder");
 	
-	private int _siRnaLen;
+	/**
+	 * GC stretches of this length or more are not allowed in siRNAs
+	 */
+	private static final int MIN_GC_STRETCH_LENGTH = 10;
+	
+	/**
+	 * Number of the last nucleotides of the scan remembered, more than the longest siRNA
+	 */
+	private static final int RING_SIZE = 64;
+	
+	/**
+	 * Shortest siRNA the rules apply to: rule ii. looks at the 3rd nt
+	 */
+	public static final int MIN_LENGTH = 3;
+	
+	/**
+	 * Longest siRNA that can be found
+	 */
+	public static final int MAX_LENGTH = RING_SIZE;
+	
+	/**
+	 * Number of candidates of each length the tables of an mRNA start with
+	 */
+	private static final int INITIAL_CANDIDATES = 16;
+	
+	/**
+	 * The lengths of the siRNAs to find, in the order of preference
+	 */
+	private int[] _siRnaLens;
+	
+	/**
+	 * Counts the windows scanned and the rules they break. Null not to count them.
+	 */
+	private ScreenerMetrics _metrics;
 
 	public SiRnaFinder() {
 		this(21);
@@ -39,31 +75,137 @@ public class SiRnaFinder {
 	
 	public SiRnaFinder(int length) {
 		// Don't know if the rules to select are the same for 22 and 23 nt sequences. Might have to remove this parameter if it is not the case.
-		// Also check the length is between 21 and 23
-		_siRnaLen = length;
+		this(new int[] {length});
+	}
+	
+	/**
+	 * @param lengths The lengths of the siRNAs to find, in the order of preference, for instance 21, 22 and 23.
+	 * The candidates of all the lengths are found in a single scan of the mRNA.
+	 */
+	public SiRnaFinder(int... lengths) {
+		if (lengths == null || lengths.length == 0) throw new IllegalArgumentException("No siRNA length");
+		Set<Integer> distinctLengths = new LinkedHashSet<Integer>();
+		for (int length: lengths) {
+			if (length < MIN_LENGTH || length > MAX_LENGTH) throw new IllegalArgumentException("siRNA length should be between " + MIN_LENGTH + " and " + MAX_LENGTH + ": " + length);
+			distinctLengths.add(length);
+		}
+		_siRnaLens = new int[distinctLengths.size()];
+		int i = 0;
+		for (int length: distinctLengths) {
+			_siRnaLens[i++] = length;
+		}
+	}
+	
+	/**
+	 * Returns the lengths of the siRNAs found, in the order of preference
+	 */
+	public int[] getLengths() {
+		return _siRnaLens.clone();
+	}
+	
+	/**
+	 * Returns the metrics counting the windows scanned, null if they are not counted
+	 */
+	public ScreenerMetrics getMetrics() {
+		return _metrics;
+	}
+	
+	/**
+	 * Sets the metrics counting the windows scanned and the rules they break. The counts of each mRNA are added
+	 * once it is scanned. Null, the default, not to count them.
+	 */
+	public void setMetrics(ScreenerMetrics metrics) {
+		_metrics = metrics;
 	}
 
 	/**
 	 * Find the siRNA candidates for the given mRNA 
+	 * 
+	 * The mRNA is scanned once for all the lengths: the AU count of rule iii. and the GC stretches of rule iv. are updated
+	 * as the scan goes, one nucleotide at a time, and each window is checked once its last nucleotide is read.
+	 * 
 	 * @param mRna The mRNA
-	 * @return An ordered set of siRNA candidates
+	 * @return An ordered set of siRNA candidates: by length, in the order of preference, then by offset. The set is a 
+	 * compact table of the candidates that cannot be modified, and whose contains(Object) is a linear scan: copy it 
+	 * into a LinkedHashSet to modify it or to look candidates up.
 	 */
 	public Set<SiRna> findCandidates(Rna mRna) {
+		return SiRnaCandidates.concat(mRna, scan(mRna));
+	}
+	
+	/**
+	 * Same as findCandidates(Rna), the candidates being grouped by length.
+	 * 
+	 * @param mRna The mRNA
+	 * @return The ordered set of siRNA candidates of each length, in the order of preference of the lengths
+	 */
+	public Map<Integer,Set<SiRna>> findCandidatesByLength(Rna mRna) {
+		List<SiRnaCandidates> candidates = scan(mRna);
+		Map<Integer,Set<SiRna>> candidatesByLength = new LinkedHashMap<Integer,Set<SiRna>>();
+		for (int l = 0; l < _siRnaLens.length; ++l) {
+			candidatesByLength.put(_siRnaLens[l], candidates.get(l));
+		}
+		return candidatesByLength;
+	}
+	
+	/**
+	 * Scans the mRNA once and returns the candidates of each length, by offset
+	 */
+	private List<SiRnaCandidates> scan(Rna mRna) {
+		List<SiRnaCandidates> candidates = new ArrayList<SiRnaCandidates>(_siRnaLens.length);
+		// the 5' terminal one-third of the antisense strand is its last thirdLengths[l] nt
+		int[] thirdLengths = new int[_siRnaLens.length];
+		int[] auCounts = new int[_siRnaLens.length];
+		for (int l = 0; l < _siRnaLens.length; ++l) {
+			candidates.add(new SiRnaCandidates(mRna, INITIAL_CANDIDATES));
+			thirdLengths[l] = _siRnaLens[l] - _siRnaLens[l]*2/3;
+		}
 		
-		Set<SiRna> candidates = new  LinkedHashSet<SiRna>();
-
-		for (int i = 1; i <= mRna.length() - _siRnaLen  + 1; ++i) {
-			NtSequence siRnaCandidate = mRna.getSubNtSequence(i, i + _siRnaLen - 1);
-			if (siRnaCandidate.hasAorU(_siRnaLen) // i. A/U at the 5' end of the antisense strand;
-				&& siRnaCandidate.hasCorG(3) // ii. G/C at the 5' end of the sense strand -> that is at the 3rd nt from the 3' end of the antisense strand
-				&& siRnaCandidate.getSubNtSequence(_siRnaLen*2/3 + 1, _siRnaLen).isAURich() // iii. AU-richness in the 5' terminal one-third of the antisense strand
-				&& !siRnaCandidate.hasGCStretch(10) //iv. the absence of any GC stretch over 9bp in length.		
-				) 
-			{
-				candidates.add(new SiRna(mRna, i-1, _siRnaLen));
+		// whether each of the last nucleotides read is a C or a G, any other being an A or a U
+		boolean[] cOrG = new boolean[RING_SIZE];
+		int gcStretchLength = 0;
+		// the GC stretches are searched up to the nt before the last one of the window, as NtSequence#hasGCStretch does
+		int lastLongGCStretchEnd = 0;
+		// the windows rejected by each rule, by ScreenerMetrics.Rule ordinal
+		int[] rejections = new int[ScreenerMetrics.Rule.values().length];
+		int windowCount = 0;
+		int candidateCount = 0;
+		
+		for (int pos = 1; pos <= mRna.length(); ++pos) {
+			boolean isCorG = mRna.hasCorG(pos);
+			cOrG[pos % RING_SIZE] = isCorG;
+			
+			for (int l = 0; l < _siRnaLens.length; ++l) {
+				int siRnaLen = _siRnaLens[l];
+				auCounts[l] += (isCorG ? 0 : 1) - (pos > thirdLengths[l] && !cOrG[(pos - thirdLengths[l]) % RING_SIZE] ? 1 : 0);
+				
+				// the window of this length ending here
+				int i = pos - siRnaLen + 1;
+				if (i < 1) continue;
+				windowCount++;
+				if (isCorG) { // i. A/U at the 5' end of the antisense strand;
+					rejections[0]++;
+				} else if (!cOrG[(i + 2) % RING_SIZE]) { // ii. G/C at the 5' end of the sense strand -> that is at the 3rd nt from the 3' end of the antisense strand
+					rejections[1]++;
+				} else if (2*auCounts[l] <= thirdLengths[l]) { // iii. AU-richness in the 5' terminal one-third of the antisense strand
+					rejections[2]++;
+				} else if (lastLongGCStretchEnd >= i + MIN_GC_STRETCH_LENGTH - 1) { //iv. the absence of any GC stretch over 9bp in length: none ends far enough in the window
+					rejections[3]++;
+				} else {
+					candidates.get(l).append(i-1, siRnaLen);
+					candidateCount++;
+				}
+			}
+			
+			gcStretchLength = isCorG ? gcStretchLength + 1 : 0;
+			if (gcStretchLength >= MIN_GC_STRETCH_LENGTH) {
+				lastLongGCStretchEnd = pos;
 			}
 		}
 		
+		if (_metrics != null) {
+			_metrics.addScan(windowCount, rejections, candidateCount);
+		}
 		return candidates;
 	}
 
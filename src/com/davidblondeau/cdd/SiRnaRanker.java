@@ -0,0 +1,204 @@
+package com.davidblondeau.cdd;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+
+/**
+ * Selects the best siRNA candidates of an mRNA rather than the first ones by offset.
+ *
+ * Each candidate gets a score made of:
+ * - its AU-richness margin: how far the AU count of the 5' terminal one-third of the antisense strand is above half of it (rule iii.);
+ * - its GC content: best between 30% and 52%, as recommended by Reynolds et al. Nat. Biotechnol., 22, 326-330;
+ * - its spread: how far it is from the candidates already selected for the mRNA, so that the selected siRNAs cover
+ * the whole transcript rather than overlapping.
+ *
+ * The candidates are kept in a heap by score and the off-target checks are only run for the candidate at the top,
+ * until enough of them are confirmed: the best candidates are checked first and the others never are.
+ * Selecting a candidate can only lower the spread of the others, so a candidate whose spread is stale is scored 
+ * again and pushed back before being checked.
+ *
+ * @author david
+ */
+public class SiRnaRanker {
+	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
+	
+	/**
+	 * Ranker giving the same weight to the AU-richness margin, the GC content and the spread
+	 */
+	public static final SiRnaRanker DEFAULT = new SiRnaRanker(1, 1, 1);
+	
+	/**
+	 * GC content range recommended for siRNAs
+	 */
+	private static final double MIN_GC_CONTENT = 0.30;
+	private static final double MAX_GC_CONTENT = 0.52;
+	
+	private double _auWeight;
+	private double _gcWeight;
+	private double _spreadWeight;
+	
+	/**
+	 * @param auWeight Weight of the AU-richness margin
+	 * @param gcWeight Weight of the GC content
+	 * @param spreadWeight Weight of the spread
+	 */
+	public SiRnaRanker(double auWeight, double gcWeight, double spreadWeight) {
+		if (auWeight < 0 || gcWeight < 0 || spreadWeight < 0) throw new IllegalArgumentException("Negative weight");
+		_auWeight = auWeight;
+		_gcWeight = gcWeight;
+		_spreadWeight = spreadWeight;
+	}
+	
+	/**
+	 * Returns the score of a candidate that does not depend on the other candidates, between 0 and auWeight + gcWeight
+	 */
+	public double score(SiRna candidate) {
+		if (candidate == null) throw new IllegalArgumentException("Null candidate");
+		
+		Rna mRna = candidate.getTargetMRna();
+		int offset = candidate.getMRnaOffset();
+		int length = candidate.getLength();
+		int thirdOffset = length*2/3;
+		int thirdLength = length - thirdOffset;
+		int auCount = 0;
+		int gcCount = 0;
+		for (int pos = 1; pos <= length; ++pos) {
+			if (mRna.hasCorG(offset + pos)) {
+				gcCount++;
+			} else if (pos > thirdOffset) {
+				auCount++;
+			}
+		}
+		
+		double auMargin = Math.max(0, 2.0*auCount - thirdLength) / thirdLength;
+		double gcContent = (double) gcCount / length;
+		double gcDistance = gcContent < MIN_GC_CONTENT ? MIN_GC_CONTENT - gcContent : Math.max(0, gcContent - MAX_GC_CONTENT);
+		return _auWeight * auMargin + _gcWeight * (1 - gcDistance / MIN_GC_CONTENT);
+	}
+	
+	/**
+	 * Returns the spread of a candidate given the candidates already selected, between 0 and 1: its distance
+	 * to the closest selected candidate relative to the distance between evenly spaced siRNAs, at most 1.
+	 * Overlapping candidates have a spread of 0.
+	 */
+	double spread(SiRna candidate, List<SiRna> selected, int count) {
+		if (selected.isEmpty()) return 1;
+		
+		double evenDistance = Math.max(1.0, (double) candidate.getTargetMRna().length() / count);
+		int minDistance = Integer.MAX_VALUE;
+		for (SiRna siRna: selected) {
+			int gap = candidate.getMRnaOffset() < siRna.getMRnaOffset() 
+				? siRna.getMRnaOffset() - candidate.getMRnaOffset() - candidate.getLength() 
+				: candidate.getMRnaOffset() - siRna.getMRnaOffset() - siRna.getLength();
+			minDistance = Math.min(minDistance, Math.max(0, gap));
+		}
+		return Math.min(1, minDistance / evenDistance);
+	}
+	
+	/**
+	 * Returns the best candidates that do not off-target the mRNAs of the given engine, best first.
+	 * 
+	 * The candidates of several lengths are ranked within each length, the lengths in the order they first appear in 
+	 * the set, as SiRnaFinder orders them by preference: a candidate of a length is only checked once the candidates 
+	 * of the preferred lengths are exhausted.
+	 * 
+	 * @param candidates The candidates of one mRNA
+	 * @param offTargetEngine
+	 * @param count The number of siRNAs to select
+	 * @return Less than count siRNAs if there are not enough off-targeting free candidates
+	 */
+	public Set<SiRna> select(Set<SiRna> candidates, OffTargetEngine offTargetEngine, int count) {
+		if (candidates == null) throw new IllegalArgumentException("Null candidates");
+		if (offTargetEngine == null) throw new IllegalArgumentException("Null off-target engine");
+		
+		PriorityQueue<Ranked> heap = new PriorityQueue<Ranked>(Math.max(1, candidates.size()), new Comparator<Ranked>() {
+			public int compare(Ranked r1, Ranked r2) {
+				if (r1._preference != r2._preference) return Integer.compare(r1._preference, r2._preference);
+				int byScore = Double.compare(r2.score(), r1.score());
+				return byScore != 0 ? byScore : Integer.compare(r1._rank, r2._rank);
+			}
+		});
+		// the preference of each length is the order it first appears in
+		Map<Integer,Integer> preferences = new HashMap<Integer,Integer>();
+		int rank = 0;
+		for (SiRna candidate: candidates) {
+			Integer preference = preferences.get(candidate.getLength());
+			if (preference == null) {
+				preference = preferences.size();
+				preferences.put(candidate.getLength(), preference);
+			}
+			Ranked ranked = new Ranked(candidate, score(candidate), rank++);
+			ranked._preference = preference;
+			heap.add(ranked);
+		}
+		
+		List<SiRna> selected = new ArrayList<SiRna>(count);
+		int checkCount = 0;
+		while (selected.size() < count && !heap.isEmpty()) {
+			Ranked top = heap.poll();
+			if (top._selectedCount < selected.size()) {
+				// selected siRNAs were added since the spread was computed
+				top._spread = spread(top._siRna, selected, count);
+				top._selectedCount = selected.size();
+				heap.add(top);
+				continue;
+			}
+			
+			checkCount++;
+			boolean offTargeting = offTargetEngine.canOffTarget(top._siRna);
+			if (!offTargeting) {
+				selected.add(top._siRna);
+			}
+			if (LOG.isLoggable(Level.FINE)) {
+				LOG.fine(top._siRna + (offTargeting ? " could" : " would not") + " off-target the other mRNAs, score " + top.score());
+			}
+		}
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("Checked " + checkCount + " of " + candidates.size() + " candidates to select " + selected.size() + " siRNAs");
+		}
+		return new LinkedHashSet<SiRna>(selected);
+	}
+	
+	/**
+	 * A candidate in the heap
+	 */
+	private class Ranked {
+		private SiRna _siRna;
+		private double _score;
+		private double _spread = 1;
+		/**
+		 * Number of siRNAs selected when the spread was computed
+		 */
+		private int _selectedCount;
+		/**
+		 * Preference of the length of the candidate, 0 for the preferred one
+		 */
+		private int _preference;
+		/**
+		 * Position of the candidate in its set, to break ties
+		 */
+		private int _rank;
+		
+		Ranked(SiRna siRna, double score, int rank) {
+			_siRna = siRna;
+			_score = score;
+			_rank = rank;
+		}
+		
+		double score() {
+			return _score + _spreadWeight * _spread;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.davidblondeau.cdd;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Base of the sinks writing the screener as text, one line per mRNA.
+ * 
+ * The sequences are written one nt at a time, straight from the mRNAs, without building their strings. The writer is 
+ * flushed after the line of each mRNA, so that its siRNAs can be read as soon as they are selected.
+ * 
+ * @author david
+ */
+abstract class TextScreenerSink implements ScreenerSink {
+	protected BufferedWriter _writer;
+	
+	/**
+	 * @param writer Closed by close()
+	 */
+	TextScreenerSink(Writer writer) {
+		if (writer == null) throw new IllegalArgumentException("Null writer");
+		_writer = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.ScreenerSink#write(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+	 */
+	public final void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		writeRecord(mRna, siRnas, shortfall);
+		_writer.flush();
+	}
+	
+	/**
+	 * Writes the line of an mRNA, without flushing it
+	 */
+	protected abstract void writeRecord(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException;
+	
+	/**
+	 * Writes the name of the mRNA, its sequence if it has none
+	 */
+	protected void writeId(Rna mRna) 
+		throws IOException
+	{
+		if (mRna.getName() != null) {
+			_writer.write(mRna.getName());
+		} else {
+			writeNts(mRna, 1, mRna.length());
+		}
+	}
+	
+	/**
+	 * Writes the sequence of the mRNA matching the antisense strand of the siRNA
+	 */
+	protected void writeSequence(SiRna siRna) 
+		throws IOException
+	{
+		writeNts(siRna.getTargetMRna(), siRna.getMRnaOffset() + 1, siRna.getMRnaOffset() + siRna.getLength());
+	}
+	
+	private void writeNts(NtSequence seq, int firstNt, int lastNt) 
+		throws IOException
+	{
+		for (int pos = firstNt; pos <= lastNt; ++pos) {
+			_writer.write(seq.getNt(pos));
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+		throws IOException
+	{
+		_writer.close();
+	}
+}
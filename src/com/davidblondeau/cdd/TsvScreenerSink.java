@@ -0,0 +1,64 @@
+package com.davidblondeau.cdd;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Writes the screener as tab-separated values, one row per mRNA after a header row. The columns are:
+ * - mrna: the name of the mRNA, its sequence if it has none;
+ * - offsets: the offsets of the siRNAs in the mRNA, separated by commas;
+ * - sequences: the sequences matched by the siRNAs, separated by commas;
+ * - missing: the number of siRNAs missing to complete the screen of the mRNA;
+ * - shortfall: why they are missing, NOT_ENOUGH_CANDIDATES or OFF_TARGETS, empty if none is.
+ * 
+ * @author david
+ */
+public class TsvScreenerSink extends TextScreenerSink {
+	public static final String HEADER = "mrna\toffsets\tsequences\tmissing\tshortfall";
+	
+	/**
+	 * @param writer Closed by close()
+	 */
+	public TsvScreenerSink(Writer writer)
+		throws IOException
+	{
+		super(writer);
+		_writer.write(HEADER);
+		_writer.write('\n');
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.TextScreenerSink#writeRecord(com.davidblondeau.cdd.na.Rna, java.util.Set, com.davidblondeau.cdd.RnaiScreener.Shortfall)
+	 */
+	protected void writeRecord(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall)
+		throws IOException
+	{
+		writeId(mRna);
+		_writer.write('\t');
+		boolean first = true;
+		for (SiRna siRna: siRnas) {
+			if (!first) _writer.write(',');
+			_writer.write(Integer.toString(siRna.getMRnaOffset()));
+			first = false;
+		}
+		_writer.write('\t');
+		first = true;
+		for (SiRna siRna: siRnas) {
+			if (!first) _writer.write(',');
+			writeSequence(siRna);
+			first = false;
+		}
+		_writer.write('\t');
+		_writer.write(Integer.toString(shortfall != null ? shortfall.getMissingCount() : 0));
+		_writer.write('\t');
+		if (shortfall != null) {
+			_writer.write(shortfall.getReason().name());
+		}
+		_writer.write('\n');
+	}
+}
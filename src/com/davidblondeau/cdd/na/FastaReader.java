@@ -0,0 +1,251 @@
+package com.davidblondeau.cdd.na;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads RNAs one at a time from a FASTA input, packing the nucleotides as they are read.
+ *
+ * The input is made of:
+ * - header lines starting with '>': the first word of the header is the name of the RNA of the following lines;
+ * - sequence lines: after a header, the lines up to the next header are the sequence of the same RNA. Before any
+ * header, each line is a whole RNA sequence, as in the input of RnaiScreenerCreator;
+ * - empty lines and lines starting with '#', which are ignored.
+ *
+ * Nucleotides can be lower or upper case. T is read as U. Any other character is an error.
+ *
+ * Only the RNA being read is held in memory, so the RNAs can be processed while the input is still being read.
+ * The RNAs are numbered in the order they are read (see Rna#getId()).
+ *
+ * @author david
+ */
+public class FastaReader implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	/**
+	 * The channel to read from, null when the whole input is in the buffer
+	 */
+	private ReadableByteChannel _channel;
+	private ByteBuffer _buffer;
+	private int _lineCount;
+
+	/**
+	 * Number of RNAs read, the id of the next one
+	 */
+	private int _rnaCount;
+
+	/**
+	 * Name given by the header of the next RNA, null if the next RNA has no header
+	 */
+	private String _nextName;
+	private boolean _nextHasHeader;
+
+	/**
+	 * Nucleotides of the RNA being read
+	 */
+	private long[] _words = new long[16];
+	private int _length;
+
+	/**
+	 * Bytes of the header or comment line being read
+	 */
+	private ByteArrayOutputStream _line = new ByteArrayOutputStream();
+
+	/**
+	 * @param channel The channel the input is read from. Closed by close().
+	 */
+	public FastaReader(ReadableByteChannel channel) {
+		if (channel == null) throw new IllegalArgumentException("Null channel");
+		_channel = channel;
+		_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		_buffer.flip();
+	}
+
+	/**
+	 * @param buffer A buffer holding the whole input, for instance a memory-mapped file
+	 */
+	public FastaReader(ByteBuffer buffer) {
+		if (buffer == null) throw new IllegalArgumentException("Null buffer");
+		_buffer = buffer;
+	}
+
+	/**
+	 * Opens a FASTA file. Gzipped files are uncompressed on the fly, the other files are memory-mapped.
+	 */
+	public static FastaReader open(File file)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			in.mark(2);
+			int magic = in.read() | (in.read() << 8);
+			in.reset();
+			if (magic == GZIP_MAGIC) {
+				FastaReader reader = new FastaReader(Channels.newChannel(new GZIPInputStream(in, BUFFER_SIZE)));
+				// closed by the reader
+				in = null;
+				return reader;
+			}
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				FastaReader reader = new FastaReader(channel);
+				// closed by the reader
+				channel = null;
+				return reader;
+			}
+			return new FastaReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			// the mapping stays valid
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the next RNA
+	 *
+	 * @return The RNA, null if there is none left
+	 * @throws IOException If the input cannot be read or is not valid
+	 */
+	public Rna read()
+		throws IOException
+	{
+		Arrays.fill(_words, 0, NtCodec.wordsFor(_length), 0L);
+		_length = 0;
+		String name = _nextName;
+		boolean hasHeader = _nextHasHeader;
+		_nextName = null;
+		_nextHasHeader = false;
+
+		int b;
+		while ((b = nextByte()) >= 0) {
+			if (b == '\n') {
+				// empty line
+				_lineCount++;
+			} else if (b == '>') {
+				_lineCount++;
+				String header = readLine().trim();
+				String headerName = header.split("\\s+", 2)[0];
+				if (hasHeader) {
+					_nextName = headerName;
+					_nextHasHeader = true;
+					return newRna(name);
+				}
+				name = headerName;
+				hasHeader = true;
+			} else if (b == '#') {
+				_lineCount++;
+				readLine();
+			} else {
+				_lineCount++;
+				readSequenceLine(b);
+				if (!hasHeader && _length > 0) {
+					return newRna(null);
+				}
+			}
+		}
+
+		return hasHeader || _length > 0 ? newRna(name) : null;
+	}
+
+	/**
+	 * Appends the nucleotides of the current line, starting with the given byte
+	 */
+	private void readSequenceLine(int b)
+		throws IOException
+	{
+		for (; b >= 0 && b != '\n'; b = nextByte()) {
+			int code;
+			switch (b) {
+			case 'a': case 'A': code = NtCodec.A; break;
+			case 'c': case 'C': code = NtCodec.C; break;
+			case 'g': case 'G': code = NtCodec.G; break;
+			case 'u': case 'U': case 't': case 'T': code = NtCodec.U; break;
+			case ' ': case '\t': case '\r': continue;
+			default:
+				throw new IOException("Error at line " + _lineCount + " of input: invalid nt '" + (char) b + "'");
+			}
+			if (_length == _words.length * NtCodec.NTS_PER_WORD) {
+				long[] words = new long[_words.length * 2];
+				System.arraycopy(_words, 0, words, 0, _words.length);
+				_words = words;
+			}
+			NtCodec.set(_words, _length++, code);
+		}
+	}
+
+	/**
+	 * Returns the rest of the current line, decoded as UTF-8
+	 */
+	private String readLine()
+		throws IOException
+	{
+		_line.reset();
+		for (int b = nextByte(); b >= 0 && b != '\n'; b = nextByte()) {
+			if (b != '\r') {
+				_line.write(b);
+			}
+		}
+		return new String(_line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private Rna newRna(String name) {
+		long[] words = new long[NtCodec.wordsFor(_length)];
+		System.arraycopy(_words, 0, words, 0, words.length);
+		return new PackedRna(_rnaCount++, name, words, _length);
+	}
+
+	/**
+	 * Returns the next byte of the input, -1 at the end of the input
+	 */
+	private int nextByte()
+		throws IOException
+	{
+		if (!_buffer.hasRemaining()) {
+			if (_channel == null) return -1;
+			_buffer.clear();
+			int read;
+			do {
+				read = _channel.read(_buffer);
+			} while (read == 0);
+			_buffer.flip();
+			if (read < 0) return -1;
+		}
+		return _buffer.get() & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+		throws IOException
+	{
+		if (_channel != null) {
+			_channel.close();
+		}
+	}
+}
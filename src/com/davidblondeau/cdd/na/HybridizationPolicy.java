@@ -0,0 +1,48 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Decides whether the guide (antisense) strand of an siRNA hybridizes well enough with a window of an mRNA
+ * to silence it, given the positions where they mismatch.
+ * 
+ * The positions are those of the guide strand, starting at 1 from its 5' end. The guide strand is the reverse
+ * complement of the sequence it matches: guide position p pairs with position length - p + 1 of the matching sequence.
+ * The seed region is made of guide positions 2 to 8, the mRNA is cleaved opposite guide positions 10 and 11.
+ * 
+ * @author david
+ */
+public interface HybridizationPolicy {
+	/**
+	 * First guide position of the seed region
+	 */
+	public static final int SEED_FIRST = 2;
+	
+	/**
+	 * Last guide position of the seed region
+	 */
+	public static final int SEED_LAST = 8;
+	
+	/**
+	 * Returns true if a guide strand of the given length hybridizes well with a window it mismatches at the given positions.
+	 * 
+	 * @param mismatches The mismatching guide positions: bit p-1 is set if guide position p mismatches
+	 * @param length The length of the guide strand, at most 64
+	 * @return
+	 */
+	public boolean hybridizeWell(long mismatches, int length);
+	
+	/**
+	 * Returns true if a window only hybridizes well if it matches the seed region exactly.
+	 * The off-target engines then only look at the windows matching the seed.
+	 * 
+	 * @return
+	 */
+	public boolean requiresSeedMatch();
+	
+	/**
+	 * Returns the largest number of mismatches a window that hybridizes well can have.
+	 * The off-target engines use it to prune the windows when the seed match is not required.
+	 * 
+	 * @return
+	 */
+	public int getMaxMismatches();
+}
@@ -0,0 +1,56 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Hybridization policy counting the mismatches, whatever their positions: a window hybridizes well if it
+ * has at most a given number of mismatches with the siRNA over its length.
+ * 
+ * @author david
+ */
+public class MismatchCountPolicy implements HybridizationPolicy {
+	/**
+	 * The policy of the screener: at most 2 mismatches over the length of the siRNA
+	 */
+	public static final MismatchCountPolicy DEFAULT = new MismatchCountPolicy(RnaImpl.MAX_DISTANCE_TO_HYBRIDIZE_WELL);
+	
+	private int _maxMismatches;
+	
+	/**
+	 * @param maxMismatches The number of mismatches up to which a window hybridizes well
+	 */
+	public MismatchCountPolicy(int maxMismatches) {
+		if (maxMismatches < 0) throw new IllegalArgumentException("Negative mismatch count: " + maxMismatches);
+		_maxMismatches = maxMismatches;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#hybridizeWell(long, int)
+	 */
+	public boolean hybridizeWell(long mismatches, int length) {
+		return Long.bitCount(mismatches) <= _maxMismatches;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#requiresSeedMatch()
+	 */
+	public boolean requiresSeedMatch() {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#getMaxMismatches()
+	 */
+	public int getMaxMismatches() {
+		return _maxMismatches;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "at most " + _maxMismatches + " mismatch(es)";
+	}
+}
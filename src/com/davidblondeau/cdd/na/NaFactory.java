@@ -25,7 +25,7 @@ public class NaFactory {
 	 * Checks that the given sequence is a valid RNA sequence and returns an internal representation of that RNA sequence.
 	 * @param sequence The RNA sequence
 	 * @throws IllegalArgumentException if the sequence contains other characters than aAuUcCgG
-	 * @return An internal representation of the corresponding RNA
+	 * @return An internal representation of the corresponding RNA, packed 4 nt per byte
 	 */
 	public static Rna newRna(String sequence) {
 		if (sequence == null) throw new IllegalArgumentException("Null sequence");
@@ -36,6 +36,6 @@ public class NaFactory {
 		if (matcher.find()) {
 			throw new IllegalArgumentException("The given nt sequence is not a valid RNA sequence. It should only contain aAuUcCgG. It contains '" + matcher.group() + "' at nt #" + (matcher.start() + 1));
 		}
-		return new RnaImpl(sequence);
+		return new PackedRna(sequence);
 	}
 }
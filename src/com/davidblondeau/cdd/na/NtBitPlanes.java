@@ -0,0 +1,111 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Encoding of a nt sequence of at most 64 nucleotides as two 64-bit bitplanes, one holding the high bit
+ * and the other the low bit of the 2-bit code (see {@link NtCodec}) of each nucleotide.
+ *
+ * The nucleotide at position i (starting at 0) is stored at bit length-1-i, so that a window can be rolled
+ * along a longer sequence by shifting the planes left and adding the next nucleotide at bit 0 (see {@link #roll(long, int, int)}).
+ * The number of mismatches between two sequences is then the bit count of the union of the XOR of their planes.
+ *
+ * @author david
+ */
+public final class NtBitPlanes {
+	/**
+	 * Maximum length of the sequences that can be encoded
+	 */
+	public static final int MAX_LENGTH = 64;
+
+	private final long _high;
+	private final long _low;
+	private final int _length;
+
+	/**
+	 * @param seq A sequence of at most 64 nucleotides
+	 * @throws IllegalArgumentException if the sequence is too long
+	 */
+	public NtBitPlanes(NtSequence seq) {
+		if (seq == null) throw new IllegalArgumentException("Null seq");
+		if (seq.length() > MAX_LENGTH) throw new IllegalArgumentException("Sequence longer than " + MAX_LENGTH + " nt");
+		long high = 0;
+		long low = 0;
+		for (int pos = 1; pos <= seq.length(); ++pos) {
+			int code = NtCodec.encode(seq.getNt(pos));
+			high = roll(high, code >>> 1, MAX_LENGTH);
+			low = roll(low, code & 1, MAX_LENGTH);
+		}
+		_high = high;
+		_low = low;
+		_length = seq.length();
+	}
+
+	public long getHigh() {
+		return _high;
+	}
+
+	public long getLow() {
+		return _low;
+	}
+
+	public int length() {
+		return _length;
+	}
+
+	/**
+	 * Returns the number of mismatches between this sequence and the given one, which must have the same length
+	 */
+	public int distanceTo(NtBitPlanes planes) {
+		return distance(_high, _low, planes._high, planes._low);
+	}
+
+	/**
+	 * Returns the number of mismatches between this sequence and the window encoded by the given planes
+	 */
+	public int distanceTo(long high, long low) {
+		return distance(_high, _low, high, low);
+	}
+
+	/**
+	 * Returns true if the number of mismatches between this sequence and the window encoded by the given planes
+	 * is at most maxDistance.
+	 * Only the mismatches up to the first one over the limit are counted.
+	 */
+	public boolean isWithin(long high, long low, int maxDistance) {
+		long mismatches = (_high ^ high) | (_low ^ low);
+		// clear the lowest mismatches one at a time: we only need to know there are more than maxDistance
+		for (int i = 0; i < maxDistance && mismatches != 0; ++i) {
+			mismatches &= mismatches - 1;
+		}
+		return mismatches == 0;
+	}
+
+	/**
+	 * Returns the mask of the mismatches between this sequence and the window encoded by the given planes:
+	 * bit length-1-i is set if the nucleotides at position i (starting at 0) differ.
+	 * For an siRNA matching sequence, bit p-1 is thus set if the guide strand mismatches at its position p.
+	 */
+	public long mismatches(long high, long low) {
+		return (_high ^ high) | (_low ^ low);
+	}
+
+	/**
+	 * Returns the number of mismatches between the sequences encoded by the given planes
+	 */
+	public static int distance(long high1, long low1, long high2, long low2) {
+		return Long.bitCount((high1 ^ high2) | (low1 ^ low2));
+	}
+
+	/**
+	 * Shifts a plane one nucleotide to the left, adding the given bit and only keeping the last length nucleotides
+	 */
+	public static long roll(long plane, int bit, int length) {
+		return ((plane << 1) | bit) & mask(length);
+	}
+
+	/**
+	 * Returns the mask of the bits used by a plane of the given length
+	 */
+	public static long mask(int length) {
+		return length >= MAX_LENGTH ? -1L : (1L << length) - 1;
+	}
+}
@@ -0,0 +1,166 @@
+package com.davidblondeau.cdd.na;
+
+import java.nio.LongBuffer;
+
+/**
+ * 2-bit encoding of RNA nucleotides and helpers to work on sequences packed 32 nucleotides per long.
+ *
+ * The nucleotides are encoded as a=00, c=01, g=10 and u=11. With this encoding:
+ * - a nucleotide is a Cytidine or a Guanosine if and only if its two bits differ;
+ * - the complement of a nucleotide is its bitwise negation.
+ *
+ * In a packed word, the nucleotide at position i (starting at 0) is stored on bits 2i and 2i+1.
+ *
+ * @author david
+ */
+public final class NtCodec {
+	public static final int A = 0;
+	public static final int C = 1;
+	public static final int G = 2;
+	public static final int U = 3;
+
+	/**
+	 * Number of nucleotides stored in a long
+	 */
+	public static final int NTS_PER_WORD = 32;
+
+	/**
+	 * The low bit of every nucleotide of a packed word
+	 */
+	public static final long LOW_BITS = 0x5555555555555555L;
+
+	private static final char[] NTS = {'a', 'c', 'g', 'u'};
+
+	private NtCodec() {
+	}
+
+	/**
+	 * Returns the code of the given nucleotide, -1 if it is not one of a, u, c or g
+	 */
+	public static int encode(char nt) {
+		switch (nt) {
+		case 'a': return A;
+		case 'c': return C;
+		case 'g': return G;
+		case 'u': return U;
+		default: return -1;
+		}
+	}
+
+	/**
+	 * Returns the nucleotide of the given code
+	 */
+	public static char decode(int code) {
+		return NTS[code & 3];
+	}
+
+	/**
+	 * Returns the code of the nucleotide that pairs with the nucleotide of the given code
+	 */
+	public static int complement(int code) {
+		return code ^ 3;
+	}
+
+	/**
+	 * Returns the reverse complement of count (at most 32) packed nucleotides: the sequence that pairs with them, 
+	 * read in the same direction
+	 */
+	public static long reverseComplement(long packed, int count) {
+		if (count == 0) return 0;
+		// reverse the order of the 2-bit codes, then complement them
+		long reversed = ((packed >>> 2) & 0x3333333333333333L) | ((packed & 0x3333333333333333L) << 2);
+		reversed = ((reversed >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((reversed & 0x0f0f0f0f0f0f0f0fL) << 4);
+		reversed = Long.reverseBytes(reversed);
+		return (~reversed >>> (64 - (count << 1))) & mask(count);
+	}
+
+	/**
+	 * Returns the reverse complement of a sequence of the given length packed in the given words, packed in new words
+	 */
+	public static long[] reverseComplement(long[] words, int length) {
+		long[] reversed = new long[wordsFor(length)];
+		for (int pos = 0; pos < length; pos += NTS_PER_WORD) {
+			int count = Math.min(NTS_PER_WORD, length - pos);
+			reversed[pos / NTS_PER_WORD] = reverseComplement(extract(words, length - pos - count, count), count);
+		}
+		return reversed;
+	}
+
+	/**
+	 * Returns the number of longs needed to store a sequence of the given length
+	 */
+	public static int wordsFor(int length) {
+		return (length + NTS_PER_WORD - 1) / NTS_PER_WORD;
+	}
+
+	/**
+	 * Returns the code of the nucleotide at the given position (starting at 0) of a packed sequence
+	 */
+	public static int get(long[] words, int pos) {
+		return (int) (words[pos >>> 5] >>> ((pos & 31) << 1)) & 3;
+	}
+
+	/**
+	 * Same as get(long[], int) for a sequence packed in a buffer
+	 */
+	public static int get(LongBuffer words, int pos) {
+		return (int) (words.get(pos >>> 5) >>> ((pos & 31) << 1)) & 3;
+	}
+
+	/**
+	 * Sets the code of the nucleotide at the given position (starting at 0) of a packed sequence.
+	 * The position must not have been set before.
+	 */
+	public static void set(long[] words, int pos, int code) {
+		words[pos >>> 5] |= ((long) code) << ((pos & 31) << 1);
+	}
+
+	/**
+	 * Returns count (at most 32) nucleotides of a packed sequence starting at the given position,
+	 * packed in a single long. The unused high bits are cleared.
+	 */
+	public static long extract(long[] words, int pos, int count) {
+		int word = pos >>> 5;
+		int shift = (pos & 31) << 1;
+		long value = words[word] >>> shift;
+		if (shift != 0 && word + 1 < words.length) {
+			value |= words[word + 1] << (64 - shift);
+		}
+		return value & mask(count);
+	}
+
+	/**
+	 * Same as extract(long[], int, int) for a sequence packed in a buffer, for instance a memory-mapped file
+	 */
+	public static long extract(LongBuffer words, int pos, int count) {
+		int word = pos >>> 5;
+		int shift = (pos & 31) << 1;
+		long value = words.get(word) >>> shift;
+		if (shift != 0 && word + 1 < words.limit()) {
+			value |= words.get(word + 1) << (64 - shift);
+		}
+		return value & mask(count);
+	}
+
+	/**
+	 * Returns a mask covering the bits of count (at most 32) packed nucleotides
+	 */
+	public static long mask(int count) {
+		return count >= NTS_PER_WORD ? -1L : (1L << (count << 1)) - 1;
+	}
+
+	/**
+	 * Returns a mask that has the low bit of each Cytidine or Guanosine of the given packed word set
+	 */
+	public static long gcMask(long packed) {
+		return (packed ^ (packed >>> 1)) & LOW_BITS;
+	}
+
+	/**
+	 * Returns a mask that has the low bit of each position at which the given packed words differ set
+	 */
+	public static long mismatchMask(long packed1, long packed2) {
+		long diff = packed1 ^ packed2;
+		return (diff | (diff >>> 1)) & LOW_BITS;
+	}
+}
@@ -28,6 +28,14 @@ public interface NtSequence {
 	 */
 	public NtSequence getSubNtSequence(int firstNt, int lastNt) throws IndexOutOfBoundsException;
 
+	/**
+	 * Returns the nucleotide (a, u, c or g) at the given position
+	 * @param pos
+	 * @return
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char getNt(int pos) throws IndexOutOfBoundsException;
+
 	/**
 	 * Returns true if the nucleotide at the given position is a Cytidine or a Guanosine 	
 	 * @param pos
@@ -67,6 +75,21 @@ public interface NtSequence {
 	 */
 	public int distanceTo(NtSequence sequence);
 	
+	/**
+	 * Same as distanceTo(NtSequence) but stops counting as soon as the distance exceeds maxDistance
+	 * 
+	 * @param sequence
+	 * @param maxDistance
+	 * @return The distance if it is at most maxDistance, a value greater than maxDistance otherwise
+	 */
+	public int distanceTo(NtSequence sequence, int maxDistance);
+	
+	/**
+	 * Returns the reverse complement of this sequence: the sequence that pairs with it, read from its 5' end
+	 * @return
+	 */
+	public NtSequence getReverseComplement();
+	
 	/**
 	 * User readable representation of the sequence
 	 * @return
@@ -3,14 +3,24 @@ package com.davidblondeau.cdd.na;
 /**
  * Implementation of a nt sequence backed by a CharSequence.
  * 
+ * Subsequences are views sharing the CharSequence of their parent sequence.
+ * 
  * @author david
  */
 public class NtSequenceImpl implements NtSequence {
 	private CharSequence _seq;
+	private int _offset;
+	private int _length;
 	
 	public NtSequenceImpl(CharSequence seq) {
+		this(seq, 0, seq == null ? 0 : seq.length());
+	}
+	
+	private NtSequenceImpl(CharSequence seq, int offset, int length) {
 		if (seq == null) throw new IllegalArgumentException("Null seq");
 		_seq = seq;
+		_offset = offset;
+		_length = length;
 	}
 	
 	/* (non-Javadoc)
@@ -19,7 +29,32 @@ public class NtSequenceImpl implements NtSequence {
 	public NtSequence getSubNtSequence(int firstNt, int lastNt) 
 		throws IndexOutOfBoundsException
 	{
-		return new NtSequenceImpl(_seq.subSequence(firstNt-1, lastNt));
+		if (firstNt < 1 || lastNt > _length || firstNt > lastNt + 1) {
+			throw new IndexOutOfBoundsException("Subsequence [" + firstNt + "," + lastNt + "] out of [1," + _length + "]");
+		}
+		return new NtSequenceImpl(_seq, _offset + firstNt - 1, lastNt - firstNt + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#getReverseComplement()
+	 */
+	public NtSequence getReverseComplement() {
+		StringBuilder reverseComplement = new StringBuilder(_length);
+		for (int pos = _length; pos >= 1; --pos) {
+			int code = NtCodec.encode(charAt(pos));
+			if (code < 0) throw new IllegalStateException("Invalid nt '" + charAt(pos) + "' at nt #" + pos);
+			reverseComplement.append(NtCodec.decode(NtCodec.complement(code)));
+		}
+		return new NtSequenceImpl(reverseComplement);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#getNt(int)
+	 */
+	public char getNt(int pos)
+		throws IndexOutOfBoundsException
+	{
+		return charAt(pos);
 	}
 	
 	/* (non-Javadoc)
@@ -28,7 +63,7 @@ public class NtSequenceImpl implements NtSequence {
 	public boolean hasCorG(int pos) 
 		throws IndexOutOfBoundsException
 	{ 
-		char c = _seq.charAt(pos-1);
+		char c = charAt(pos);
 		return c == 'g' || c == 'c';
 	}
 	
@@ -38,7 +73,7 @@ public class NtSequenceImpl implements NtSequence {
 	public boolean hasAorU(int pos) 
 		throws IndexOutOfBoundsException
 	{ 
-		char c = _seq.charAt(pos-1);
+		char c = charAt(pos);
 		return c == 'a' || c == 'u';
 	}
 	
@@ -47,13 +82,13 @@ public class NtSequenceImpl implements NtSequence {
 	 */
 	public boolean isAURich() {
 		int auCount = 0;
-		for (int i = 1; i <= _seq.length(); ++i) {
+		for (int i = 1; i <= _length; ++i) {
 			if (hasAorU(i)) {
 				auCount++;
 			}
 		}
 		
-		return (2*auCount > (_seq.length()));
+		return (2*auCount > _length);
 	}
 	
 	/* (non-Javadoc)
@@ -61,7 +96,7 @@ public class NtSequenceImpl implements NtSequence {
 	 */
 	public boolean hasGCStretch(int minLength) {
 		int longGC = 0;
-		for (int i = 1; i < _seq.length(); ++i) {
+		for (int i = 1; i < _length; ++i) {
 			if (hasCorG(i)) {
 				longGC++;
 			} else {
@@ -79,7 +114,7 @@ public class NtSequenceImpl implements NtSequence {
 	 * @see com.davidblondeau.cdd.na.NtSequence#length()
 	 */
 	public int length() {
-		return _seq.length();
+		return _length;
 	}
 	
 	/*
@@ -88,14 +123,20 @@ public class NtSequenceImpl implements NtSequence {
 	 */
 	public int distanceTo(NtSequence sequence) 
 	{
-		if (sequence == null || (_seq.length() != sequence.length())) return Integer.MAX_VALUE;
+		return distanceTo(sequence, Integer.MAX_VALUE - 1);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#distanceTo(com.davidblondeau.cdd.na.NtSequence, int)
+	 */
+	public int distanceTo(NtSequence sequence, int maxDistance) 
+	{
+		if (sequence == null || (_length != sequence.length())) return Integer.MAX_VALUE;
 
 		int distance = 0;
-		
-		
-		CharSequence seq = sequence.toString();
-		for (int i = 0; i < _seq.length(); ++i) {
-			if (_seq.charAt(i) != seq.charAt(i)) {
+		for (int i = 0; i < _length && distance <= maxDistance; ++i) {
+			if (_seq.charAt(_offset + i) != sequence.getNt(i + 1)) {
 				distance++;
 			}
 		}
@@ -108,6 +149,16 @@ public class NtSequenceImpl implements NtSequence {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		return _seq.toString();
+		return _seq.subSequence(_offset, _offset + _length).toString();
+	}
+	
+	/**
+	 * Returns the nucleotide at the given position, checking it is within this sequence
+	 */
+	private char charAt(int pos)
+		throws IndexOutOfBoundsException
+	{
+		if (pos < 1 || pos > _length) throw new IndexOutOfBoundsException("Position " + pos + " out of [1," + _length + "]");
+		return _seq.charAt(_offset + pos - 1);
 	}
 }
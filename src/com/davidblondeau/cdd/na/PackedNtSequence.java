@@ -0,0 +1,237 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Implementation of a nt sequence packing 4 nucleotides per byte, i.e. 32 per long.
+ *
+ * The encoding is described in {@link NtCodec}. The sequence characteristics are computed directly on the packed words.
+ * Subsequences are views sharing the packed words of their parent sequence.
+ * 
+ * The words are only read through getPacked(int, int), getCode(int) and newView(int, int), which the sequences 
+ * packed elsewhere than in a long[], such as the ones of an RnaStore, override.
+ *
+ * @author david
+ */
+public class PackedNtSequence implements NtSequence {
+	private long[] _words;
+	private int _offset;
+	private int _length;
+
+	/**
+	 * @param seq A sequence containing only a, u, c and g
+	 * @throws IllegalArgumentException if the sequence contains other characters
+	 */
+	public PackedNtSequence(CharSequence seq) {
+		if (seq == null) throw new IllegalArgumentException("Null seq");
+		_length = seq.length();
+		_words = new long[NtCodec.wordsFor(_length)];
+		for (int i = 0; i < _length; ++i) {
+			int code = NtCodec.encode(seq.charAt(i));
+			if (code < 0) throw new IllegalArgumentException("Invalid nt '" + seq.charAt(i) + "' at nt #" + (i + 1));
+			NtCodec.set(_words, i, code);
+		}
+	}
+
+	/**
+	 * @param words The packed nucleotides. Not copied.
+	 * @param offset The position (starting at 0) of the first nucleotide of this sequence in the packed nucleotides
+	 * @param length The number of nucleotides
+	 */
+	PackedNtSequence(long[] words, int offset, int length) {
+		_words = words;
+		_offset = offset;
+		_length = length;
+	}
+
+	/**
+	 * Returns count (at most 32) nucleotides starting at the given position (starting at 0) packed in a long
+	 */
+	long getPacked(int pos, int count) {
+		return NtCodec.extract(_words, _offset + pos, count);
+	}
+
+	/**
+	 * Returns the code of the nucleotide at the given position (starting at 0), without checking the position
+	 */
+	int getCode(int pos) {
+		return NtCodec.get(_words, _offset + pos);
+	}
+
+	/**
+	 * Checks the given position and returns the code of the nucleotide there
+	 */
+	private int codeAt(int pos)
+		throws IndexOutOfBoundsException
+	{
+		if (pos < 1 || pos > _length) throw new IndexOutOfBoundsException("Position " + pos + " out of [1," + _length + "]");
+		return getCode(pos - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#getSubNtSequence(int, int)
+	 */
+	public NtSequence getSubNtSequence(int firstNt, int lastNt)
+		throws IndexOutOfBoundsException
+	{
+		if (firstNt < 1 || lastNt > _length || firstNt > lastNt + 1) {
+			throw new IndexOutOfBoundsException("Subsequence [" + firstNt + "," + lastNt + "] out of [1," + _length + "]");
+		}
+		return newView(firstNt - 1, lastNt - firstNt + 1);
+	}
+
+	/**
+	 * Returns the subsequence of the given length starting at the given position (starting at 0), sharing the words
+	 * of this sequence
+	 */
+	PackedNtSequence newView(int pos, int length) {
+		return new PackedNtSequence(_words, _offset + pos, length);
+	}
+
+	/**
+	 * Returns a view of the reverse complement of this sequence, sharing the words of this sequence
+	 * 
+	 * @see com.davidblondeau.cdd.na.NtSequence#getReverseComplement()
+	 */
+	public NtSequence getReverseComplement() {
+		return new ReverseComplementNtSequence(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#getNt(int)
+	 */
+	public char getNt(int pos)
+		throws IndexOutOfBoundsException
+	{
+		return NtCodec.decode(codeAt(pos));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#hasCorG(int)
+	 */
+	public boolean hasCorG(int pos)
+		throws IndexOutOfBoundsException
+	{
+		int code = codeAt(pos);
+		return code == NtCodec.C || code == NtCodec.G;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#hasAorU(int)
+	 */
+	public boolean hasAorU(int pos)
+		throws IndexOutOfBoundsException
+	{
+		int code = codeAt(pos);
+		return code == NtCodec.A || code == NtCodec.U;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#isAURich()
+	 */
+	public boolean isAURich() {
+		int gcCount = 0;
+		for (int pos = 0; pos < _length; pos += NtCodec.NTS_PER_WORD) {
+			long packed = getPacked(pos, Math.min(NtCodec.NTS_PER_WORD, _length - pos));
+			gcCount += Long.bitCount(NtCodec.gcMask(packed));
+		}
+
+		return (2*(_length - gcCount) > _length);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#hasLongGCStretch(int)
+	 */
+	public boolean hasGCStretch(int minLength) {
+		// As NtSequenceImpl does, the last nucleotide is left out of the search
+		int searchLength = _length - 1;
+
+		// length of the GC stretch ending right before the current word
+		int run = 0;
+		for (int pos = 0; pos < searchLength; pos += NtCodec.NTS_PER_WORD) {
+			int count = Math.min(NtCodec.NTS_PER_WORD, searchLength - pos);
+			long full = NtCodec.LOW_BITS & NtCodec.mask(count);
+			long gc = NtCodec.gcMask(getPacked(pos, count));
+			if (gc == full) {
+				run += count;
+			} else {
+				long notGc = ~gc & full;
+				// the stretch going on from the previous word
+				if (run + Long.numberOfTrailingZeros(notGc) / 2 >= minLength) return true;
+				// stretches within the word
+				long stretches = gc;
+				for (int i = 1; i < minLength && stretches != 0; ++i) {
+					stretches &= gc >>> (2*i);
+				}
+				if (stretches != 0) return true;
+				// the stretch at the end of the word
+				run = count - 1 - (63 - Long.numberOfLeadingZeros(notGc)) / 2;
+			}
+			if (run >= minLength) return true;
+		}
+
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#length()
+	 */
+	public int length() {
+		return _length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#distanceTo(com.davidblondeau.cdd.na.NtSequence)
+	 */
+	public int distanceTo(NtSequence sequence)
+	{
+		return distanceTo(sequence, Integer.MAX_VALUE - 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.NtSequence#distanceTo(com.davidblondeau.cdd.na.NtSequence, int)
+	 */
+	public int distanceTo(NtSequence sequence, int maxDistance)
+	{
+		if (sequence == null || (_length != sequence.length())) return Integer.MAX_VALUE;
+
+		if (sequence instanceof PackedNtSequence) {
+			return distanceTo(0, (PackedNtSequence) sequence, maxDistance);
+		}
+
+		int distance = 0;
+		for (int i = 0; i < _length && distance <= maxDistance; ++i) {
+			if (getCode(i) != NtCodec.encode(sequence.getNt(i + 1))) {
+				distance++;
+			}
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Returns the distance between the given sequence and the subsequence of the same length starting
+	 * at the given position (starting at 0) of this sequence, without creating that subsequence.
+	 * Stops as soon as the distance exceeds maxDistance.
+	 */
+	int distanceTo(int pos, PackedNtSequence sequence, int maxDistance) {
+		int distance = 0;
+		for (int i = 0; i < sequence._length && distance <= maxDistance; i += NtCodec.NTS_PER_WORD) {
+			int count = Math.min(NtCodec.NTS_PER_WORD, sequence._length - i);
+			distance += Long.bitCount(NtCodec.mismatchMask(getPacked(pos + i, count), sequence.getPacked(i, count)));
+		}
+		return distance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		char[] nts = new char[_length];
+		for (int i = 0; i < _length; ++i) {
+			nts[i] = NtCodec.decode(getCode(i));
+		}
+		return new String(nts);
+	}
+}
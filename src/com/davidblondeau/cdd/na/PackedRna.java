@@ -0,0 +1,76 @@
+package com.davidblondeau.cdd.na;
+
+
+/**
+ * Implementation of the RNA backed by a packed nt sequence.
+ * @author david
+ *
+ */
+public class PackedRna extends PackedNtSequence implements Rna {
+	private String _name;
+	private int _id = -1;
+
+	public PackedRna(CharSequence seq) {
+		super(seq);
+	}
+
+	/**
+	 * @param id The position of the RNA in its input
+	 * @param name The identifier of the RNA, can be null
+	 * @param words The packed nucleotides. Not copied.
+	 * @param length The number of nucleotides
+	 */
+	PackedRna(int id, String name, long[] words, int length) {
+		super(words, 0, length);
+		_id = id;
+		_name = name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#getName()
+	 */
+	public String getName() {
+		return _name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#getId()
+	 */
+	public int getId() {
+		return _id;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.SiRna)
+	 */
+	public boolean hybridizeWellWith(SiRna siRna) {
+		return RnaImpl.hybridizeWell(this, siRna);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence)
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence) {
+		return RnaImpl.hybridizeWell(this, sequence);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.na.SiRna, com.davidblondeau.cdd.na.HybridizationPolicy)
+	 */
+	public boolean hybridizeWellWith(SiRna siRna, HybridizationPolicy policy) {
+		return RnaImpl.hybridizeWell(this, siRna, policy);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence, com.davidblondeau.cdd.na.HybridizationPolicy)
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence, HybridizationPolicy policy) {
+		return RnaImpl.hybridizeWell(this, sequence, policy);
+	}
+}
@@ -0,0 +1,55 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Packed reverse complement of a packed nt sequence, read from the words of that sequence rather than from a long[]
+ * of its own: the reverse complement of an siRNA window is checked without copying its nucleotides.
+ *
+ * @author david
+ */
+class ReverseComplementNtSequence extends PackedNtSequence {
+	private final PackedNtSequence _sequence;
+
+	/**
+	 * @param sequence The sequence this one is the reverse complement of
+	 */
+	ReverseComplementNtSequence(PackedNtSequence sequence) {
+		super(null, 0, sequence.length());
+		_sequence = sequence;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#getPacked(int, int)
+	 */
+	@Override
+	long getPacked(int pos, int count) {
+		return NtCodec.reverseComplement(_sequence.getPacked(length() - pos - count, count), count);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#getCode(int)
+	 */
+	@Override
+	int getCode(int pos) {
+		return NtCodec.complement(_sequence.getCode(length() - 1 - pos));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#newView(int, int)
+	 */
+	@Override
+	PackedNtSequence newView(int pos, int length) {
+		return new ReverseComplementNtSequence(_sequence.newView(length() - pos - length, length));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#getReverseComplement()
+	 */
+	@Override
+	public NtSequence getReverseComplement() {
+		return _sequence;
+	}
+}
@@ -9,6 +9,20 @@ package com.davidblondeau.cdd.na;
  */
 public interface Rna extends NtSequence {
 	
+	/**
+	 * Returns the identifier of this RNA, for instance the header of its FASTA record.
+	 * @return Null if the RNA has no identifier
+	 */
+	public String getName();
+	
+	/**
+	 * Returns the position of this RNA in the input it was read from, as numbered by its reader: FastaReader or 
+	 * RnaStore number the RNAs from 0, densely, so that the id can index arrays of per-RNA data.
+	 * The ids of RNAs read from different inputs can be the same.
+	 * @return -1 if the RNA was not read by such a reader
+	 */
+	public int getId();
+	
 	/**
 	 * Returns true if the given nucleotide sequence can hybridize well this RNA.
 	 * Well means that there is at least one subsequence of this RNA that includes at most two 
@@ -18,4 +32,33 @@ public interface Rna extends NtSequence {
 	 * @return
 	 */
 	public boolean hybridizeWellWith(SiRna siRna);
+	
+	/**
+	 * Returns true if this RNA has at least one subsequence that includes at most two mismatches with the 
+	 * given sequence over its length, whatever RNA the sequence comes from.
+	 * 
+	 * @param sequence
+	 * @return
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence);
+	
+	/**
+	 * Same as hybridizeWellWith(SiRna), a subsequence of this RNA hybridizing well with the siRNA according to
+	 * the given policy
+	 * 
+	 * @param siRna
+	 * @param policy
+	 * @return
+	 */
+	public boolean hybridizeWellWith(SiRna siRna, HybridizationPolicy policy);
+	
+	/**
+	 * Same as hybridizeWellWithSequence(NtSequence), a subsequence of this RNA hybridizing well with the sequence 
+	 * according to the given policy
+	 * 
+	 * @param sequence The sequence matched by a guide strand
+	 * @param policy
+	 * @return
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence, HybridizationPolicy policy);
 }
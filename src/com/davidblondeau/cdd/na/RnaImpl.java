@@ -7,25 +7,125 @@ package com.davidblondeau.cdd.na;
  *
  */
 public class RnaImpl extends NtSequenceImpl implements Rna {
-	private static final int MAX_DISTANCE_TO_HYBRIDIZE_WELL = 2;
+	/**
+	 * Maximum number of mismatches between two sequences that hybridize well
+	 */
+	public static final int MAX_DISTANCE_TO_HYBRIDIZE_WELL = 2;
 	
 	public RnaImpl(CharSequence seq) {
 		super(seq);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#getName()
+	 */
+	public String getName() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#getId()
+	 */
+	public int getId() {
+		return -1;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.SiRna)
 	 */
 	public boolean hybridizeWellWith(SiRna siRna) {
+		return hybridizeWell(this, siRna);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence)
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence) {
+		return hybridizeWell(this, sequence);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.na.SiRna, com.davidblondeau.cdd.na.HybridizationPolicy)
+	 */
+	public boolean hybridizeWellWith(SiRna siRna, HybridizationPolicy policy) {
+		return hybridizeWell(this, siRna, policy);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence, com.davidblondeau.cdd.na.HybridizationPolicy)
+	 */
+	public boolean hybridizeWellWithSequence(NtSequence sequence, HybridizationPolicy policy) {
+		return hybridizeWell(this, sequence, policy);
+	}
+	
+	/**
+	 * Implementation of Rna#hybridizeWellWith(SiRna) shared by the RNA implementations
+	 */
+	static boolean hybridizeWell(Rna rna, SiRna siRna) {
+		return hybridizeWell(rna, siRna, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Implementation of Rna#hybridizeWellWithSequence(NtSequence) shared by the RNA implementations
+	 */
+	static boolean hybridizeWell(Rna rna, NtSequence siRnaSeq) {
+		return hybridizeWell(rna, siRnaSeq, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Implementation of Rna#hybridizeWellWith(SiRna, HybridizationPolicy) shared by the RNA implementations
+	 */
+	static boolean hybridizeWell(Rna rna, SiRna siRna, HybridizationPolicy policy) {
 		if (siRna == null) throw new IllegalArgumentException("null siRna");
 		
-		if (this.equals(siRna.getTargetMRna())) return true;
+		if (rna.equals(siRna.getTargetMRna())) return true;
+		
+		return hybridizeWell(rna, siRna.getAntisenseMatchingSequence(), policy);
+	}
+	
+	/**
+	 * Implementation of Rna#hybridizeWellWithSequence(NtSequence, HybridizationPolicy) shared by the RNA implementations
+	 */
+	static boolean hybridizeWell(Rna rna, NtSequence siRnaSeq, HybridizationPolicy policy) {
+		if (siRnaSeq == null) throw new IllegalArgumentException("null sequence");
+		if (policy == null) throw new IllegalArgumentException("null policy");
+		
+		int length = siRnaSeq.length();
+		if (length > NtBitPlanes.MAX_LENGTH) {
+			// too long for a mismatch mask: only the number of mismatches can be checked
+			if (!(policy instanceof MismatchCountPolicy)) {
+				throw new IllegalArgumentException("Sequences longer than " + NtBitPlanes.MAX_LENGTH + " nt can only be checked by mismatch count");
+			}
+			int maxDistance = policy.getMaxMismatches();
+			for (int offset = 0; offset <= rna.length() - length; ++offset) {
+				NtSequence subSeq = rna.getSubNtSequence(offset+1, offset+length);
+				if (subSeq.distanceTo(siRnaSeq, maxDistance) <= maxDistance) {
+					return true;
+				}
+			}
+			return false;
+		}
 		
-		NtSequence siRnaSeq = siRna.getAntisenseMatchingSequence();
-		for (int offset = 0; offset <= length() - siRnaSeq.length(); ++offset) {
-			NtSequence subSeq = getSubNtSequence(offset+1, offset+siRnaSeq.length());
-			if (subSeq.distanceTo(siRnaSeq) <= MAX_DISTANCE_TO_HYBRIDIZE_WELL) {
+		// Roll a window along the RNA, one nucleotide at a time, and compare it with the siRNA bitplanes.
+		// The nucleotides other than a, u, c and g have no code: they are kept on a third plane as mismatches.
+		NtBitPlanes siRnaPlanes = new NtBitPlanes(siRnaSeq);
+		PackedNtSequence packedRna = rna instanceof PackedNtSequence ? (PackedNtSequence) rna : null;
+		long high = 0;
+		long low = 0;
+		long invalid = 0;
+		for (int pos = 0; pos < rna.length(); ++pos) {
+			int code = packedRna != null ? packedRna.getCode(pos) : NtCodec.encode(rna.getNt(pos + 1));
+			invalid = NtBitPlanes.roll(invalid, code < 0 ? 1 : 0, length);
+			code &= 3;
+			high = NtBitPlanes.roll(high, code >>> 1, length);
+			low = NtBitPlanes.roll(low, code & 1, length);
+			if (pos >= length - 1 && policy.hybridizeWell(siRnaPlanes.mismatches(high, low) | invalid, length)) {
 				// We found a sub-sequence that would hybridize with the given siRna
 				return true;
 			}
@@ -0,0 +1,346 @@
+package com.davidblondeau.cdd.na;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of RNAs kept off the heap, for sets of transcripts the size of a transcriptome.
+ *
+ * The nucleotides of the RNAs are packed one RNA after the other in a single direct buffer, 32 per long as in
+ * PackedNtSequence, along with a table of the start of each RNA. Their names are kept UTF-8 encoded in another direct
+ * buffer. The RNAs of the store are handles of a few fields created as they are read, identified by their position
+ * in the store: the heap a store takes does not depend on the length of its RNAs, and the handles of the same RNA
+ * are equal.
+ *
+ * The RNAs are appended to the store, which must not be read while it is appended to. Once filled, it can be read
+ * from any thread.
+ *
+ * @author david
+ */
+public class RnaStore extends AbstractSet<Rna> {
+	private static final int INITIAL_WORDS = 1 << 10;
+	private static final int INITIAL_RNAS = 1 << 8;
+
+	private LongBuffer _words = allocate(INITIAL_WORDS * 8).asLongBuffer();
+
+	/**
+	 * Position of the first nt of each RNA in the packed RNAs. The last element is the total length.
+	 */
+	private IntBuffer _starts = allocate((INITIAL_RNAS + 1) * 4).asIntBuffer();
+	private ByteBuffer _names = allocate(INITIAL_RNAS * 16);
+
+	/**
+	 * Position of the name of each RNA in the names. The last element is their total length.
+	 */
+	private IntBuffer _nameStarts = allocate((INITIAL_RNAS + 1) * 4).asIntBuffer();
+	private int _size;
+
+	/**
+	 * The RNA of a store
+	 */
+	private static class StoredRna extends StoredNtSequence implements Rna {
+		private final int _id;
+
+		StoredRna(RnaStore store, int id) {
+			super(store, store._starts.get(id), store._starts.get(id + 1) - store._starts.get(id));
+			_id = id;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#getName()
+		 */
+		public String getName() {
+			return _store.getName(_id);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#getId()
+		 */
+		public int getId() {
+			return _id;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.na.SiRna)
+		 */
+		public boolean hybridizeWellWith(SiRna siRna) {
+			return RnaImpl.hybridizeWell(this, siRna);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence)
+		 */
+		public boolean hybridizeWellWithSequence(NtSequence sequence) {
+			return RnaImpl.hybridizeWell(this, sequence);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWith(com.davidblondeau.cdd.na.SiRna, com.davidblondeau.cdd.na.HybridizationPolicy)
+		 */
+		public boolean hybridizeWellWith(SiRna siRna, HybridizationPolicy policy) {
+			return RnaImpl.hybridizeWell(this, siRna, policy);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see com.davidblondeau.cdd.na.Rna#hybridizeWellWithSequence(com.davidblondeau.cdd.na.NtSequence, com.davidblondeau.cdd.na.HybridizationPolicy)
+		 */
+		public boolean hybridizeWellWithSequence(NtSequence sequence, HybridizationPolicy policy) {
+			return RnaImpl.hybridizeWell(this, sequence, policy);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof StoredRna)) {
+				return false;
+			}
+			StoredRna rna = (StoredRna) o;
+			return rna._store == _store && rna._id == _id;
+		}
+
+		@Override
+		public int hashCode() {
+			return _id;
+		}
+	}
+
+	public RnaStore() {
+	}
+
+	/**
+	 * Reads the RNAs of the given reader into a new store
+	 *
+	 * @param reader Closed once read
+	 */
+	public static RnaStore read(FastaReader reader)
+		throws IOException
+	{
+		if (reader == null) throw new IllegalArgumentException("Null reader");
+
+		RnaStore store = new RnaStore();
+		try {
+			Rna rna;
+			while ((rna = reader.read()) != null) {
+				store.append(rna);
+			}
+		} finally {
+			reader.close();
+		}
+		return store;
+	}
+
+	/**
+	 * Copies the given RNA at the end of the store
+	 *
+	 * @return The RNA of the store
+	 */
+	public Rna append(Rna rna) {
+		if (rna == null) throw new IllegalArgumentException("Null RNA");
+
+		int start = _starts.get(_size);
+		if ((long) start + rna.length() > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many nt to store: " + ((long) start + rna.length()));
+		int end = start + rna.length();
+
+		if (NtCodec.wordsFor(end) > _words.capacity()) {
+			_words = grow(_words, NtCodec.wordsFor(end));
+		}
+		if (rna instanceof PackedNtSequence) {
+			// 32 nt at a time
+			PackedNtSequence packed = (PackedNtSequence) rna;
+			for (int i = 0; i < rna.length(); i += NtCodec.NTS_PER_WORD) {
+				putPacked(start + i, packed.getPacked(i, Math.min(NtCodec.NTS_PER_WORD, rna.length() - i)));
+			}
+		} else {
+			for (int i = 0; i < rna.length(); ++i) {
+				int code = NtCodec.encode(rna.getNt(i + 1));
+				if (code < 0) throw new IllegalArgumentException("Invalid nt '" + rna.getNt(i + 1) + "' at nt #" + (i + 1));
+				putPacked(start + i, code);
+			}
+		}
+
+		byte[] name = rna.getName() == null ? new byte[0] : rna.getName().getBytes(StandardCharsets.UTF_8);
+		int nameStart = _nameStarts.get(_size);
+		if ((long) nameStart + name.length > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many name bytes to store: " + ((long) nameStart + name.length));
+		if (nameStart + name.length > _names.capacity()) {
+			_names = grow(_names, nameStart + name.length);
+		}
+		_names.position(nameStart);
+		_names.put(name);
+
+		if (_size + 2 > _starts.capacity()) {
+			_starts = grow(_starts, _size + 2);
+			_nameStarts = grow(_nameStarts, _size + 2);
+		}
+		_starts.put(_size + 1, end);
+		_nameStarts.put(_size + 1, nameStart + name.length);
+		return new StoredRna(this, _size++);
+	}
+
+	/**
+	 * Ors packed nucleotides into the words, the first one at the given position
+	 */
+	private void putPacked(int pos, long packed) {
+		int word = pos >>> 5;
+		int shift = (pos & 31) << 1;
+		_words.put(word, _words.get(word) | (packed << shift));
+		if (shift != 0 && (packed >>> (64 - shift)) != 0) {
+			_words.put(word + 1, _words.get(word + 1) | (packed >>> (64 - shift)));
+		}
+	}
+
+	/**
+	 * Returns the RNA of the given id, its position in the store
+	 */
+	public Rna get(int id) {
+		if (id < 0 || id >= _size) throw new IndexOutOfBoundsException("RNA #" + id + " out of [0," + _size + "[");
+		return new StoredRna(this, id);
+	}
+
+	/**
+	 * Returns the position in the store of the given RNA, -1 if it is not an RNA of this store
+	 */
+	public int getId(Rna rna) {
+		if (!(rna instanceof StoredRna) || ((StoredRna) rna)._store != this) {
+			return -1;
+		}
+		return ((StoredRna) rna)._id;
+	}
+
+	String getName(int id) {
+		int start = _nameStarts.get(id);
+		int length = _nameStarts.get(id + 1) - start;
+		if (length == 0) {
+			return null;
+		}
+		byte[] name = new byte[length];
+		ByteBuffer names = _names.duplicate();
+		names.position(start);
+		names.get(name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	LongBuffer words() {
+		return _words;
+	}
+
+	/**
+	 * Returns the nucleotides of the RNAs packed one after the other, as described in NtCodec. Shared, read-only.
+	 */
+	public LongBuffer getWords() {
+		LongBuffer words = _words.duplicate();
+		words.limit(NtCodec.wordsFor(getTotalLength()));
+		return words.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the position of the first nucleotide of each RNA in getWords(), followed by the total number of
+	 * nucleotides. Shared, read-only.
+	 */
+	public IntBuffer getStarts() {
+		IntBuffer starts = _starts.duplicate();
+		starts.limit(_size + 1);
+		return starts.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the number of nucleotides of the RNAs
+	 */
+	public int getTotalLength() {
+		return _starts.get(_size);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Rna && getId((Rna) o) >= 0;
+	}
+
+	/**
+	 * Iterates the RNAs in the order they were appended, creating their handles as they are read
+	 */
+	@Override
+	public Iterator<Rna> iterator() {
+		return new Iterator<Rna>() {
+			private int _next;
+
+			public boolean hasNext() {
+				return _next < _size;
+			}
+
+			public Rna next() {
+				if (_next >= _size) throw new NoSuchElementException();
+				return new StoredRna(RnaStore.this, _next++);
+			}
+		};
+	}
+
+	private static ByteBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Returns a buffer with room for at least the given number of elements of the given size, growing the given 
+	 * capacity by half at least as long as it fits in a direct buffer
+	 *
+	 * @throws IllegalArgumentException if the elements do not fit in a direct buffer
+	 */
+	static ByteBuffer allocateGrown(int capacity, int minCapacity, int elementSize) {
+		int maxCapacity = Integer.MAX_VALUE / elementSize;
+		if (minCapacity > maxCapacity) throw new IllegalArgumentException("Too many elements to store off-heap: " + minCapacity + " of " + elementSize + " bytes");
+		return allocate(elementSize * (int) Math.min(maxCapacity, Math.max(minCapacity, capacity + (long) (capacity >> 1))));
+	}
+
+	/**
+	 * Returns a copy of the buffer with room for at least the given number of elements, growing by half at least
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+		ByteBuffer grown = allocateGrown(buffer.capacity(), minCapacity, 1);
+		ByteBuffer copy = buffer.duplicate();
+		copy.clear();
+		grown.put(copy);
+		grown.clear();
+		return grown;
+	}
+
+	private static LongBuffer grow(LongBuffer buffer, int minCapacity) {
+		LongBuffer grown = allocateGrown(buffer.capacity(), minCapacity, 8).asLongBuffer();
+		LongBuffer copy = buffer.duplicate();
+		copy.clear();
+		grown.put(copy);
+		grown.clear();
+		return grown;
+	}
+
+	private static IntBuffer grow(IntBuffer buffer, int minCapacity) {
+		IntBuffer grown = allocateGrown(buffer.capacity(), minCapacity, 4).asIntBuffer();
+		IntBuffer copy = buffer.duplicate();
+		copy.clear();
+		grown.put(copy);
+		grown.clear();
+		return grown;
+	}
+}
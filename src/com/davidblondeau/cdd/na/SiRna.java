@@ -11,14 +11,21 @@ import java.util.Set;
  * 
  * Provides the target mRna and the offset of the sequence matching this siRNA antisense strand.
  * 
- * @todo Way to compute the sense strand
- * @todo Methods to return the strands
+ * The antisense (guide) strand pairs with the whole matching sequence, its 3' overhang pairing with the first 
+ * 2 nt of the sequence. The sense (passenger) strand is the matching sequence from its third nt on, followed 
+ * by a 3' overhang of 2 nt.
+ * 
  * @todo Should it be extending Rna?
  *  
  * @author david
  *
  */
 public class SiRna {
+	/**
+	 * 3' overhang of the sense strand
+	 */
+	public static final String SENSE_OVERHANG = "uu";
+	
 	private Rna _mRna;
 	private int _offset;
 	private int _length;
@@ -51,6 +58,14 @@ public class SiRna {
 		return _offset;
 	}
 	
+	/**
+	 * Returns the length of the sequence matching the antisense strand of this siRNA
+	 * @return
+	 */
+	public int getLength() {
+		return _length;
+	}
+	
 	/**
 	 * Returns the sequence of the target mRNA that matches the antisense strand of this siRNA
 	 * @return
@@ -59,6 +74,47 @@ public class SiRna {
 		return _mRna.getSubNtSequence(_offset+1, _offset+_length);
 	}
 	
+	/**
+	 * Returns the antisense (guide) strand of this siRNA, from its 5' end: the reverse complement of the sequence it matches
+	 * @return
+	 */
+	public NtSequence getAntisenseStrand() {
+		return getAntisenseMatchingSequence().getReverseComplement();
+	}
+	
+	/**
+	 * Returns the sense (passenger) strand of this siRNA, from its 5' end
+	 * @return
+	 */
+	public NtSequence getSenseStrand() {
+		NtSequence matchingSequence = getAntisenseMatchingSequence();
+		int first = Math.min(2, _length);
+		if (matchingSequence instanceof PackedNtSequence) {
+			// packed 32 nt at a time from the mRNA, followed by the overhang
+			PackedNtSequence packed = (PackedNtSequence) matchingSequence;
+			int length = _length - first + SENSE_OVERHANG.length();
+			long[] words = new long[NtCodec.wordsFor(length)];
+			for (int pos = first; pos < _length; pos += NtCodec.NTS_PER_WORD) {
+				words[(pos - first) / NtCodec.NTS_PER_WORD] = packed.getPacked(pos, Math.min(NtCodec.NTS_PER_WORD, _length - pos));
+			}
+			for (int i = 0; i < SENSE_OVERHANG.length(); ++i) {
+				NtCodec.set(words, _length - first + i, NtCodec.encode(SENSE_OVERHANG.charAt(i)));
+			}
+			return new PackedNtSequence(words, 0, length);
+		}
+		return new NtSequenceImpl(matchingSequence.getSubNtSequence(first + 1, _length).toString() + SENSE_OVERHANG);
+	}
+	
+	/**
+	 * Returns the sequence of an mRNA that the sense strand of this siRNA would match if it were taken as the guide strand.
+	 * As for the antisense strand, the whole duplex is considered: this is the sequence of the antisense strand.
+	 * For a packed mRNA, it is a view of the mRNA nucleotides that copies none of them.
+	 * @return
+	 */
+	public NtSequence getSenseMatchingSequence() {
+		return getAntisenseStrand();
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -67,6 +123,31 @@ public class SiRna {
 		return _offset + ": " + getAntisenseMatchingSequence(); 
 	}
 	
+	/**
+	 * siRNAs are equal when they target the same window of the same mRNA, so that the siRNAs created for the same 
+	 * candidate at different times are the same siRNA.
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof SiRna)) {
+			return false;
+		}
+		SiRna siRna = (SiRna) o;
+		return siRna._offset == _offset && siRna._length == _length 
+			&& (siRna._mRna == _mRna || (_mRna != null && _mRna.equals(siRna._mRna)));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (_mRna == null ? 0 : _mRna.hashCode()) + _offset) + _length;
+	}
+	
 	/**
 	 * Check if this siRNA would off-target other mRnas than its target mRNA.
 	 * A siRna can off-target a mRna if that mRna would hybridize well with it.
@@ -75,11 +156,54 @@ public class SiRna {
 	 * @return
 	 */
 	public boolean canOffTargetOtherMRnas(Set<Rna> mRnas) {
+		return canOffTargetOtherMRnas(mRnas, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Same as canOffTargetOtherMRnas(Set), an mRNA hybridizing well with this siRNA according to the given policy
+	 * 
+	 * @param mRnas
+	 * @param policy
+	 * @return
+	 */
+	public boolean canOffTargetOtherMRnas(Set<Rna> mRnas, HybridizationPolicy policy) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRna set");
+		
+		for (Rna mRna: mRnas) {
+			if (!mRna.equals(_mRna)) {
+				if (mRna.hybridizeWellWith(this, policy)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Same as canOffTargetOtherMRnas(Set), also checking whether the sense strand would off-target the other mRNAs
+	 * if it were taken as the guide strand.
+	 * 
+	 * @param mRnas
+	 * @return
+	 */
+	public boolean canEitherStrandOffTargetOtherMRnas(Set<Rna> mRnas) {
+		return canEitherStrandOffTargetOtherMRnas(mRnas, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Same as canEitherStrandOffTargetOtherMRnas(Set), the strands hybridizing well with an mRNA according to the given policy
+	 * 
+	 * @param mRnas
+	 * @param policy
+	 * @return
+	 */
+	public boolean canEitherStrandOffTargetOtherMRnas(Set<Rna> mRnas, HybridizationPolicy policy) {
 		if (mRnas == null) throw new IllegalArgumentException("Null mRna set");
 		
+		NtSequence senseMatchingSequence = getSenseMatchingSequence();
 		for (Rna mRna: mRnas) {
 			if (!mRna.equals(_mRna)) {
-				if (mRna.hybridizeWellWith(this)) {
+				if (mRna.hybridizeWellWith(this, policy) || mRna.hybridizeWellWithSequence(senseMatchingSequence, policy)) {
 					return true;
 				}
 			}
@@ -0,0 +1,49 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Packed nt sequence read from the words of an RnaStore rather than from a long[] of its own.
+ *
+ * @author david
+ */
+class StoredNtSequence extends PackedNtSequence {
+	final RnaStore _store;
+	private final int _start;
+
+	/**
+	 * @param store
+	 * @param start The position (starting at 0) of the first nucleotide of this sequence in the packed nucleotides of the store
+	 * @param length The number of nucleotides
+	 */
+	StoredNtSequence(RnaStore store, int start, int length) {
+		super(null, 0, length);
+		_store = store;
+		_start = start;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#getPacked(int, int)
+	 */
+	@Override
+	long getPacked(int pos, int count) {
+		return NtCodec.extract(_store.words(), _start + pos, count);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#getCode(int)
+	 */
+	@Override
+	int getCode(int pos) {
+		return NtCodec.get(_store.words(), _start + pos);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.PackedNtSequence#newView(int, int)
+	 */
+	@Override
+	PackedNtSequence newView(int pos, int length) {
+		return new StoredNtSequence(_store, _start + pos, length);
+	}
+}
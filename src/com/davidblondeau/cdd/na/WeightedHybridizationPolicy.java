@@ -0,0 +1,90 @@
+package com.davidblondeau.cdd.na;
+
+/**
+ * Hybridization policy weighting the mismatches by their position on the guide strand: a window hybridizes well 
+ * if the sum of the weights of its mismatches is at most a maximum score and, if required, it matches the seed 
+ * region exactly.
+ * 
+ * @author david
+ */
+public class WeightedHybridizationPolicy implements HybridizationPolicy {
+	/**
+	 * Mask of the seed region in a mismatch mask
+	 */
+	private static final long SEED_MASK = ((1L << (SEED_LAST - SEED_FIRST + 1)) - 1) << (SEED_FIRST - 1);
+	
+	/**
+	 * A policy close to the way RISC recognizes its targets: the seed region must match exactly, the first nt of 
+	 * the guide, anchored in RISC, is not scored, a mismatch at the cleavage site (guide positions 10 and 11) counts 
+	 * for 3 and any other for 1. A window hybridizes well with a score of at most 3.
+	 */
+	public static final WeightedHybridizationPolicy SEED_AND_CLEAVAGE_SITE = 
+		new WeightedHybridizationPolicy(new int[] {0, 1, 1, 1, 1, 1, 1, 1, 1, 3, 3}, 3, true);
+	
+	private int[] _weights;
+	private int _maxScore;
+	private boolean _seedMatchRequired;
+	
+	/**
+	 * @param weights The weight of a mismatch at each guide position, starting at position 1. A mismatch beyond the
+	 * positions of the array weighs 1.
+	 * @param maxScore The score up to which a window hybridizes well
+	 * @param seedMatchRequired Whether a window must match the seed region exactly to hybridize well
+	 */
+	public WeightedHybridizationPolicy(int[] weights, int maxScore, boolean seedMatchRequired) {
+		if (weights == null) throw new IllegalArgumentException("Null weights");
+		if (weights.length > NtBitPlanes.MAX_LENGTH) throw new IllegalArgumentException("More than " + NtBitPlanes.MAX_LENGTH + " weights");
+		for (int weight: weights) {
+			if (weight < 0) throw new IllegalArgumentException("Negative weight: " + weight);
+		}
+		if (maxScore < 0) throw new IllegalArgumentException("Negative score: " + maxScore);
+		_weights = weights.clone();
+		_maxScore = maxScore;
+		_seedMatchRequired = seedMatchRequired;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#hybridizeWell(long, int)
+	 */
+	public boolean hybridizeWell(long mismatches, int length) {
+		if (_seedMatchRequired && (mismatches & SEED_MASK) != 0) return false;
+		
+		int score = 0;
+		for (long remaining = mismatches; remaining != 0; remaining &= remaining - 1) {
+			int index = Long.numberOfTrailingZeros(remaining);
+			score += index < _weights.length ? _weights[index] : 1;
+			if (score > _maxScore) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#requiresSeedMatch()
+	 */
+	public boolean requiresSeedMatch() {
+		return _seedMatchRequired;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.na.HybridizationPolicy#getMaxMismatches()
+	 */
+	public int getMaxMismatches() {
+		// the mismatches at the positions of zero weight are free, every other mismatch weighs at least 1
+		int freeCount = 0;
+		for (int weight: _weights) {
+			if (weight == 0) freeCount++;
+		}
+		return Math.min(NtBitPlanes.MAX_LENGTH, freeCount + _maxScore);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "weighted mismatch score of at most " + _maxScore + (_seedMatchRequired ? " with a seed match" : "");
+	}
+}
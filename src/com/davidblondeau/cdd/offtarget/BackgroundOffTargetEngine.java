@@ -0,0 +1,184 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaStore;
+
+/**
+ * Off-target engine over a background transcriptome, checked in addition to the screened mRNAs.
+ *
+ * The background is usually much larger than the screened set, so it is split in shards of at most a given number 
+ * of nt, each one indexed by its own seed index. The shards can be saved to a directory as seed index files and 
+ * memory-mapped from there: the heap then only has to hold one shard while the background is indexed, and none 
+ * once it is opened.
+ *
+ * The screened mRNAs are usually part of the background too. The target mRNA of an siRNA is recognized by its name: 
+ * the background transcripts with the same name are not checked. An siRNA whose target has no name is checked 
+ * against the whole background.
+ *
+ * @author david
+ */
+public class BackgroundOffTargetEngine extends CompositeOffTargetEngine {
+	private static final Logger LOG = Logger.getLogger("cdd.RnaiScreenerFinder");
+
+	/**
+	 * Default number of nt of a shard: about 300 MB of index
+	 */
+	public static final int DEFAULT_SHARD_LENGTH = 1 << 25;
+
+	/**
+	 * Extension of the shard files in a background directory
+	 */
+	public static final String SHARD_EXTENSION = ".idx";
+
+	private BackgroundOffTargetEngine(List<SeedIndexOffTargetEngine> shards) {
+		super(shards);
+	}
+
+	/**
+	 * Indexes the transcripts read from the given reader in memory
+	 *
+	 * @param reader Closed once read
+	 * @param shardLength The maximum number of nt of a shard, unless a single transcript is longer
+	 */
+	public static BackgroundOffTargetEngine build(FastaReader reader, int shardLength)
+		throws IOException
+	{
+		return build(reader, shardLength, null);
+	}
+
+	/**
+	 * Indexes the transcripts read from the given reader and saves the shards to the given directory, 
+	 * from which they are memory-mapped. The background can be opened again with open(File).
+	 *
+	 * @param reader Closed once read
+	 * @param shardLength The maximum number of nt of a shard, unless a single transcript is longer
+	 * @param directory Created if needed. Its previous shards are deleted.
+	 */
+	public static BackgroundOffTargetEngine build(FastaReader reader, int shardLength, File directory)
+		throws IOException
+	{
+		if (reader == null) throw new IllegalArgumentException("Null reader");
+		if (shardLength < 1) throw new IllegalArgumentException("Invalid shard length: " + shardLength);
+
+		if (directory != null) {
+			if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+			for (File shardFile : listShardFiles(directory)) {
+				if (!shardFile.delete()) throw new IOException("Could not delete " + shardFile);
+			}
+		}
+
+		List<SeedIndexOffTargetEngine> shards = new ArrayList<SeedIndexOffTargetEngine>();
+		try {
+			// the shards index the transcripts where they are stored, off the heap
+			RnaStore transcripts = new RnaStore();
+			long length = 0;
+			Rna transcript;
+			while ((transcript = reader.read()) != null) {
+				if (length > 0 && length + transcript.length() > shardLength) {
+					shards.add(newShard(transcripts, directory, shards.size()));
+					transcripts = new RnaStore();
+					length = 0;
+				}
+				transcripts.append(transcript);
+				length += transcript.length();
+			}
+			if (!transcripts.isEmpty()) {
+				shards.add(newShard(transcripts, directory, shards.size()));
+			}
+		} finally {
+			reader.close();
+		}
+		return new BackgroundOffTargetEngine(shards);
+	}
+
+	/**
+	 * Indexes one shard, saved and mapped from the directory if there is one
+	 */
+	private static SeedIndexOffTargetEngine newShard(Set<Rna> transcripts, File directory, int index)
+		throws IOException
+	{
+		SeedIndexOffTargetEngine shard = SeedIndexOffTargetEngine.matchingTargetsByName(transcripts);
+		LOG.fine("Indexed background shard " + index + " of " + transcripts.size() + " transcripts");
+		if (directory == null) {
+			return shard;
+		}
+		File file = new File(directory, String.format("shard-%05d%s", index, SHARD_EXTENSION));
+		shard.save(file);
+		return SeedIndexOffTargetEngine.open(file);
+	}
+
+	/**
+	 * Opens a background saved by build(FastaReader, int, File), or a single seed index file
+	 *
+	 * @param file A directory of shards or a seed index file
+	 */
+	public static BackgroundOffTargetEngine open(File file)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		List<SeedIndexOffTargetEngine> shards = new ArrayList<SeedIndexOffTargetEngine>();
+		if (file.isDirectory()) {
+			for (File shardFile : listShardFiles(file)) {
+				shards.add(SeedIndexOffTargetEngine.open(shardFile));
+			}
+		} else {
+			shards.add(SeedIndexOffTargetEngine.open(file));
+		}
+		return new BackgroundOffTargetEngine(shards);
+	}
+
+	/**
+	 * Opens a background from a directory of shards or a seed index file, or indexes it in memory from a FASTA file
+	 */
+	public static BackgroundOffTargetEngine load(File file)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		if (file.isDirectory() || SeedIndexFile.isSeedIndex(file)) {
+			return open(file);
+		}
+		return build(FastaReader.open(file), DEFAULT_SHARD_LENGTH);
+	}
+
+	/**
+	 * Returns a background sharing the shards of this one, checking the siRNAs with the given policy.
+	 * The shards are built and opened with the default policy.
+	 */
+	public BackgroundOffTargetEngine withHybridizationPolicy(HybridizationPolicy policy) {
+		if (policy == null) throw new IllegalArgumentException("Null hybridization policy");
+		List<SeedIndexOffTargetEngine> shards = new ArrayList<SeedIndexOffTargetEngine>();
+		for (OffTargetEngine shard : getEngines()) {
+			shards.add(((SeedIndexOffTargetEngine) shard).withHybridizationPolicy(policy));
+		}
+		return new BackgroundOffTargetEngine(shards);
+	}
+
+	/**
+	 * Returns the shard files of a directory, in their order
+	 */
+	private static File[] listShardFiles(File directory)
+		throws IOException
+	{
+		File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(SHARD_EXTENSION);
+			}
+		});
+		if (files == null) throw new IOException("Could not list " + directory);
+		Arrays.sort(files);
+		return files;
+	}
+}
@@ -0,0 +1,51 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Off-target engine sweeping every mRNA of the set for each siRNA.
+ * 
+ * Kept as the reference implementation of the off-target check.
+ * 
+ * @author david
+ */
+public class BruteForceOffTargetEngine implements OffTargetEngine {
+	private Set<Rna> _mRnas;
+	private HybridizationPolicy _policy;
+	
+	public BruteForceOffTargetEngine(Set<Rna> mRnas) {
+		this(mRnas, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * @param mRnas
+	 * @param policy How well an siRNA must hybridize with an mRNA to off-target it
+	 */
+	public BruteForceOffTargetEngine(Set<Rna> mRnas, HybridizationPolicy policy) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+		if (policy == null) throw new IllegalArgumentException("Null hybridization policy");
+		_mRnas = mRnas;
+		_policy = policy;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canOffTarget(SiRna siRna) {
+		return siRna.canOffTargetOtherMRnas(_mRnas, _policy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canEitherStrandOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna) {
+		return siRna.canEitherStrandOffTargetOtherMRnas(_mRnas, _policy);
+	}
+}
@@ -0,0 +1,65 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Off-target engine checking the siRNAs against the mRNAs of several engines, in turn.
+ * 
+ * An siRNA can off-target if it can off-target the mRNAs of any of the engines. The engines are queried in order, 
+ * so the cheapest ones should come first.
+ * 
+ * @author david
+ */
+public class CompositeOffTargetEngine implements OffTargetEngine {
+	private List<OffTargetEngine> _engines;
+	
+	public CompositeOffTargetEngine(OffTargetEngine... engines) {
+		this(Arrays.asList(engines));
+	}
+	
+	public CompositeOffTargetEngine(List<? extends OffTargetEngine> engines) {
+		if (engines == null) throw new IllegalArgumentException("Null engine list");
+		for (OffTargetEngine engine : engines) {
+			if (engine == null) throw new IllegalArgumentException("Null engine");
+		}
+		_engines = Collections.unmodifiableList(new ArrayList<OffTargetEngine>(engines));
+	}
+	
+	/**
+	 * Returns the engines, in the order they are queried
+	 */
+	public List<OffTargetEngine> getEngines() {
+		return _engines;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canOffTarget(SiRna siRna) {
+		for (OffTargetEngine engine : _engines) {
+			if (engine.canOffTarget(siRna)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canEitherStrandOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna) {
+		for (OffTargetEngine engine : _engines) {
+			if (engine.canEitherStrandOffTarget(siRna)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,142 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to lists of int values, without boxing.
+ * 
+ * The keys are stored in an open addressing table with linear probing. The values of a key are chained
+ * from the most recently added one. Negative keys are not supported.
+ * 
+ * @author david
+ */
+final class LongIntMultiMap {
+	private static final long EMPTY = -1L;
+	
+	/**
+	 * The table is grown when it is more than half full
+	 */
+	private static final int MAX_LOAD_PERCENT = 50;
+	
+	private long[] _keys;
+	
+	/**
+	 * For each slot, the entry of its last added value
+	 */
+	private int[] _heads;
+	private int _keyCount;
+	
+	private int[] _values;
+	
+	/**
+	 * For each entry, the entry of the previous value of the same key. -1 for the first one.
+	 */
+	private int[] _next;
+	private int _entryCount;
+	
+	/**
+	 * @param expectedEntries The number of entries the map is sized for
+	 */
+	LongIntMultiMap(int expectedEntries) {
+		int capacity = 16;
+		while (capacity * MAX_LOAD_PERCENT / 100 < expectedEntries && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		allocateTable(capacity);
+		_values = new int[Math.max(16, expectedEntries)];
+		_next = new int[_values.length];
+	}
+	
+	/**
+	 * Adds the given value to the values of the given key. 
+	 * The value is not added if it is the last value added for that key.
+	 */
+	void put(long key, int value) {
+		if (key < 0) throw new IllegalArgumentException("Negative key " + key);
+		int slot = slotOf(key);
+		if (_keys[slot] == EMPTY) {
+			_keys[slot] = key;
+			_heads[slot] = -1;
+			_keyCount++;
+		} else if (_values[_heads[slot]] == value) {
+			return;
+		}
+		
+		if (_entryCount == _values.length) {
+			int[] values = new int[_values.length * 2];
+			System.arraycopy(_values, 0, values, 0, _entryCount);
+			_values = values;
+			int[] next = new int[values.length];
+			System.arraycopy(_next, 0, next, 0, _entryCount);
+			_next = next;
+		}
+		_values[_entryCount] = value;
+		_next[_entryCount] = _heads[slot];
+		_heads[slot] = _entryCount++;
+		
+		if (_keyCount * 100 > _keys.length * MAX_LOAD_PERCENT) {
+			grow();
+		}
+	}
+	
+	/**
+	 * Returns the entry of the last value added for the given key, -1 if the key is not in the map.
+	 * The other values are reached with next(int).
+	 */
+	int first(long key) {
+		int slot = slotOf(key);
+		return _keys[slot] == EMPTY ? -1 : _heads[slot];
+	}
+	
+	/**
+	 * Returns the entry of the value added before the given entry for the same key, -1 if there is none
+	 */
+	int next(int entry) {
+		return _next[entry];
+	}
+	
+	/**
+	 * Returns the value of the given entry
+	 */
+	int value(int entry) {
+		return _values[entry];
+	}
+	
+	/**
+	 * Number of keys in the map
+	 */
+	int size() {
+		return _keyCount;
+	}
+	
+	/**
+	 * Returns the slot of the given key, or the empty slot where it would go
+	 */
+	private int slotOf(long key) {
+		int mask = _keys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while (_keys[slot] != EMPTY && _keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private void allocateTable(int capacity) {
+		_keys = new long[capacity];
+		Arrays.fill(_keys, EMPTY);
+		_heads = new int[capacity];
+	}
+	
+	private void grow() {
+		long[] keys = _keys;
+		int[] heads = _heads;
+		allocateTable(keys.length * 2);
+		for (int i = 0; i < keys.length; ++i) {
+			if (keys[i] != EMPTY) {
+				int slot = slotOf(keys[i]);
+				_keys[slot] = keys[i];
+				_heads[slot] = heads[i];
+			}
+		}
+	}
+}
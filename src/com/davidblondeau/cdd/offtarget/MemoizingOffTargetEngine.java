@@ -0,0 +1,201 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Off-target engine remembering the off-target hits of the windows already checked against a seed index.
+ *
+ * Isoforms and transcript families share long identical stretches, so the same window is a candidate of several
+ * mRNAs. Whether an siRNA can off-target only depends on its window and on its target mRNA, so the hits of each
+ * distinct window are computed once, whatever its target, and then shared by every siRNA matching it.
+ *
+ * Since an siRNA has a single target, a window that hybridizes well with two indexed mRNAs off-targets whatever
+ * its target: the hits of a window are its first 2 mRNAs at most, and the search stops there.
+ *
+ * The windows are keyed by their packed nucleotides. When both strands are checked, the window and its reverse 
+ * complement are searched together and share a single entry, whichever of the two is the antisense one. The hits of 
+ * at most a given number of windows are kept, the least recently used ones being evicted first.
+ *
+ * @author david
+ */
+public class MemoizingOffTargetEngine implements OffTargetEngine {
+	/**
+	 * Default number of windows whose hits are kept
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * The hits kept for each window
+	 */
+	private static final int MAX_HITS = 2;
+
+	private SeedIndexOffTargetEngine _engine;
+	private Map<Window,int[]> _hits;
+	private AtomicLong _hitCount = new AtomicLong();
+	private AtomicLong _missCount = new AtomicLong();
+
+	public MemoizingOffTargetEngine(SeedIndexOffTargetEngine engine) {
+		this(engine, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param engine The engine computing the hits of the windows
+	 * @param capacity The number of windows whose hits are kept
+	 */
+	public MemoizingOffTargetEngine(SeedIndexOffTargetEngine engine, final int capacity) {
+		if (engine == null) throw new IllegalArgumentException("Null engine");
+		if (capacity < 1) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		_engine = engine;
+		_hits = new LinkedHashMap<Window,int[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Window,int[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the engine computing the hits of the windows
+	 */
+	public SeedIndexOffTargetEngine getEngine() {
+		return _engine;
+	}
+
+	/**
+	 * Returns the number of windows whose hits were found in memory
+	 */
+	public long getHitCount() {
+		return _hitCount.get();
+	}
+
+	/**
+	 * Returns the number of windows whose hits had to be computed
+	 */
+	public long getMissCount() {
+		return _missCount.get();
+	}
+
+	/**
+	 * Returns the number of windows whose hits are kept
+	 */
+	public int size() {
+		synchronized (_hits) {
+			return _hits.size();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence seq = siRna.getAntisenseMatchingSequence();
+		return canOffTarget(new Window(SeedIndexOffTargetEngine.pack(seq), null, seq.length()), siRna.getTargetMRna());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canEitherStrandOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence seq = siRna.getAntisenseMatchingSequence();
+		long[] query = SeedIndexOffTargetEngine.pack(seq);
+		return canOffTarget(new Window(query, NtCodec.reverseComplement(query, seq.length()), seq.length()), siRna.getTargetMRna());
+	}
+
+	/**
+	 * Returns true if the given window hybridizes well with an indexed mRNA other than the target
+	 */
+	private boolean canOffTarget(Window window, Rna target) {
+		for (int mRna: hitsOf(window)) {
+			if (!_engine.isTarget(mRna, target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the indexed mRNAs the given window hybridizes well with, 2 of them at most
+	 */
+	private int[] hitsOf(Window window) {
+		int[] hits;
+		synchronized (_hits) {
+			hits = _hits.get(window);
+		}
+		if (hits != null) {
+			_hitCount.incrementAndGet();
+			return hits;
+		}
+
+		// computed out of the lock: another thread may compute the same hits meanwhile, with the same result
+		_missCount.incrementAndGet();
+		hits = new int[MAX_HITS];
+		int hitCount = _engine.search(window.queries(), window._length, null, hits);
+		hits = Arrays.copyOf(hits, hitCount);
+		synchronized (_hits) {
+			_hits.put(window, hits);
+		}
+		return hits;
+	}
+
+	/**
+	 * The packed nucleotides of a window, along with those of its reverse complement when both strands are checked
+	 */
+	private static class Window {
+		private long[] _words;
+		private long[] _reverse;
+		private int _length;
+
+		/**
+		 * @param reverse The reverse complement of the window, null to only check the window
+		 */
+		Window(long[] words, long[] reverse, int length) {
+			// the same pair whichever strand is the antisense one
+			boolean swap = reverse != null && compare(reverse, words) < 0;
+			_words = swap ? reverse : words;
+			_reverse = swap ? words : reverse;
+			_length = length;
+		}
+
+		/**
+		 * Returns the packed queries to search together
+		 */
+		long[][] queries() {
+			return _reverse == null ? new long[][] {_words} : new long[][] {_words, _reverse};
+		}
+
+		private static int compare(long[] words1, long[] words2) {
+			for (int i = 0; i < words1.length; ++i) {
+				if (words1[i] != words2[i]) return words1[i] < words2[i] ? -1 : 1;
+			}
+			return 0;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Window)) return false;
+			Window window = (Window) o;
+			return _length == window._length && Arrays.equals(_words, window._words) && Arrays.equals(_reverse, window._reverse);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Arrays.hashCode(_words) + Arrays.hashCode(_reverse)) + _length;
+		}
+	}
+}
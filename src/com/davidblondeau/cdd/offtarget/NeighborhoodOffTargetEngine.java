@@ -0,0 +1,185 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Off-target engine based on a hash table of every window of the mRNAs.
+ *
+ * Every window of the mRNAs is packed in a long and stored with the mRNAs it occurs in. An siRNA can off-target
+ * an mRNA if one of the sequences with at most 2 substitutions from it is a window of that mRNA. These sequences
+ * are enumerated (1954 of them for 21 nt) and looked up in the table.
+ *
+ * The table only holds the windows of one length. The siRNAs of other lengths are checked with a seed index of the mRNAs,
+ * which serves any length, built when the first of them is checked.
+ * The sense strand is checked in the same enumeration: the reverse complement of each neighbor is looked up along with it.
+ *
+ * @author david
+ */
+public class NeighborhoodOffTargetEngine implements OffTargetEngine {
+	/**
+	 * The windows are packed in longs whose sign bit must stay clear
+	 */
+	static final int MAX_WINDOW_LENGTH = 31;
+
+	private Rna[] _mRnas;
+	private int _windowLength;
+
+	/**
+	 * The mRNAs each packed window occurs in
+	 */
+	private LongIntMultiMap _windows;
+
+	/**
+	 * Used for the siRNAs whose length is not the window length. Built on the first of them, see fallback().
+	 */
+	private volatile OffTargetEngine _fallback;
+
+	/**
+	 * Builds an engine for 21 nt siRNAs
+	 */
+	public NeighborhoodOffTargetEngine(Set<Rna> mRnas) {
+		this(mRnas, 21);
+	}
+
+	/**
+	 * @param mRnas The mRNAs to check the siRNAs against
+	 * @param windowLength The length of the siRNAs that are looked up in the table
+	 * @throws IllegalArgumentException if an mRNA contains other nt than a, u, c and g
+	 */
+	public NeighborhoodOffTargetEngine(Set<Rna> mRnas, int windowLength) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+		if (windowLength < 1 || windowLength > MAX_WINDOW_LENGTH) throw new IllegalArgumentException("Window length should be between 1 and " + MAX_WINDOW_LENGTH);
+
+		_mRnas = mRnas.toArray(new Rna[mRnas.size()]);
+		_windowLength = windowLength;
+
+		long windowCount = 0;
+		for (Rna mRna : _mRnas) {
+			windowCount += Math.max(0, mRna.length() - windowLength + 1);
+		}
+		_windows = new LongIntMultiMap((int) Math.min(windowCount, 1 << 29));
+
+		int lastShift = 2 * (windowLength - 1);
+		for (int i = 0; i < _mRnas.length; ++i) {
+			long window = 0;
+			for (int pos = 1; pos <= _mRnas[i].length(); ++pos) {
+				int code = NtCodec.encode(_mRnas[i].getNt(pos));
+				if (code < 0) throw new IllegalArgumentException("Invalid nt '" + _mRnas[i].getNt(pos) + "' at nt #" + pos + " of mRNA #" + (i + 1));
+				// the window is rolled so that its first nt stays in the low bits, as NtCodec packs them
+				window = (window >>> 2) | ((long) code << lastShift);
+				if (pos >= windowLength) {
+					_windows.put(window, i);
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence siRnaSeq = siRna.getAntisenseMatchingSequence();
+		if (siRnaSeq.length() != _windowLength) {
+			return fallback().canOffTarget(siRna);
+		}
+		return hasNeighbor(pack(siRnaSeq), 0, false, 0, RnaImpl.MAX_DISTANCE_TO_HYBRIDIZE_WELL, siRna.getTargetMRna());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canEitherStrandOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence siRnaSeq = siRna.getAntisenseMatchingSequence();
+		if (siRnaSeq.length() != _windowLength) {
+			return fallback().canEitherStrandOffTarget(siRna);
+		}
+		long window = pack(siRnaSeq);
+		return hasNeighbor(window, NtCodec.reverseComplement(window, _windowLength), true, 0, 
+			RnaImpl.MAX_DISTANCE_TO_HYBRIDIZE_WELL, siRna.getTargetMRna());
+	}
+
+	/**
+	 * Returns the seed index checking the siRNAs of other lengths, building it the first time
+	 */
+	private OffTargetEngine fallback() {
+		OffTargetEngine fallback = _fallback;
+		if (fallback == null) {
+			synchronized (this) {
+				fallback = _fallback;
+				if (fallback == null) {
+					fallback = new SeedIndexOffTargetEngine(new LinkedHashSet<Rna>(Arrays.asList(_mRnas)));
+					_fallback = fallback;
+				}
+			}
+		}
+		return fallback;
+	}
+
+	/**
+	 * Returns true if the seed index for the siRNAs of other lengths is built
+	 */
+	boolean hasFallback() {
+		return _fallback != null;
+	}
+
+	/**
+	 * Packs a sequence of the window length in a long
+	 */
+	private long pack(NtSequence seq) {
+		long window = 0;
+		for (int pos = 1; pos <= _windowLength; ++pos) {
+			window |= (long) NtCodec.encode(seq.getNt(pos)) << (2 * (pos - 1));
+		}
+		return window;
+	}
+
+	/**
+	 * Returns true if the given window, or one of the windows with at most substitutions more substitutions
+	 * at positions from firstPos on, occurs in an mRNA other than the target.
+	 *
+	 * @param reverse The reverse complement of the window. A substitution at position pos of the window is the same 
+	 * substitution at the mirror position of its reverse complement, since complementing flips both bits of a code.
+	 * @param bothStrands Whether the reverse complement of each window is looked up too
+	 */
+	private boolean hasNeighbor(long window, long reverse, boolean bothStrands, int firstPos, int substitutions, Rna target) {
+		if (occursInOtherMRna(window, target) || (bothStrands && occursInOtherMRna(reverse, target))) return true;
+		if (substitutions == 0) return false;
+
+		for (int pos = firstPos; pos < _windowLength; ++pos) {
+			for (long substitution = 1; substitution <= 3; ++substitution) {
+				if (hasNeighbor(window ^ (substitution << (2 * pos)), reverse ^ (substitution << (2 * (_windowLength - 1 - pos))),
+					bothStrands, pos + 1, substitutions - 1, target))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the given window occurs in an mRNA other than the target
+	 */
+	private boolean occursInOtherMRna(long window, Rna target) {
+		for (int entry = _windows.first(window); entry >= 0; entry = _windows.next(entry)) {
+			if (!_mRnas[_windows.value(entry)].equals(target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
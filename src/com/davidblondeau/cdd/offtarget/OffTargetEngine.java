@@ -0,0 +1,34 @@
+package com.davidblondeau.cdd.offtarget;
+
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Finds out whether siRNAs can off-target the mRNAs of a set.
+ * 
+ * An engine is built once over a set of mRNAs and then queried for each siRNA candidate. 
+ * Engines are read-only once built and can be queried from several threads.
+ * 
+ * @author david
+ */
+public interface OffTargetEngine {
+
+	/**
+	 * Returns true if the given siRNA hybridizes well with at least one mRNA of the set other than its target mRNA.
+	 * This has the same semantics as SiRna#canOffTargetOtherMRnas(Set) called with the set the engine was built over.
+	 * 
+	 * @param siRna
+	 * @return
+	 */
+	public boolean canOffTarget(SiRna siRna);
+	
+	/**
+	 * Returns true if either strand of the given siRNA, taken as the guide strand, hybridizes well with at least one
+	 * mRNA of the set other than its target mRNA: the sequence matched by the antisense strand or the one matched
+	 * by the sense strand does.
+	 * This has the same semantics as SiRna#canEitherStrandOffTargetOtherMRnas(Set) called with the set the engine was built over.
+	 * 
+	 * @param siRna
+	 * @return
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna);
+}
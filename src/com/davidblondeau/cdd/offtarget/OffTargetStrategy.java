@@ -0,0 +1,59 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.Rna;
+
+/**
+ * The available ways of checking that siRNAs do not off-target the mRNAs of a set.
+ * 
+ * All strategies give the same answers, they only differ in their cost.
+ * 
+ * @author david
+ */
+public enum OffTargetStrategy {
+	/**
+	 * Sweeps every mRNA for each siRNA. 
+	 */
+	BRUTE_FORCE {
+		public OffTargetEngine newEngine(Set<Rna> mRnas, HybridizationPolicy policy) {
+			return new BruteForceOffTargetEngine(mRnas, policy);
+		}
+	},
+	
+	/**
+	 * Looks up seeds of the siRNAs in an index of the mRNAs and only verifies the seed hits.
+	 */
+	SEED_INDEX {
+		public OffTargetEngine newEngine(Set<Rna> mRnas, HybridizationPolicy policy) {
+			return new SeedIndexOffTargetEngine(mRnas, policy);
+		}
+	},
+	
+	/**
+	 * Looks up every sequence with at most 2 substitutions from the siRNAs in a table of the mRNA windows.
+	 * Only for the default hybridization policy: the siRNAs are checked with a seed index for the other policies.
+	 */
+	NEIGHBORHOOD {
+		public OffTargetEngine newEngine(Set<Rna> mRnas, HybridizationPolicy policy) {
+			if (policy != MismatchCountPolicy.DEFAULT) {
+				return SEED_INDEX.newEngine(mRnas, policy);
+			}
+			return new NeighborhoodOffTargetEngine(mRnas);
+		}
+	};
+	
+	/**
+	 * Returns an engine built over the given mRNAs, checking the siRNAs with the default hybridization policy
+	 */
+	public OffTargetEngine newEngine(Set<Rna> mRnas) {
+		return newEngine(mRnas, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Returns an engine built over the given mRNAs, checking the siRNAs with the given hybridization policy
+	 */
+	public abstract OffTargetEngine newEngine(Set<Rna> mRnas, HybridizationPolicy policy);
+}
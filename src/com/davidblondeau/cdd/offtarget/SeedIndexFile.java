@@ -0,0 +1,234 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.Rna;
+
+/**
+ * Binary file format of the seed index of SeedIndexOffTargetEngine.
+ *
+ * The file is made of a header followed by the tables of the index, in little-endian order, each table starting 
+ * on a multiple of 8 bytes:
+ * - header: magic number (long), format version (int), seed length (int), number of mRNAs (int), total number of nt (int),
+ * number of seed positions (int), size of the names in bytes (int), checksum of the indexed mRNAs (long);
+ * - start of each mRNA in the packed mRNAs (int[number of mRNAs + 1]);
+ * - start of the positions of each seed (int[4^seed length + 1]);
+ * - seed positions (int[number of seed positions]);
+ * - mRNA of each seed position (int[number of seed positions]);
+ * - packed mRNAs (long[]);
+ * - names of the mRNAs: for each mRNA, the length of its UTF-8 encoded name (int, -1 if it has none) followed by the name.
+ *
+ * The tables are memory-mapped when the file is opened, so that opening an index does not depend on its size.
+ *
+ * @author david
+ */
+final class SeedIndexFile {
+	static final long MAGIC = 0x5844495345454453L; // "SDSEEIDX" read as a little-endian long
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 40;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private SeedIndexFile() {
+	}
+
+	/**
+	 * Writes the index of the given engine to a file
+	 */
+	static void write(SeedIndexOffTargetEngine engine, File file)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		String[] names = engine.getNames();
+		byte[][] encodedNames = new byte[names.length][];
+		int namesLength = 0;
+		for (int i = 0; i < names.length; ++i) {
+			encodedNames[i] = names[i] == null ? null : names[i].getBytes(StandardCharsets.UTF_8);
+			namesLength += 4 + (names[i] == null ? 0 : encodedNames[i].length);
+		}
+		checkMappable(4L * engine.getSeedPositions().limit());
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(SeedIndexOffTargetEngine.SEED_LENGTH);
+			buffer.putInt(names.length);
+			buffer.putInt(engine.getStarts().get(names.length));
+			buffer.putInt(engine.getSeedPositions().limit());
+			buffer.putInt(namesLength);
+			buffer.putLong(engine.getSourceChecksum());
+
+			writeInts(channel, buffer, engine.getStarts());
+			writeInts(channel, buffer, engine.getSeedStarts());
+			writeInts(channel, buffer, engine.getSeedPositions());
+			writeInts(channel, buffer, engine.getSeedMRnas());
+			LongBuffer words = engine.getWords();
+			for (int i = 0; i < words.limit(); ++i) {
+				ensureRemaining(channel, buffer, 8);
+				buffer.putLong(words.get(i));
+			}
+			for (byte[] name : encodedNames) {
+				ensureRemaining(channel, buffer, 4);
+				buffer.putInt(name == null ? -1 : name.length);
+				if (name != null) {
+					for (byte b : name) {
+						ensureRemaining(channel, buffer, 1);
+						buffer.put(b);
+					}
+				}
+			}
+			flush(channel, buffer);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a table of ints, padded to a multiple of 8 bytes
+	 */
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer ints)
+		throws IOException
+	{
+		for (int i = 0; i < ints.limit(); ++i) {
+			ensureRemaining(channel, buffer, 4);
+			buffer.putInt(ints.get(i));
+		}
+		if (ints.limit() % 2 != 0) {
+			ensureRemaining(channel, buffer, 4);
+			buffer.putInt(0);
+		}
+	}
+
+	private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int count)
+		throws IOException
+	{
+		if (buffer.remaining() < count) {
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+		throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Returns true if the given file starts like a seed index file
+	 */
+	static boolean isSeedIndex(File file)
+		throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			return in.length() >= HEADER_SIZE && Long.reverseBytes(in.readLong()) == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Opens an index file
+	 *
+	 * @param mRnas The indexed mRNAs, null if they are not known
+	 * @param checksum The checksum of the indexed mRNAs, ignored if they are not known
+	 * @throws IOException If the file is not a valid index, or if it was built over other mRNAs than the given ones
+	 */
+	static SeedIndexOffTargetEngine read(File file, Rna[] mRnas, long checksum)
+		throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("Null file");
+
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() < HEADER_SIZE) throw new IOException(file + " is not a seed index");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong() != MAGIC) throw new IOException(file + " is not a seed index");
+			int version = header.getInt();
+			if (version != VERSION) throw new IOException("Unsupported version of seed index " + file + ": " + version + ", expected " + VERSION);
+			int seedLength = header.getInt();
+			if (seedLength != SeedIndexOffTargetEngine.SEED_LENGTH) throw new IOException("Seed index " + file + " has seeds of " + seedLength + " nt, expected " + SeedIndexOffTargetEngine.SEED_LENGTH);
+			int mRnaCount = header.getInt();
+			int totalLength = header.getInt();
+			int positionCount = header.getInt();
+			int namesLength = header.getInt();
+			long sourceChecksum = header.getLong();
+			if (mRnas != null && (mRnas.length != mRnaCount || checksum != sourceChecksum)) {
+				throw new IOException("Seed index " + file + " is stale: it was built over other mRNAs");
+			}
+
+			long offset = HEADER_SIZE;
+			int seedCount = 1 << (2 * seedLength);
+			long expectedSize = offset + intTableSize(mRnaCount + 1) + intTableSize(seedCount + 1) + 2 * intTableSize(positionCount) 
+				+ 8L * NtCodec.wordsFor(totalLength) + namesLength;
+			if (channel.size() != expectedSize) throw new IOException("Seed index " + file + " is truncated or corrupted");
+
+			IntBuffer starts = map(channel, offset, 4L * (mRnaCount + 1)).asIntBuffer();
+			offset += intTableSize(mRnaCount + 1);
+			IntBuffer seedStarts = map(channel, offset, 4L * (seedCount + 1)).asIntBuffer();
+			offset += intTableSize(seedCount + 1);
+			IntBuffer seedPositions = map(channel, offset, 4L * positionCount).asIntBuffer();
+			offset += intTableSize(positionCount);
+			IntBuffer seedMRnas = map(channel, offset, 4L * positionCount).asIntBuffer();
+			offset += intTableSize(positionCount);
+			LongBuffer words = map(channel, offset, 8L * NtCodec.wordsFor(totalLength)).asLongBuffer();
+			offset += 8L * NtCodec.wordsFor(totalLength);
+
+			ByteBuffer namesBuffer = map(channel, offset, namesLength);
+			String[] names = new String[mRnaCount];
+			for (int i = 0; i < mRnaCount; ++i) {
+				int length = namesBuffer.getInt();
+				if (length >= 0) {
+					byte[] name = new byte[length];
+					namesBuffer.get(name);
+					names[i] = new String(name, StandardCharsets.UTF_8);
+				}
+			}
+
+			return new SeedIndexOffTargetEngine(mRnas, names, sourceChecksum, words, starts, seedStarts, seedPositions, seedMRnas);
+		} finally {
+			// the mappings stay valid once the file is closed
+			in.close();
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long offset, long size)
+		throws IOException
+	{
+		checkMappable(size);
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void checkMappable(long size)
+		throws IOException
+	{
+		if (size > Integer.MAX_VALUE) throw new IOException("Seed index table too large to be mapped: " + size + " bytes");
+	}
+
+	/**
+	 * Returns the size of a table of ints, padded to a multiple of 8 bytes
+	 */
+	private static long intTableSize(int length) {
+		return 4L * (length + (length % 2));
+	}
+}
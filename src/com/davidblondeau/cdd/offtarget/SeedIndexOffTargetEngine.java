@@ -0,0 +1,583 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.NtSequence;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaStore;
+import com.davidblondeau.cdd.na.SiRna;
+
+/**
+ * Off-target engine based on an index of the seeds of the mRNAs.
+ *
+ * The sequence an siRNA matches is split in 3 seeds of 7 nt. Since a sequence that hybridizes well with it
+ * has at most 2 mismatches, at least one of the seeds matches that sequence exactly (pigeonhole principle).
+ * The index gives every position of every 7 nt sequence in the mRNAs: the windows around the positions where
+ * one of the seeds occurs are the only ones that need to be compared with the siRNA.
+ *
+ * The mRNAs are packed one after the other in a single array. The index is a table addressed by the 14-bit code
+ * of the seeds, pointing to the positions of each seed in the packed mRNAs.
+ *
+ * With a hybridization policy requiring a seed match, the seed region of the guide strand is a 7 nt sequence:
+ * the index gives the only windows to score with the policy in a single lookup. With the other policies, the
+ * sequence is split in one more seed than the number of mismatches the policy allows.
+ *
+ * The sense strand of an siRNA is checked by looking up the seeds of the sequence it matches in the same index.
+ *
+ * The index can be saved to a file and opened again, memory-mapped, without being rebuilt (see {@link SeedIndexFile}).
+ *
+ * @author david
+ */
+public class SeedIndexOffTargetEngine implements OffTargetEngine {
+	/**
+	 * Length of the seeds, that of the seed region of the guide strand
+	 */
+	static final int SEED_LENGTH = 7;
+
+
+	/**
+	 * The indexed mRNAs. Null when the index was opened from a file without them: the target mRNAs are then
+	 * recognized by their name.
+	 */
+	private Rna[] _mRnas;
+
+	/**
+	 * True when the id of each indexed mRNA is its index, as for the mRNAs of a whole FASTA input or RnaStore: an mRNA 
+	 * whose id is not the index is then not the one indexed there, without comparing them.
+	 */
+	private boolean _idsAreIndices;
+
+	/**
+	 * The names of the indexed mRNAs, null elements for the mRNAs without name
+	 */
+	private String[] _names;
+
+	/**
+	 * Checksum of the indexed mRNAs, see checksum(Set)
+	 */
+	private long _sourceChecksum;
+
+	/**
+	 * The mRNAs packed one after the other
+	 */
+	private LongBuffer _words;
+
+	/**
+	 * Position of the first nt of each mRNA in the packed mRNAs. The last element is the total length.
+	 */
+	private IntBuffer _starts;
+
+	/**
+	 * For each seed code, where its positions start in _seedPositions. The last element is the number of positions.
+	 */
+	private IntBuffer _seedStarts;
+
+	/**
+	 * Positions of the seeds in the packed mRNAs, grouped by seed
+	 */
+	private IntBuffer _seedPositions;
+
+	/**
+	 * The mRNA each position of _seedPositions belongs to
+	 */
+	private IntBuffer _seedMRnas;
+
+	/**
+	 * How well an siRNA must hybridize with a window to off-target its mRNA
+	 */
+	private HybridizationPolicy _policy = MismatchCountPolicy.DEFAULT;
+
+	/**
+	 * @param mRnas The mRNAs to check the siRNAs against
+	 * @throws IllegalArgumentException if an mRNA contains other nt than a, u, c and g
+	 */
+	public SeedIndexOffTargetEngine(Set<Rna> mRnas) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+
+		_mRnas = mRnas.toArray(new Rna[mRnas.size()]);
+		_idsAreIndices = idsAreIndices(_mRnas);
+		_names = new String[_mRnas.length];
+		_sourceChecksum = checksum(mRnas);
+
+		int[] starts = new int[_mRnas.length + 1];
+		long totalLength = 0;
+		for (int i = 0; i < _mRnas.length; ++i) {
+			_names[i] = _mRnas[i].getName();
+			starts[i] = (int) totalLength;
+			totalLength += _mRnas[i].length();
+		}
+		if (totalLength > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many nt to index: " + totalLength);
+		starts[_mRnas.length] = (int) totalLength;
+
+		if (mRnas instanceof RnaStore) {
+			// the mRNAs are already packed the same way, off the heap: so is the index
+			_words = ((RnaStore) mRnas).getWords();
+			_starts = ((RnaStore) mRnas).getStarts();
+			buildSeedTable(_words, _starts, true);
+			return;
+		}
+
+		long[] words = new long[NtCodec.wordsFor((int) totalLength)];
+		for (int i = 0; i < _mRnas.length; ++i) {
+			for (int pos = 1; pos <= _mRnas[i].length(); ++pos) {
+				int code = NtCodec.encode(_mRnas[i].getNt(pos));
+				if (code < 0) throw new IllegalArgumentException("Invalid nt '" + _mRnas[i].getNt(pos) + "' at nt #" + pos + " of mRNA #" + (i + 1));
+				NtCodec.set(words, starts[i] + pos - 1, code);
+			}
+		}
+		_words = LongBuffer.wrap(words);
+		_starts = IntBuffer.wrap(starts);
+
+		buildSeedTable(_words, _starts, false);
+	}
+
+	/**
+	 * @param mRnas
+	 * @param policy How well an siRNA must hybridize with an mRNA to off-target it
+	 */
+	public SeedIndexOffTargetEngine(Set<Rna> mRnas, HybridizationPolicy policy) {
+		this(mRnas);
+		if (policy == null) throw new IllegalArgumentException("Null hybridization policy");
+		_policy = policy;
+	}
+
+	/**
+	 * Builds an engine over tables read from an index file
+	 *
+	 * @param mRnas The indexed mRNAs, null if they are not known
+	 */
+	SeedIndexOffTargetEngine(Rna[] mRnas, String[] names, long sourceChecksum, LongBuffer words, IntBuffer starts,
+		IntBuffer seedStarts, IntBuffer seedPositions, IntBuffer seedMRnas)
+	{
+		_mRnas = mRnas;
+		_idsAreIndices = mRnas != null && idsAreIndices(mRnas);
+		_names = names;
+		_sourceChecksum = sourceChecksum;
+		_words = words;
+		_starts = starts;
+		_seedStarts = seedStarts;
+		_seedPositions = seedPositions;
+		_seedMRnas = seedMRnas;
+	}
+
+	/**
+	 * Counting sort of the positions of every seed of every mRNA
+	 *
+	 * @param direct Whether the seed positions are kept off the heap
+	 */
+	private void buildSeedTable(LongBuffer words, IntBuffer starts, boolean direct) {
+		int[] seedStarts = new int[(1 << (2*SEED_LENGTH)) + 1];
+		for (int i = 0; i < starts.limit() - 1; ++i) {
+			for (int pos = starts.get(i); pos + SEED_LENGTH <= starts.get(i+1); ++pos) {
+				seedStarts[seedAt(words, pos) + 1]++;
+			}
+		}
+		for (int seed = 1; seed < seedStarts.length; ++seed) {
+			seedStarts[seed] += seedStarts[seed-1];
+		}
+
+		int[] next = new int[seedStarts.length - 1];
+		System.arraycopy(seedStarts, 0, next, 0, next.length);
+		int seedPositionCount = seedStarts[seedStarts.length - 1];
+		IntBuffer seedPositions = direct ? allocateDirectInts(seedPositionCount) : IntBuffer.wrap(new int[seedPositionCount]);
+		IntBuffer seedMRnas = direct ? allocateDirectInts(seedPositionCount) : IntBuffer.wrap(new int[seedPositionCount]);
+		for (int i = 0; i < starts.limit() - 1; ++i) {
+			for (int pos = starts.get(i); pos + SEED_LENGTH <= starts.get(i+1); ++pos) {
+				int index = next[seedAt(words, pos)]++;
+				seedPositions.put(index, pos);
+				seedMRnas.put(index, i);
+			}
+		}
+		_seedStarts = IntBuffer.wrap(seedStarts);
+		_seedPositions = seedPositions;
+		_seedMRnas = seedMRnas;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the ints do not fit in a direct buffer
+	 */
+	static IntBuffer allocateDirectInts(int count) {
+		if (4L * count > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many nt to index off-heap: " + count);
+		return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	/**
+	 * Returns an engine over the given mRNAs that recognizes the target mRNA of the siRNAs by its name rather than
+	 * by identity, as an engine opened from a file without its mRNAs does. The engine does not keep the mRNAs.
+	 */
+	static SeedIndexOffTargetEngine matchingTargetsByName(Set<Rna> mRnas) {
+		SeedIndexOffTargetEngine engine = new SeedIndexOffTargetEngine(mRnas);
+		engine._mRnas = null;
+		return engine;
+	}
+
+	/**
+	 * Returns an engine sharing the index of this one, checking the siRNAs with the given policy.
+	 * For instance to use another policy with an index opened from a file.
+	 */
+	public SeedIndexOffTargetEngine withHybridizationPolicy(HybridizationPolicy policy) {
+		if (policy == null) throw new IllegalArgumentException("Null hybridization policy");
+		SeedIndexOffTargetEngine engine = new SeedIndexOffTargetEngine(_mRnas, _names, _sourceChecksum, _words, _starts,
+			_seedStarts, _seedPositions, _seedMRnas);
+		engine._policy = policy;
+		return engine;
+	}
+
+	/**
+	 * Returns the policy the siRNAs are checked with
+	 */
+	public HybridizationPolicy getHybridizationPolicy() {
+		return _policy;
+	}
+
+	/**
+	 * Saves the index to the given file, to be opened again with open(File, Set) or open(File)
+	 */
+	public void save(File file)
+		throws IOException
+	{
+		SeedIndexFile.write(this, file);
+	}
+
+	/**
+	 * Opens an index saved by save(File), checking that it was built over the given mRNAs.
+	 *
+	 * @param file
+	 * @param mRnas The mRNAs the index was built over, in the same order
+	 * @throws IOException If the file cannot be read, is not a valid index or was built over other mRNAs
+	 */
+	public static SeedIndexOffTargetEngine open(File file, Set<Rna> mRnas)
+		throws IOException
+	{
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+		return SeedIndexFile.read(file, mRnas.toArray(new Rna[mRnas.size()]), checksum(mRnas));
+	}
+
+	/**
+	 * Opens an index saved by save(File) without the mRNAs it was built over. The target mRNA of the siRNAs
+	 * is then recognized by its name: the indexed mRNAs with the same name as the target are not checked.
+	 *
+	 * @throws IOException If the file cannot be read or is not a valid index
+	 */
+	public static SeedIndexOffTargetEngine open(File file)
+		throws IOException
+	{
+		return SeedIndexFile.read(file, null, 0);
+	}
+
+	/**
+	 * Returns a checksum of the names and sequences of the given mRNAs, in their order,
+	 * used to detect an index file that was built over other mRNAs
+	 */
+	public static long checksum(Set<Rna> mRnas) {
+		if (mRnas == null) throw new IllegalArgumentException("Null mRNA set");
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+		for (Rna mRna : mRnas) {
+			int length = 0;
+			for (int pos = 1; pos <= mRna.length(); ++pos) {
+				if (length == buffer.length) {
+					crc.update(buffer, 0, length);
+					length = 0;
+				}
+				buffer[length++] = (byte) NtCodec.encode(mRna.getNt(pos));
+			}
+			crc.update(buffer, 0, length);
+			// separates the mRNAs, since the codes are all lower than 4
+			crc.update(0xff);
+			if (mRna.getName() != null) {
+				crc.update(mRna.getName().getBytes(StandardCharsets.UTF_8));
+			}
+			crc.update(0xfe);
+		}
+		return crc.getValue() ^ ((long) mRnas.size() << 32);
+	}
+
+	/**
+	 * Returns the checksum of the mRNAs this index was built over
+	 */
+	public long getSourceChecksum() {
+		return _sourceChecksum;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence siRnaSeq = siRna.getAntisenseMatchingSequence();
+		return search(pack(siRnaSeq), siRnaSeq.length(), siRna.getTargetMRna(), new int[1]) > 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.davidblondeau.cdd.offtarget.OffTargetEngine#canEitherStrandOffTarget(com.davidblondeau.cdd.na.SiRna)
+	 */
+	public boolean canEitherStrandOffTarget(SiRna siRna) {
+		if (siRna == null) throw new IllegalArgumentException("null siRna");
+
+		NtSequence siRnaSeq = siRna.getAntisenseMatchingSequence();
+		return search(bothStrands(pack(siRnaSeq), siRnaSeq.length()), siRnaSeq.length(), siRna.getTargetMRna(), new int[1]) > 0;
+	}
+
+	/**
+	 * Returns the packed query of the antisense strand of an siRNA and the one of its sense strand, the reverse 
+	 * complement of the first one, to be searched together
+	 */
+	static long[][] bothStrands(long[] query, int length) {
+		return new long[][] {query, NtCodec.reverseComplement(query, length)};
+	}
+
+	/**
+	 * Packs the nucleotides of a query sequence
+	 */
+	static long[] pack(NtSequence seq) {
+		long[] query = new long[NtCodec.wordsFor(seq.length())];
+		for (int pos = 1; pos <= seq.length(); ++pos) {
+			NtCodec.set(query, pos - 1, NtCodec.encode(seq.getNt(pos)));
+		}
+		return query;
+	}
+
+	/**
+	 * Looks for the indexed mRNAs other than the target that the packed query hybridizes well with.
+	 * The search stops once hits.length of them are found. Two mRNAs recognized as the same target count as one.
+	 *
+	 * @param target The mRNA whose windows are skipped, null to skip none
+	 * @param hits Receives the indices of the mRNAs found
+	 * @return The number of mRNAs found
+	 */
+	int search(long[] query, int length, Rna target, int[] hits) {
+		return search(new long[][] {query}, length, target, hits);
+	}
+
+	/**
+	 * Same as search(long[], int, Rna, int[]) for the mRNAs that any of the packed queries of the same length 
+	 * hybridizes well with, in a single pass: the seeds of the queries are looked up together, and each window
+	 * is compared with every query.
+	 */
+	int search(long[][] queries, int length, Rna target, int[] hits) {
+		if (_policy.requiresSeedMatch() && length >= HybridizationPolicy.SEED_LAST) {
+			// only the windows matching the seed region exactly can hybridize well: guide positions 2 to 8 pair
+			// with the 7 nt of the query ending one nt before its last one
+			return searchSeed(queries, length, target, length - HybridizationPolicy.SEED_LAST, hits, 0);
+		}
+
+		int seedCount = _policy.getMaxMismatches() + 1;
+		if (length < seedCount * SEED_LENGTH) {
+			// too short to be split in seeds
+			return sweep(queries, length, target, hits);
+		}
+
+		int hitCount = 0;
+		for (int seedOffset = 0; seedOffset < seedCount * SEED_LENGTH && hitCount < hits.length; seedOffset += SEED_LENGTH) {
+			hitCount = searchSeed(queries, length, target, seedOffset, hits, hitCount);
+		}
+		return hitCount;
+	}
+
+	/**
+	 * Same as search(long[][], int, Rna, int[]) among the windows matching the seed of a query at the given offset
+	 *
+	 * @param hitCount The number of mRNAs already found
+	 */
+	private int searchSeed(long[][] queries, int length, Rna target, int seedOffset, int[] hits, int hitCount) {
+		for (int q = 0; q < queries.length && hitCount < hits.length; ++q) {
+			int seed = seedAt(queries[q], seedOffset);
+			if (isSeedOfPreviousQuery(queries, q, seedOffset, seed)) continue;
+			for (int hit = _seedStarts.get(seed); hit < _seedStarts.get(seed + 1) && hitCount < hits.length; ++hit) {
+				int mRna = _seedMRnas.get(hit);
+				int start = _seedPositions.get(hit) - seedOffset;
+				if (start >= _starts.get(mRna) && start + length <= _starts.get(mRna + 1)
+					&& !isSkipped(mRna, target, hits, hitCount)
+					&& hybridizeWell(queries, length, start))
+				{
+					hits[hitCount++] = mRna;
+				}
+			}
+		}
+		return hitCount;
+	}
+
+	/**
+	 * Returns true if one of the queries before the q-th one has the given seed at the given offset: its windows
+	 * have already been compared with every query
+	 */
+	private static boolean isSeedOfPreviousQuery(long[][] queries, int q, int seedOffset, int seed) {
+		for (int i = 0; i < q; ++i) {
+			if (seedAt(queries[i], seedOffset) == seed) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Compares the queries with every window of the mRNAs other than the target
+	 */
+	private int sweep(long[][] queries, int length, Rna target, int[] hits) {
+		int hitCount = 0;
+		int mRnaCount = _starts.limit() - 1;
+		for (int mRna = 0; mRna < mRnaCount && hitCount < hits.length; ++mRna) {
+			if (isSkipped(mRna, target, hits, hitCount)) continue;
+			for (int start = _starts.get(mRna); start + length <= _starts.get(mRna + 1); ++start) {
+				if (hybridizeWell(queries, length, start)) {
+					hits[hitCount++] = mRna;
+					break;
+				}
+			}
+		}
+		return hitCount;
+	}
+
+	/**
+	 * Returns true if the windows of the indexed mRNA at the given index need not be compared with the query:
+	 * the mRNA is the target or has already been found
+	 */
+	private boolean isSkipped(int mRna, Rna target, int[] hits, int hitCount) {
+		if (target != null && isTarget(mRna, target)) return true;
+		for (int i = 0; i < hitCount; ++i) {
+			if (isSameTarget(mRna, hits[i])) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the indexed mRNA at the given index is the target of the siRNA
+	 */
+	boolean isTarget(int mRna, Rna target) {
+		if (_mRnas != null) {
+			if (_idsAreIndices && target.getId() != mRna) return false;
+			return _mRnas[mRna].equals(target);
+		}
+		return target.getName() != null && target.getName().equals(_names[mRna]);
+	}
+
+	private static boolean idsAreIndices(Rna[] mRnas) {
+		for (int i = 0; i < mRnas.length; ++i) {
+			if (mRnas[i].getId() != i) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the indexed mRNAs at the given indices are the target of the same siRNAs
+	 */
+	private boolean isSameTarget(int mRna1, int mRna2) {
+		if (mRna1 == mRna2) return true;
+		return _mRnas == null && _names[mRna1] != null && _names[mRna1].equals(_names[mRna2]);
+	}
+
+	/**
+	 * Returns true if any of the queries hybridizes well with the window of the packed mRNAs starting at the given 
+	 * position. A window of at most 32 nt is read once for all the queries.
+	 */
+	private boolean hybridizeWell(long[][] queries, int length, int start) {
+		if (length > NtCodec.NTS_PER_WORD) {
+			for (long[] query: queries) {
+				if (hybridizeWell(query, length, start)) return true;
+			}
+			return false;
+		}
+
+		long window = NtCodec.extract(_words, start, length);
+		for (long[] query: queries) {
+			if (hybridizeWell(NtCodec.mismatchMask(query[0], window), length)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if a query of at most 32 nt hybridizes well with a window, given the mask of their mismatches
+	 * (see NtCodec#mismatchMask(long, long))
+	 */
+	private boolean hybridizeWell(long mismatches, int length) {
+		if (_policy instanceof MismatchCountPolicy) {
+			return Long.bitCount(mismatches) <= _policy.getMaxMismatches();
+		}
+		// mismatch at position i of the query is a mismatch at guide position length - i
+		long guideMismatches = 0;
+		for (; mismatches != 0; mismatches &= mismatches - 1) {
+			int pos = Long.numberOfTrailingZeros(mismatches) >>> 1;
+			guideMismatches |= 1L << (length - 1 - pos);
+		}
+		return _policy.hybridizeWell(guideMismatches, length);
+	}
+
+	/**
+	 * Returns true if the query hybridizes well with the window of the packed mRNAs starting at the given position
+	 */
+	private boolean hybridizeWell(long[] query, int length, int start) {
+		if (_policy instanceof MismatchCountPolicy) {
+			// only the number of mismatches matters, stop as soon as there are too many
+			int maxDistance = _policy.getMaxMismatches();
+			int distance = 0;
+			for (int i = 0; i < length; i += NtCodec.NTS_PER_WORD) {
+				int count = Math.min(NtCodec.NTS_PER_WORD, length - i);
+				distance += Long.bitCount(NtCodec.mismatchMask(NtCodec.extract(query, i, count), NtCodec.extract(_words, start + i, count)));
+				if (distance > maxDistance) return false;
+			}
+			return true;
+		}
+
+		if (length > Long.SIZE) throw new IllegalArgumentException("Sequences longer than " + Long.SIZE + " nt can only be checked by mismatch count");
+		// mismatch at position i of the query is a mismatch at guide position length - i
+		long guideMismatches = 0;
+		for (int i = 0; i < length; i += NtCodec.NTS_PER_WORD) {
+			int count = Math.min(NtCodec.NTS_PER_WORD, length - i);
+			long mismatches = NtCodec.mismatchMask(NtCodec.extract(query, i, count), NtCodec.extract(_words, start + i, count));
+			for (; mismatches != 0; mismatches &= mismatches - 1) {
+				int pos = i + (Long.numberOfTrailingZeros(mismatches) >>> 1);
+				guideMismatches |= 1L << (length - 1 - pos);
+			}
+		}
+		return _policy.hybridizeWell(guideMismatches, length);
+	}
+
+	/**
+	 * Returns the code of the seed starting at the given position of packed nucleotides
+	 */
+	private static int seedAt(long[] words, int pos) {
+		return (int) NtCodec.extract(words, pos, SEED_LENGTH);
+	}
+
+	private static int seedAt(LongBuffer words, int pos) {
+		return (int) NtCodec.extract(words, pos, SEED_LENGTH);
+	}
+
+	String[] getNames() {
+		return _names;
+	}
+
+	LongBuffer getWords() {
+		return _words;
+	}
+
+	IntBuffer getStarts() {
+		return _starts;
+	}
+
+	IntBuffer getSeedStarts() {
+		return _seedStarts;
+	}
+
+	IntBuffer getSeedPositions() {
+		return _seedPositions;
+	}
+
+	IntBuffer getSeedMRnas() {
+		return _seedMRnas;
+	}
+}
@@ -0,0 +1,61 @@
+package com.davidblondeau.cdd;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.BruteForceOffTargetEngine;
+
+import junit.framework.TestCase;
+
+public class ParallelOffTargetSelectorTest extends TestCase {
+	private static final String MRNA1 = "aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga";
+	private static final String MRNA2 = "aaugucuaugcucacugacugaauucacuauacucacugagucaa";
+	private static final String MRNA4 = "aaucgcuaugcucacugacugauaucacuauacucacugacacaa";
+	
+	private Rna mRna1 = new RnaImpl(MRNA1);
+	private Rna mRna2 = new RnaImpl(MRNA2);
+	private Rna mRna4 = new RnaImpl(MRNA4);
+	private ExecutorService executor;
+	
+	@Override
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(3);
+	}
+	
+	@Override
+	public void tearDown() {
+		executor.shutdown();
+	}
+	
+	public void testSelectSameAsSerial() throws Exception {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		
+		RnaiScreenerCreator creator = new RnaiScreenerCreator();
+		ParallelOffTargetSelector selector = new ParallelOffTargetSelector(executor, new BruteForceOffTargetEngine(mRnas));
+		Set<SiRna> candidates1 = new SiRnaFinder().findCandidates(mRna1);
+		Set<SiRna> candidates2 = new SiRnaFinder().findCandidates(mRna2);
+		int index1 = selector.submit(candidates1);
+		int index2 = selector.submit(candidates2);
+		
+		assertEquals(creator.selectOffTargetingFreeSiRnas(candidates1, mRnas).toString(), selector.select(index1).toString());
+		assertEquals(creator.selectOffTargetingFreeSiRnas(candidates2, mRnas).toString(), selector.select(index2).toString());
+	}
+	
+	public void testSelectNotEnoughCandidates() throws Exception {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+		
+		ParallelOffTargetSelector selector = new ParallelOffTargetSelector(executor, new BruteForceOffTargetEngine(mRnas));
+		int index = selector.submit(new SiRnaFinder().findCandidates(mRna2));
+		assertTrue(selector.select(index).size() < RnaiScreenerCreator.SIRNA_SCREEN_SIZE);
+		selector.cancel();
+	}
+}
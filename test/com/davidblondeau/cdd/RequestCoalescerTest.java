@@ -0,0 +1,68 @@
+package com.davidblondeau.cdd;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class RequestCoalescerTest extends TestCase {
+	private RequestCoalescer<String,Integer> coalescer = new RequestCoalescer<String,Integer>();
+	private AtomicInteger computations = new AtomicInteger();
+
+	public void testCoalesce() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<Integer> computation = new Callable<Integer>() {
+			public Integer call() throws InterruptedException {
+				started.countDown();
+				release.await();
+				return computations.incrementAndGet();
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Integer> first = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return coalescer.get("query", computation);
+				}
+			});
+			started.await();
+			Future<Integer> second = executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					return coalescer.get("query", computation);
+				}
+			});
+			while (coalescer.getCoalescedCount() == 0) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			assertEquals(1, first.get().intValue());
+			assertEquals(1, second.get().intValue());
+		} finally {
+			executor.shutdown();
+		}
+
+		// the answers are not kept
+		assertEquals(2, coalescer.get("query", computation).intValue());
+		assertEquals(1, coalescer.getCoalescedCount());
+	}
+
+	public void testFailure() throws Exception {
+		try {
+			coalescer.get("query", new Callable<Integer>() {
+				public Integer call() {
+					throw new IllegalStateException("failed");
+				}
+			});
+			fail("Should have thrown the failure");
+		} catch(ExecutionException ee) {
+			assertTrue(ee.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+}
@@ -1,15 +1,31 @@
 package com.davidblondeau.cdd;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.NaFactory;
 import com.davidblondeau.cdd.na.Rna;
 import com.davidblondeau.cdd.na.RnaImpl;
 import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.na.WeightedHybridizationPolicy;
+import com.davidblondeau.cdd.offtarget.BackgroundOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.BruteForceOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetStrategy;
 
 import junit.framework.TestCase;
 
@@ -67,6 +83,28 @@ public class RnaiScreenerCreatorTest extends TestCase {
 		assertEquals(5, candidates.get(mRna2).size());
 	}
 
+	public void testFindSiRnaCandidates_Parallel() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna2);
+		mRnas.add(mRna1);
+		
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			creator.setExecutor(pool);
+			Map<Rna,Set<SiRna>> candidates = creator.findCandidateSiRnas(mRnas);
+			assertNotNull(candidates);
+			assertEquals(2, candidates.keySet().size());
+			assertEquals("The candidates should follow the order of the mRNAs", mRna2, candidates.keySet().iterator().next());
+			assertEquals(7, candidates.get(mRna1).size());
+			assertEquals(5, candidates.get(mRna2).size());
+			
+			mRnas.add(mRna3);
+			assertNull(creator.findCandidateSiRnas(mRnas));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
 	public void testFindSiRnaCandidates_Not_Enough_Candidates() {
 		Set<Rna> mRnas = new LinkedHashSet<Rna>();
 		mRnas.add(mRna3);
@@ -75,6 +113,27 @@ public class RnaiScreenerCreatorTest extends TestCase {
 		Map<Rna,Set<SiRna>> candidates = creator.findCandidateSiRnas(mRnas);
 		assertNull(candidates);
 	}
+
+	public void testCreateScreener_Not_Enough_Candidates() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna3);
+		mRnas.add(mRna2);
+
+		for (ForkJoinPool pool: new ForkJoinPool[] { null, new ForkJoinPool(2) }) {
+			creator = new RnaiScreenerCreator();
+			creator.setExecutor(pool);
+			try {
+				assertNull(creator.createScreener(mRnas));
+				assertEquals("No off-target check should be done", 0, creator.getMetrics().getPhaseNanos(ScreenerMetrics.Phase.OFF_TARGET));
+				assertEquals(0, creator.getMetrics().getHybridizationChecks());
+			} finally {
+				if (pool != null) {
+					pool.shutdown();
+				}
+			}
+		}
+	}
 	
 	public void testSelectOffTargetingFreeSiRnas() {
 		Set<Rna> mRnas = new LinkedHashSet<Rna>();
@@ -125,6 +184,375 @@ public class RnaiScreenerCreatorTest extends TestCase {
 		
 	}
 	
+	public void testCreateScreener_SameForAllStrategies() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		
+		Map<Rna,Set<SiRna>> expected = null;
+		for (OffTargetStrategy strategy : OffTargetStrategy.values()) {
+			creator.setOffTargetStrategy(strategy);
+			Map<Rna,Set<SiRna>> screener = creator.createScreener(mRnas);
+			assertNotNull(screener);
+			if (expected == null) {
+				expected = screener;
+			}
+			for (Rna mRna : mRnas) {
+				assertEquals(strategy.toString(), expected.get(mRna).toString(), screener.get(mRna).toString());
+			}
+		}
+	}
+	
+	public void testCreateScreener_HybridizationPolicy() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna3);
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+		assertSame(MismatchCountPolicy.DEFAULT, creator.getHybridizationPolicy());
+		
+		creator.setHybridizationPolicy(WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE);
+		creator.setOffTargetStrategy(OffTargetStrategy.BRUTE_FORCE);
+		RnaiScreener expected = creator.createRnaiScreener(mRnas);
+		for (OffTargetStrategy strategy : OffTargetStrategy.values()) {
+			creator.setOffTargetStrategy(strategy);
+			RnaiScreener screener = creator.createRnaiScreener(mRnas);
+			assertEquals(strategy.toString(), expected.getSiRnas().toString(), screener.getSiRnas().toString());
+			assertEquals(strategy.toString(), expected.getShortfalls().toString(), screener.getShortfalls().toString());
+		}
+		
+		try {
+			creator.setHybridizationPolicy(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testCreateScreener_SiRnaLengths() {
+		Rna shortOn21Mers = NaFactory.newRna("caaggugagcugcaacaacuuucggggcacacucaauaag");
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		mRnas.add(shortOn21Mers);
+		RnaiScreener screener = creator.createRnaiScreener(mRnas);
+		assertEquals(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, screener.getShortfall(shortOn21Mers).getReason());
+		
+		// the 22 and 23 nt siRNAs complete the screen of the mRNA short on 21 nt ones only
+		creator.setSiRnaLengths(21, 22, 23);
+		assertEquals("[21, 22, 23]", Arrays.toString(creator.getSiRnaLengths()));
+		RnaiScreener fallback = creator.createRnaiScreener(mRnas);
+		assertTrue(fallback.isComplete());
+		assertEquals(screener.getSiRnas(mRna1).toString(), fallback.getSiRnas(mRna1).toString());
+		assertEquals(screener.getSiRnas(mRna2).toString(), fallback.getSiRnas(mRna2).toString());
+		assertEquals("[1: aaggugagcugcaacaacuuu, 16: aacuuucggggcacacucaau, 16: aacuuucggggcacacucaaua, 13: aacaacuuucggggcacacucaa]", 
+			fallback.getSiRnas(shortOn21Mers).toString());
+		
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			creator.setExecutor(pool);
+			assertEquals(fallback.getSiRnas().toString(), creator.createRnaiScreener(mRnas).getSiRnas().toString());
+		} finally {
+			pool.shutdown();
+		}
+		
+		try {
+			creator.setSiRnaLengths();
+			fail("Should have caught missing length");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testCreateScreener_SiRnaRanker() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		mRnas.add(mRna3);
+		mRnas.add(mRna4);
+		RnaiScreener byOffset = creator.createRnaiScreener(mRnas);
+		
+		assertNull(creator.getSiRnaRanker());
+		creator.setSiRnaRanker(SiRnaRanker.DEFAULT);
+		RnaiScreener ranked = creator.createRnaiScreener(mRnas);
+		assertEquals(byOffset.getShortfalls().keySet(), ranked.getShortfalls().keySet());
+		for (Rna mRna: mRnas) {
+			Set<Rna> otherMRnas = new LinkedHashSet<Rna>(mRnas);
+			otherMRnas.remove(mRna);
+			assertEquals(byOffset.getSiRnas(mRna).size(), ranked.getSiRnas(mRna).size());
+			for (SiRna siRna: ranked.getSiRnas(mRna)) {
+				assertFalse(siRna.canOffTargetOtherMRnas(otherMRnas));
+			}
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			creator.setExecutor(pool);
+			assertEquals(ranked.getSiRnas().toString(), creator.createRnaiScreener(mRnas).getSiRnas().toString());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	public void testCreateScreener_OffTargetMemo() {
+		// isoforms of mRNA1 and mRNA2 sharing most of their candidates
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		mRnas.add(NaFactory.newRna("c" + mRna1.toString().substring(1)));
+		mRnas.add(NaFactory.newRna(mRna2.toString() + "a"));
+		
+		creator.setOffTargetMemoCapacity(0);
+		RnaiScreener expected = creator.createRnaiScreener(mRnas);
+		creator.setOffTargetMemoCapacity(4);
+		assertEquals(4, creator.getOffTargetMemoCapacity());
+		assertEquals(expected.getSiRnas().toString(), creator.createRnaiScreener(mRnas).getSiRnas().toString());
+		assertEquals(expected.getShortfalls().toString(), creator.createRnaiScreener(mRnas).getShortfalls().toString());
+		
+		try {
+			creator.setOffTargetMemoCapacity(-1);
+			fail("Should have caught negative capacity");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testCreateScreener_Parallel() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		
+		Map<Rna,Set<SiRna>> expected = creator.createScreener(mRnas);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			creator.setExecutor(pool);
+			Map<Rna,Set<SiRna>> screener = creator.createScreener(mRnas);
+			assertEquals(expected.toString(), screener.toString());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	public void testCreateRnaiScreener_Shortfalls() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna3);
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+		
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			creator.setExecutor(pool);
+			RnaiScreener screener = creator.createRnaiScreener(mRnas);
+			
+			assertFalse(screener.isComplete());
+			assertEquals(mRnas.toString(), screener.getMRnas().toString());
+			assertEquals(4, screener.getSiRnas(mRna1).size());
+			assertNull(screener.getShortfall(mRna1));
+			
+			// the only candidate of mRNA3 off-targets mRNA1
+			assertEquals(0, screener.getSiRnas(mRna3).size());
+			assertEquals(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, screener.getShortfall(mRna3).getReason());
+			assertEquals(1, screener.getShortfall(mRna3).getCandidateCount());
+			assertEquals(4, screener.getShortfall(mRna3).getMissingCount());
+			
+			// mRNA2 and mRNA4 off-target each other
+			RnaiScreener.Shortfall shortfall = screener.getShortfall(mRna2);
+			assertEquals(RnaiScreener.Shortfall.Reason.OFF_TARGETS, shortfall.getReason());
+			assertEquals(5, shortfall.getCandidateCount());
+			assertEquals(shortfall.getSelectedCount(), screener.getSiRnas(mRna2).size());
+			assertNotNull(screener.getShortfall(mRna4));
+			assertEquals(3, screener.getShortfalls().size());
+			
+			assertNull(creator.createScreener(mRnas));
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+	
+	public void testCreateScreener_OffTargetIndexFile() throws IOException {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+		String expected = creator.createRnaiScreener(mRnas).getSiRnas().toString();
+		
+		File indexFile = File.createTempFile("seedindex", ".idx");
+		indexFile.delete();
+		try {
+			creator.setOffTargetIndexFile(indexFile);
+			assertEquals(expected, creator.createRnaiScreener(mRnas).getSiRnas().toString());
+			assertTrue(indexFile.exists());
+			long lastModified = indexFile.lastModified();
+			
+			// reused
+			assertEquals(expected, creator.createRnaiScreener(mRnas).getSiRnas().toString());
+			assertEquals(lastModified, indexFile.lastModified());
+			
+			// rebuilt
+			mRnas.remove(mRna4);
+			assertTrue(creator.createRnaiScreener(mRnas).isComplete());
+			mRnas.add(mRna4);
+			assertEquals(expected, creator.createRnaiScreener(mRnas).getSiRnas().toString());
+		} finally {
+			indexFile.delete();
+		}
+	}
+	
+	public void testCreateScreener_Background() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		
+		// mRNA4 is not screened but its siRNAs off-target mRNA2
+		Set<Rna> background = new LinkedHashSet<Rna>();
+		background.add(mRna4);
+		creator.setBackground(new BruteForceOffTargetEngine(background));
+		RnaiScreener screener = creator.createRnaiScreener(mRnas);
+		assertNull(screener.getShortfall(mRna1));
+		assertEquals(RnaiScreener.Shortfall.Reason.OFF_TARGETS, screener.getShortfall(mRna2).getReason());
+		
+		mRnas.add(mRna4);
+		creator.setBackground(null);
+		assertEquals(creator.createRnaiScreener(mRnas).getSiRnas(mRna2).toString(), screener.getSiRnas(mRna2).toString());
+	}
+	
+	/**
+	 * A background transcriptome is checked with the hybridization policy of the creator, as the screened mRNAs
+	 */
+	public void testCreateScreener_BackgroundHybridizationPolicy() throws IOException {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		Set<Rna> background = new LinkedHashSet<Rna>();
+		background.add(mRna3);
+		background.add(mRna4);
+		String fasta = ">bg3\n" + MRNA3 + "\n>bg4\n" + MRNA4 + "\n";
+		
+		for (HybridizationPolicy policy : new HybridizationPolicy[] {MismatchCountPolicy.DEFAULT, new MismatchCountPolicy(4), WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE}) {
+			creator.setHybridizationPolicy(policy);
+			creator.setBackground(new BruteForceOffTargetEngine(background, policy));
+			RnaiScreener expected = creator.createRnaiScreener(mRnas);
+			creator.setBackground(BackgroundOffTargetEngine.build(new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))), 1000));
+			RnaiScreener screener = creator.createRnaiScreener(mRnas);
+			assertEquals(policy.toString(), expected.getSiRnas().toString(), screener.getSiRnas().toString());
+			assertEquals(policy.toString(), expected.getShortfalls().toString(), screener.getShortfalls().toString());
+		}
+	}
+	
+	public void testCreateScreener_CheckSenseStrand() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		RnaiScreener screener = creator.createRnaiScreener(mRnas);
+		
+		// the sense strands of the siRNAs of mRNA2 match its reverse complement, their antisense strands do not
+		Rna mRna2ReverseComplement = NaFactory.newRna(mRna2.getReverseComplement().toString());
+		mRnas.add(mRna2ReverseComplement);
+		assertFalse(creator.isCheckSenseStrand());
+		assertEquals(screener.getSiRnas(mRna2).toString(), creator.createRnaiScreener(mRnas).getSiRnas(mRna2).toString());
+		
+		creator.setCheckSenseStrand(true);
+		RnaiScreener bothStrands = creator.createRnaiScreener(mRnas);
+		assertEquals(screener.getSiRnas(mRna1).toString(), bothStrands.getSiRnas(mRna1).toString());
+		assertEquals(RnaiScreener.Shortfall.Reason.OFF_TARGETS, bothStrands.getShortfall(mRna2).getReason());
+		assertEquals(0, bothStrands.getShortfall(mRna2).getSelectedCount());
+		
+		Set<Rna> added = new LinkedHashSet<Rna>();
+		added.add(mRna2ReverseComplement);
+		mRnas.remove(mRna2ReverseComplement);
+		assertEquals(bothStrands.getSiRnas().toString(), creator.updateScreener(creator.createRnaiScreener(mRnas), added, new LinkedHashSet<Rna>()).getSiRnas().toString());
+	}
+	
+	public void testUpdateScreener() {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		RnaiScreener previous = creator.createRnaiScreener(mRnas);
+		assertTrue(previous.isComplete());
+		
+		// mRNA4 disqualifies siRNAs of mRNA2
+		Set<Rna> added = new LinkedHashSet<Rna>();
+		added.add(mRna4);
+		RnaiScreener updated = creator.updateScreener(previous, added, new LinkedHashSet<Rna>());
+		mRnas.add(mRna4);
+		assertEquals(creator.createRnaiScreener(mRnas).getSiRnas().toString(), updated.getSiRnas().toString());
+		assertSame(previous.getSiRnas(mRna1), updated.getSiRnas(mRna1));
+		assertEquals(RnaiScreener.Shortfall.Reason.OFF_TARGETS, updated.getShortfall(mRna2).getReason());
+		
+		// mRNA2 gets its siRNAs back once mRNA4 is removed
+		RnaiScreener reverted = creator.updateScreener(updated, new LinkedHashSet<Rna>(), added);
+		assertTrue(reverted.isComplete());
+		assertEquals(previous.getSiRnas().toString(), reverted.getSiRnas().toString());
+	}
+	
+	public void testUpdateScreener_SameAsCreate() {
+		Random random = new Random(12);
+		List<Rna> mRnas = randomRelatedMRnas(random, 40, 300);
+		
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			creator.setExecutor(pool);
+			RnaiScreener screener = creator.createRnaiScreener(new LinkedHashSet<Rna>(mRnas.subList(0, 30)));
+			screener = creator.updateScreener(screener, new LinkedHashSet<Rna>(mRnas.subList(30, 35)), new LinkedHashSet<Rna>());
+			screener = creator.updateScreener(screener, new LinkedHashSet<Rna>(mRnas.subList(35, 40)), new LinkedHashSet<Rna>());
+			
+			RnaiScreener expected = creator.createRnaiScreener(new LinkedHashSet<Rna>(mRnas));
+			assertEquals(expected.getSiRnas().toString(), screener.getSiRnas().toString());
+			assertEquals(expected.getShortfalls().toString(), screener.getShortfalls().toString());
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+	
+	public void testUpdateScreener_Boundaries() {
+		Set<Rna> none = new LinkedHashSet<Rna>();
+		try {
+			creator.updateScreener(null, none, none);
+			fail();
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+		try {
+			creator.updateScreener(new RnaiScreener(), null, none);
+			fail();
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+		try {
+			creator.updateScreener(new RnaiScreener(), none, null);
+			fail();
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+	}
+	
+	/**
+	 * Returns random mRNAs, each of them sharing a segment, with a mutation, with a previous one
+	 */
+	private static List<Rna> randomRelatedMRnas(Random random, int count, int length) {
+		List<String> sequences = new ArrayList<String>();
+		List<Rna> mRnas = new ArrayList<Rna>();
+		for (int i = 0; i < count; ++i) {
+			char[] nts = new char[length];
+			for (int j = 0; j < length; ++j) {
+				nts[j] = "aucg".charAt(random.nextInt(4));
+			}
+			if (i > 0) {
+				String source = sequences.get(random.nextInt(i));
+				// the first candidates of the source are the likeliest to be selected
+				int from = random.nextInt(20);
+				source.getChars(from, from + 80, nts, random.nextInt(length - 80));
+				nts[random.nextInt(length)] = "aucg".charAt(random.nextInt(4));
+			}
+			sequences.add(new String(nts));
+			mRnas.add(new RnaImpl(new String(nts)));
+		}
+		return mRnas;
+	}
+	
 	public void testCreateScreener_Boundaries() {
 		try {
 			creator.createScreener(null);
@@ -146,6 +574,169 @@ public class RnaiScreenerCreatorTest extends TestCase {
 		
 	}
 	
+	public void testCreateScreener_Metrics() throws IOException {
+		final List<ScreenerMetrics.Phase> phases = new ArrayList<ScreenerMetrics.Phase>();
+		creator.getMetrics().addListener(new ScreenerMetrics.Listener() {
+			public void phaseCompleted(ScreenerMetrics.Phase phase, long nanos) {
+				phases.add(phase);
+			}
+		});
+		creator.createScreener(new StringReader(SCREENER_INPUT), new StringWriter());
+		assertEquals("[READ, FIND, OFF_TARGET, WRITE]", phases.toString());
+		
+		ScreenerMetrics metrics = creator.getMetrics();
+		assertTrue(metrics.getWindowsScanned() > 0);
+		assertEquals(metrics.getWindowsScanned(), metrics.getCandidatesFound() + metrics.getAntisenseEndRejections() 
+			+ metrics.getSenseEndRejections() + metrics.getAuRichnessRejections() + metrics.getGcStretchRejections());
+		assertTrue(metrics.getHybridizationChecks() >= 8);
+		assertTrue(metrics.getVerifiedHits() < metrics.getHybridizationChecks());
+		
+		// the parallel selection checks a few candidates ahead
+		ScreenerMetrics parallel = new ScreenerMetrics();
+		creator.setMetrics(parallel);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			creator.setExecutor(pool);
+			creator.createScreener(new StringReader(SCREENER_INPUT), new StringWriter());
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(metrics.getWindowsScanned(), parallel.getWindowsScanned());
+		assertEquals(metrics.getCandidatesFound(), parallel.getCandidatesFound());
+		assertTrue(parallel.getHybridizationChecks() >= metrics.getHybridizationChecks());
+		try {
+			creator.setMetrics(null);
+			fail("Should have caught null metrics");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testCreateScreenerFromFasta() throws IOException {
+		String fasta = ">mRNA1\n" + MRNA1.substring(0, 30) + "\n" + MRNA1.substring(30).toUpperCase() + "\n>mRNA2\n" + MRNA2 + "\n";
+		
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			creator.setExecutor(pool);
+			StringWriter writer = new StringWriter();
+			creator.createScreenerFromFasta(new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))), writer);
+			assertEquals(SCREENER_OUTPUT.replace(MRNA1, "mRNA1").replace(MRNA2, "mRNA2"), writer.toString());
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * The sink receives the siRNAs of each mRNA in the order of the mRNAs, the same as createRnaiScreener(Set) selects
+	 */
+	public void testCreateScreener_Sink() throws IOException {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna3);
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+		
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			creator.setExecutor(pool);
+			final RnaiScreener written = new RnaiScreener();
+			final boolean[] closed = new boolean[1];
+			creator.createScreener(mRnas, new ScreenerSink() {
+				public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall) {
+					assertFalse(closed[0]);
+					written.put(mRna, siRnas, shortfall);
+				}
+				
+				public void close() {
+					closed[0] = true;
+				}
+			});
+			assertFalse("The sink is closed by the caller", closed[0]);
+			
+			RnaiScreener expected = creator.createRnaiScreener(mRnas);
+			assertEquals(mRnas.toString(), written.getMRnas().toString());
+			for (Rna mRna: mRnas) {
+				assertEquals(expected.getSiRnas(mRna).toString(), written.getSiRnas(mRna).toString());
+				assertEquals(String.valueOf(expected.getShortfall(mRna)), String.valueOf(written.getShortfall(mRna)));
+			}
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		
+		try {
+			creator.createScreener(mRnas, (ScreenerSink) null);
+			fail("Should have caught null sink");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	/**
+	 * The time spent writing to the sink is counted in the WRITE phase only, not in the OFF_TARGET phase as well
+	 */
+	public void testCreateScreener_WriteMetrics() throws IOException {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(mRna1);
+		mRnas.add(mRna2);
+		
+		long start = System.nanoTime();
+		creator.createScreener(mRnas, new ScreenerSink() {
+			public void write(Rna mRna, Set<SiRna> siRnas, RnaiScreener.Shortfall shortfall) {
+				try {
+					Thread.sleep(50);
+				} catch(InterruptedException ie) {
+					fail(ie.getMessage());
+				}
+			}
+			
+			public void close() {
+			}
+		});
+		long elapsed = System.nanoTime() - start;
+		
+		ScreenerMetrics metrics = creator.getMetrics();
+		assertTrue(metrics.getPhaseNanos(ScreenerMetrics.Phase.WRITE) >= 100000000);
+		assertTrue(metrics.getPhaseNanos(ScreenerMetrics.Phase.OFF_TARGET) + metrics.getPhaseNanos(ScreenerMetrics.Phase.WRITE) <= elapsed);
+	}
+	
+	public void testCreateScreenerFromFasta_Format() throws IOException {
+		String fasta = ">mRNA1\n" + MRNA1 + "\n>mRNA2\n" + MRNA2 + "\n";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ScreenerSink sink = ScreenerFormat.TSV.newSink(out);
+		creator.createScreenerFromFasta(new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))), sink);
+		sink.close();
+		assertEquals(TsvScreenerSink.HEADER + "\n"
+			+ "mRNA1\t1,4,10,23\tauguacguauugacugacuga,uacguauugacugacugaaua,uugacugacugaauacacuau,uacacuauacugacugacucu\t0\t\n"
+			+ "mRNA2\t1,3,8,10\taugucuaugcucacugacuga,gucuaugcucacugacugaau,ugcucacugacugaauucacu,cucacugacugaauucacuau\t0\t\n", out.toString("UTF-8"));
+	}
+	
+	/**
+	 * The mRNAs stored off the heap are screened as the mRNAs read on the heap, serially and in parallel
+	 */
+	public void testCreateScreenerFromFasta_OffHeap() throws IOException {
+		String fasta = ">mRNA1\n" + MRNA1 + "\n>mRNA2\n" + MRNA2 + "\n>mRNA3\n" + MRNA3 + "\n>mRNA4\n" + MRNA4 + "\n";
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			creator.setExecutor(pool);
+			creator.setOffHeap(false);
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			ScreenerSink sink = ScreenerFormat.TSV.newSink(expected);
+			creator.createScreenerFromFasta(new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))), sink);
+			sink.close();
+			creator.setOffHeap(true);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			sink = ScreenerFormat.TSV.newSink(out);
+			creator.createScreenerFromFasta(new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))), sink);
+			sink.close();
+			assertEquals(expected.toString("UTF-8"), out.toString("UTF-8"));
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
 	public void testCreateScreenerRW_NoScreener() {
 		StringReader reader = new StringReader(MRNA3);
 		StringWriter writer = new StringWriter();
@@ -154,7 +745,7 @@ public class RnaiScreenerCreatorTest extends TestCase {
 		} catch(IOException ioe) {
 			fail(ioe.getMessage());
 		}
-		assertEquals("", writer.toString());
+		assertEquals(MRNA3 + "|1:auguauguacugacugacuga|# 3 siRNA(s) missing: only 1 candidate(s) found", writer.toString());
 		
 	}
 	
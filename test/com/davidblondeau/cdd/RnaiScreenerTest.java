@@ -0,0 +1,57 @@
+package com.davidblondeau.cdd;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class RnaiScreenerTest extends TestCase {
+	private Rna mRna1 = new RnaImpl("aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga");
+	private Rna mRna2 = new RnaImpl("aauguauguacugacugacuga");
+	
+	public void testPut() {
+		Set<SiRna> siRnas1 = new LinkedHashSet<SiRna>();
+		for (int offset : new int[] {1, 4, 10, 23}) {
+			siRnas1.add(new SiRna(mRna1, offset, 21));
+		}
+		Set<SiRna> siRnas2 = Collections.singleton(new SiRna(mRna2, 1, 21));
+		
+		RnaiScreener screener = new RnaiScreener();
+		assertTrue(screener.isComplete());
+		screener.put(mRna1, siRnas1, null);
+		assertTrue(screener.isComplete());
+		screener.put(mRna2, siRnas2, new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, 1, 1));
+		assertFalse(screener.isComplete());
+		
+		assertEquals(2, screener.getMRnas().size());
+		assertSame(siRnas1, screener.getSiRnas(mRna1));
+		assertSame(siRnas2, screener.getSiRnas(mRna2));
+		assertNull(screener.getShortfall(mRna1));
+		assertEquals(3, screener.getShortfall(mRna2).getMissingCount());
+		assertEquals(1, screener.getShortfalls().size());
+		
+		screener.put(mRna2, siRnas1, null);
+		assertTrue(screener.isComplete());
+	}
+	
+	public void testShortfallToString() {
+		assertEquals("3 siRNA(s) missing: only 1 candidate(s) found", 
+			new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, 1, 1).toString());
+		assertEquals("2 siRNA(s) missing: only 2 of 7 candidate(s) would not off-target the other mRNAs", 
+			new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.OFF_TARGETS, 7, 2).toString());
+	}
+	
+	public void testShortfall_NullReason() {
+		try {
+			new RnaiScreener.Shortfall(null, 0, 0);
+			fail();
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+	}
+}
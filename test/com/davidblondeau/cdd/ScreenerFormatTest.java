@@ -0,0 +1,174 @@
+package com.davidblondeau.cdd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.NtCodec;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class ScreenerFormatTest extends TestCase {
+	private static final String MRNA1 = "aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga";
+	private static final String MRNA3 = "aauguauguacugacugacuga";
+
+	private Rna mRna1 = new RnaImpl(MRNA1);
+	private Rna mRna3 = new RnaImpl(MRNA3);
+	private Set<SiRna> siRnas1, siRnas3;
+	private RnaiScreener.Shortfall shortfall3 = new RnaiScreener.Shortfall(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES, 1, 1);
+
+	@Override
+	public void setUp() {
+		siRnas1 = new LinkedHashSet<SiRna>();
+		siRnas1.add(new SiRna(mRna1, 1, 21));
+		siRnas1.add(new SiRna(mRna1, 4, 21));
+		siRnas1.add(new SiRna(mRna1, 10, 21));
+		siRnas1.add(new SiRna(mRna1, 23, 21));
+		siRnas3 = new LinkedHashSet<SiRna>();
+		siRnas3.add(new SiRna(mRna3, 1, 21));
+	}
+
+	private String write(ScreenerFormat format)
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ScreenerSink sink = format.newSink(out);
+		sink.write(mRna1, siRnas1, null);
+		sink.write(mRna3, siRnas3, shortfall3);
+		sink.close();
+		return out.toString("UTF-8");
+	}
+
+	/**
+	 * The record of an mRNA can be read from the stream as soon as it is written, before the sink is closed
+	 */
+	public void testFlush()
+		throws IOException
+	{
+		for (ScreenerFormat format: ScreenerFormat.values()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ScreenerSink sink = format.newSink(out);
+			sink.write(mRna1, siRnas1, null);
+			byte[] written = out.toByteArray();
+			sink.close();
+			assertEquals(format.name(), out.toString("UTF-8"), new String(written, "UTF-8"));
+		}
+	}
+
+	public void testPipe()
+		throws IOException
+	{
+		String newLine = System.getProperty("line.separator");
+		assertEquals(MRNA1 + "|1:auguacguauugacugacuga|4:uacguauugacugacugaaua|10:uugacugacugaauacacuau|23:uacacuauacugacugacucu"
+			+ newLine + MRNA3 + "|1:auguauguacugacugacuga|# 3 siRNA(s) missing: only 1 candidate(s) found", write(ScreenerFormat.PIPE));
+	}
+
+	public void testTsv()
+		throws IOException
+	{
+		assertEquals(TsvScreenerSink.HEADER + "\n"
+			+ MRNA1 + "\t1,4,10,23\tauguacguauugacugacuga,uacguauugacugacugaaua,uugacugacugaauacacuau,uacacuauacugacugacucu\t0\t\n"
+			+ MRNA3 + "\t1\tauguauguacugacugacuga\t3\tNOT_ENOUGH_CANDIDATES\n", write(ScreenerFormat.TSV));
+	}
+
+	public void testJsonLines()
+		throws IOException
+	{
+		String[] lines = write(ScreenerFormat.JSONL).split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("{\"mrna\":\"" + MRNA1 + "\",\"sirnas\":[{\"offset\":1,\"sequence\":\"auguacguauugacugacuga\"},{\"offset\":4,"));
+		assertTrue(lines[0], lines[0].endsWith("\"sequence\":\"uacacuauacugacugacucu\"}],\"shortfall\":null}"));
+		assertEquals("{\"mrna\":\"" + MRNA3 + "\",\"sirnas\":[{\"offset\":1,\"sequence\":\"auguauguacugacugacuga\"}],"
+			+ "\"shortfall\":{\"reason\":\"NOT_ENOUGH_CANDIDATES\",\"candidates\":1,\"selected\":1,\"missing\":3}}", lines[1]);
+	}
+
+	public void testJsonLines_EscapedName()
+		throws IOException
+	{
+		String fasta = ">a\"quoted\\name\"\n" + MRNA3 + "\n";
+		Rna named = new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII"))).read();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ScreenerSink sink = ScreenerFormat.JSONL.newSink(out);
+		sink.write(named, new LinkedHashSet<SiRna>(), null);
+		sink.close();
+		assertTrue(out.toString("UTF-8"), out.toString("UTF-8").startsWith("{\"mrna\":\"a\\\"quoted\\\\name\\\"\","));
+	}
+
+	public void testBinary()
+		throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ScreenerSink sink = ScreenerFormat.BINARY.newSink(out);
+		sink.write(mRna1, siRnas1, null);
+		sink.write(mRna3, siRnas3, shortfall3);
+		sink.close();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(BinaryScreenerSink.MAGIC, in.readInt());
+		assertEquals(BinaryScreenerSink.VERSION, in.readShort());
+
+		assertEquals(BinaryScreenerSink.ID_SEQUENCE, in.readByte());
+		assertEquals(MRNA1, readNts(in));
+		assertEquals(4, in.readByte());
+		assertEquals(1, in.readInt());
+		assertEquals("auguacguauugacugacuga", readNts(in));
+		for (int i = 1; i < 4; ++i) {
+			in.readInt();
+			readNts(in);
+		}
+		assertEquals(0, in.readByte());
+
+		assertEquals(BinaryScreenerSink.ID_SEQUENCE, in.readByte());
+		assertEquals(MRNA3, readNts(in));
+		assertEquals(1, in.readByte());
+		assertEquals(1, in.readInt());
+		assertEquals("auguauguacugacugacuga", readNts(in));
+		assertEquals(RnaiScreener.Shortfall.Reason.NOT_ENOUGH_CANDIDATES.ordinal() + 1, in.readByte());
+		assertEquals(1, in.readInt());
+		assertEquals(1, in.readInt());
+		assertEquals(-1, in.read());
+	}
+
+	/**
+	 * Reads a sequence packed by BinaryScreenerSink
+	 */
+	private static String readNts(DataInputStream in)
+		throws IOException
+	{
+		int length = in.readInt();
+		StringBuilder nts = new StringBuilder(length);
+		int packed = 0;
+		for (int i = 0; i < length; ++i) {
+			if (i % 4 == 0) {
+				packed = in.readUnsignedByte();
+			}
+			nts.append(NtCodec.decode((packed >> (2 * (i % 4))) & 3));
+		}
+		return nts.toString();
+	}
+
+	public void testBoundaries()
+		throws IOException
+	{
+		try {
+			new BinaryScreenerSink(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new PipeScreenerSink(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
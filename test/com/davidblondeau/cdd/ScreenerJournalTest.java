@@ -0,0 +1,203 @@
+package com.davidblondeau.cdd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class ScreenerJournalTest extends TestCase {
+	private Rna mRna1 = new RnaImpl("aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga");
+	private Rna mRna2 = new RnaImpl("aaugucuaugcucacugacugaauucacuauacucacugagucaa");
+	private Rna mRna3 = new RnaImpl("aauguauguacugacugacuga");
+	private Rna mRna4 = new RnaImpl("aaucgcuaugcucacugacugauaucacuauacucacugacacaa");
+	private Set<Rna> mRnas = new LinkedHashSet<Rna>();
+	private File file;
+
+	@Override
+	public void setUp() throws IOException {
+		file = File.createTempFile("screener", ".journal");
+		mRnas.add(mRna1);
+		mRnas.add(mRna3);
+		mRnas.add(mRna2);
+		mRnas.add(mRna4);
+	}
+
+	@Override
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static String screen(RnaiScreenerCreator creator, Set<Rna> mRnas)
+		throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		ScreenerSink sink = new PipeScreenerSink(writer);
+		creator.createScreener(mRnas, sink);
+		sink.close();
+		return writer.toString();
+	}
+
+	public void testResume() throws IOException {
+		RnaiScreenerCreator creator = new RnaiScreenerCreator();
+		String expected = screen(creator, mRnas);
+
+		ScreenerJournal journal = ScreenerJournal.create(file);
+		creator.setJournal(journal);
+		assertEquals(expected, screen(creator, mRnas));
+		journal.close();
+
+		journal = ScreenerJournal.open(file);
+		RnaiScreener resumed = journal.resume(mRnas);
+		RnaiScreener screener = creator.createRnaiScreener(mRnas);
+		assertEquals(mRnas.toString(), resumed.getMRnas().toString());
+		for (Rna mRna: mRnas) {
+			assertEquals(screener.getSiRnas(mRna).toString(), resumed.getSiRnas(mRna).toString());
+			assertEquals(String.valueOf(screener.getShortfall(mRna)), String.valueOf(resumed.getShortfall(mRna)));
+		}
+
+		// nothing left to check
+		creator.setMetrics(new ScreenerMetrics());
+		creator.setJournal(journal);
+		assertEquals(expected, screen(creator, mRnas));
+		assertEquals(0, creator.getMetrics().getHybridizationChecks());
+		journal.close();
+
+		// the resumed mRNAs are not journaled twice
+		long length = file.length();
+		journal = ScreenerJournal.open(file);
+		creator.setJournal(journal);
+		screen(creator, mRnas);
+		journal.close();
+		assertEquals(length, file.length());
+	}
+
+	/**
+	 * A run stopped midway, its last record cut short, is completed by the next one
+	 */
+	public void testResume_Interrupted() throws IOException {
+		RnaiScreenerCreator creator = new RnaiScreenerCreator();
+		String expected = screen(creator, mRnas);
+		long fullChecks = creator.getMetrics().getHybridizationChecks();
+
+		List<Rna> firstMRnas = new ArrayList<Rna>(mRnas).subList(0, 2);
+		ScreenerJournal journal;
+		for (int parallelism = 0; parallelism <= 2; parallelism += 2) {
+			writeInterruptedJournal(creator, firstMRnas);
+			ForkJoinPool pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+			journal = ScreenerJournal.open(file);
+			assertEquals(firstMRnas.toString(), journal.resume(mRnas).getMRnas().toString());
+			creator.setExecutor(pool);
+			creator.setMetrics(new ScreenerMetrics());
+			creator.setJournal(journal);
+			assertEquals(expected, screen(creator, mRnas));
+			assertTrue(creator.getMetrics().getHybridizationChecks() < fullChecks);
+			journal.close();
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		// both runs together journaled every mRNA once
+		journal = ScreenerJournal.open(file);
+		assertEquals(mRnas.toString(), journal.resume(mRnas).getMRnas().toString());
+		creator.setExecutor(null);
+		creator.setMetrics(new ScreenerMetrics());
+		creator.setJournal(journal);
+		assertEquals(expected, screen(creator, mRnas));
+		assertEquals(0, creator.getMetrics().getHybridizationChecks());
+		journal.close();
+	}
+
+	/**
+	 * Journals the given mRNAs then a record cut short, as a run killed midway would
+	 */
+	private void writeInterruptedJournal(RnaiScreenerCreator creator, List<Rna> journaled) throws IOException {
+		RnaiScreener screener = creator.createRnaiScreener(mRnas);
+		ScreenerJournal journal = ScreenerJournal.create(file);
+		ScreenerSink sink = journal.journaling(new PipeScreenerSink(new StringWriter()));
+		for (Rna mRna: journaled) {
+			sink.write(mRna, screener.getSiRnas(mRna), screener.getShortfall(mRna));
+		}
+		journal.close();
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] {0, 0, 0, 40, 1, 2});
+		out.close();
+	}
+	
+	/**
+	 * The journaled mRNAs that are not at the same position in the input are screened again
+	 */
+	public void testResume_OtherMRnas() throws IOException {
+		RnaiScreenerCreator creator = new RnaiScreenerCreator();
+		ScreenerJournal journal = ScreenerJournal.create(file);
+		creator.setJournal(journal);
+		screen(creator, mRnas);
+		journal.close();
+
+		Set<Rna> reordered = new LinkedHashSet<Rna>();
+		reordered.add(mRna1);
+		reordered.add(mRna2);
+		reordered.add(mRna3);
+		reordered.add(mRna4);
+		journal = ScreenerJournal.open(file);
+		assertEquals("[" + mRna1 + ", " + mRna4 + "]", journal.resume(reordered).getMRnas().toString());
+		journal.close();
+
+		// a new journal discards the records
+		journal = ScreenerJournal.create(file);
+		journal.close();
+		journal = ScreenerJournal.open(file);
+		assertTrue(journal.resume(mRnas).getMRnas().isEmpty());
+		journal.close();
+	}
+
+	public void testSync() throws IOException {
+		ScreenerJournal journal = ScreenerJournal.create(file);
+		journal.setSyncIntervalMillis(0);
+		long length = file.length();
+		Set<SiRna> siRnas = Collections.singleton(new SiRna(mRna3, 1, 21));
+		journal.journaling(new PipeScreenerSink(new StringWriter())).write(mRna3, siRnas, null);
+		assertTrue(file.length() > length);
+
+		ScreenerJournal reopened = ScreenerJournal.open(file);
+		assertEquals(siRnas.toString(), reopened.resume(Collections.singleton(mRna3)).getSiRnas(mRna3).toString());
+		reopened.close();
+		journal.close();
+	}
+
+	public void testBoundaries() throws IOException {
+		try {
+			ScreenerJournal.create(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		ScreenerJournal journal = ScreenerJournal.create(file);
+		try {
+			journal.setSyncIntervalMillis(-1);
+			fail("Should have caught negative interval");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			journal.journaling(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		} finally {
+			journal.close();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.davidblondeau.cdd;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+public class ScreenerMetricsTest extends TestCase {
+	private ScreenerMetrics metrics = new ScreenerMetrics();
+	
+	public void testCounters() {
+		metrics.addScan(10, new int[] {1, 2, 3, 1}, 3);
+		metrics.addScan(5, new int[] {0, 0, 1, 0}, 4);
+		metrics.addHybridizationCheck(true);
+		metrics.addHybridizationCheck(false);
+		metrics.addCacheHits(7);
+		assertEquals(15, metrics.getWindowsScanned());
+		assertEquals(1, metrics.getAntisenseEndRejections());
+		assertEquals(2, metrics.getSenseEndRejections());
+		assertEquals(4, metrics.getAuRichnessRejections());
+		assertEquals(1, metrics.getGcStretchRejections());
+		assertEquals(7, metrics.getCandidatesFound());
+		assertEquals(2, metrics.getHybridizationChecks());
+		assertEquals(1, metrics.getVerifiedHits());
+		assertEquals(7, metrics.getCacheHits());
+		
+		metrics.reset();
+		assertEquals(0, metrics.getWindowsScanned());
+		assertEquals(0, metrics.getRuleRejections(ScreenerMetrics.Rule.AU_RICHNESS));
+		assertEquals(0, metrics.getHybridizationChecks());
+	}
+	
+	public void testPhases() {
+		final List<ScreenerMetrics.Phase> phases = new ArrayList<ScreenerMetrics.Phase>();
+		ScreenerMetrics.Listener listener = new ScreenerMetrics.Listener() {
+			public void phaseCompleted(ScreenerMetrics.Phase phase, long nanos) {
+				assertTrue(nanos >= 0);
+				phases.add(phase);
+			}
+		};
+		metrics.addListener(listener);
+		metrics.addPhaseNanos(ScreenerMetrics.Phase.FIND, 2000000);
+		metrics.endPhase(ScreenerMetrics.Phase.WRITE, metrics.startPhase());
+		assertEquals("[FIND, WRITE]", phases.toString());
+		assertEquals(2000000, metrics.getPhaseNanos(ScreenerMetrics.Phase.FIND));
+		assertEquals(2, metrics.getFindMillis());
+		assertEquals(0, metrics.getPhaseNanos(ScreenerMetrics.Phase.READ));
+		
+		metrics.removeListener(listener);
+		metrics.endPhase(ScreenerMetrics.Phase.READ, metrics.startPhase());
+		assertEquals(2, phases.size());
+		
+		try {
+			metrics.addListener(null);
+			fail("Should have caught null listener");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testRegister()
+		throws Exception
+	{
+		metrics.addScan(3, new int[4], 1);
+		ObjectName name = metrics.register("com.davidblondeau.cdd:type=ScreenerMetrics,name=test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(3L, server.getAttribute(name, "WindowsScanned"));
+			assertEquals(1L, server.getAttribute(name, "CandidatesFound"));
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "WindowsScanned"));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.davidblondeau.cdd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.BruteForceOffTargetEngine;
+
+import junit.framework.TestCase;
+
+public class ScreenerServerTest extends TestCase {
+	private static final String MRNA1 = "aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga";
+	private static final String MRNA2 = "aaugucuaugcucacugacugaauucacuauacucacugagucaa";
+	private static final String MRNA4 = "aaucgcuaugcucacugacugauaucacuauacucacugacacaa";
+	private static final String QUERY = ">mRNA1\n" + MRNA1 + "\n>mRNA2\n" + MRNA2 + "\n";
+
+	private ScreenerServer server;
+
+	@Override
+	public void setUp() throws IOException {
+		server = new ScreenerServer(0);
+		server.addLibrary("empty", new BruteForceOffTargetEngine(new LinkedHashSet<Rna>()));
+		// the siRNAs of mRNA4 off-target mRNA2
+		Set<Rna> library = new LinkedHashSet<Rna>();
+		library.add(new RnaImpl(MRNA4));
+		server.addLibrary("mRNA4", new BruteForceOffTargetEngine(library));
+		server.start();
+	}
+
+	@Override
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private HttpURLConnection post(String query, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/screen?" + query).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(body.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		return connection;
+	}
+
+	private static String read(HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		try {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testScreen() throws IOException {
+		String newLine = System.getProperty("line.separator");
+		assertEquals("mRNA1|1:auguacguauugacugacuga|4:uacguauugacugacugaaua|10:uugacugacugaauacacuau|23:uacacuauacugacugacucu"
+			+ newLine + "mRNA2|1:augucuaugcucacugacuga|3:gucuaugcucacugacugaau|8:ugcucacugacugaauucacu|10:cucacugacugaauucacuau",
+			read(post("library=empty", QUERY)));
+
+		HttpURLConnection connection = post("library=mRNA4&format=tsv&rank=true", QUERY);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(ScreenerFormat.TSV.getContentType(), connection.getContentType());
+		String[] rows = read(connection).split("\n");
+		assertEquals(3, rows.length);
+		assertTrue(rows[1], rows[1].endsWith("\t0\t"));
+		assertTrue(rows[2], rows[2].endsWith("OFF_TARGETS"));
+		assertTrue(server.getMetrics().getCandidatesFound() > 0);
+	}
+
+	public void testLibraries() throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/libraries").openConnection();
+		assertEquals("empty\nmRNA4\n", read(connection));
+	}
+
+	public void testInvalidQueries() throws IOException {
+		assertEquals(404, post("library=unknown", QUERY).getResponseCode());
+		assertEquals(400, post("library=empty&format=xml", QUERY).getResponseCode());
+		assertEquals(400, post("library=empty", MRNA1 + "x").getResponseCode());
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/screen?library=empty").openConnection();
+		assertEquals(405, connection.getResponseCode());
+		try {
+			server.addLibrary(null, new BruteForceOffTargetEngine(new LinkedHashSet<Rna>()));
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+
+	/**
+	 * Identical queries sent together are screened once
+	 */
+	public void testCoalescing() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		server.addLibrary("slow", new BruteForceOffTargetEngine(new LinkedHashSet<Rna>()) {
+			@Override
+			public boolean canOffTarget(SiRna siRna) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				return false;
+			}
+		});
+		server.setExecutor(null);
+
+		final String[] responses = new String[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; ++i) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						responses[index] = read(post("library=slow", QUERY));
+					} catch (IOException ioe) {
+						responses[index] = ioe.toString();
+					}
+				}
+			};
+			threads[i].start();
+			if (i == 0) {
+				started.await();
+			}
+		}
+		while (server.getCoalescedCount() == 0) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		for (Thread thread: threads) {
+			thread.join();
+		}
+		assertEquals(1, server.getCoalescedCount());
+		assertEquals(responses[0], responses[1]);
+		assertTrue(responses[0], responses[0].startsWith("mRNA1|1:"));
+	}
+}
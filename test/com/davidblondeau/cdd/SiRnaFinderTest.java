@@ -1,10 +1,13 @@
 package com.davidblondeau.cdd;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.NtSequence;
 import com.davidblondeau.cdd.na.Rna;
 import com.davidblondeau.cdd.na.SiRna;
 
@@ -61,6 +64,159 @@ public class SiRnaFinderTest extends TestCase {
 		assertEquals("Found a different numbers of candidates than expected", 0, siRnas.size());
 	}
 	
+	/**
+	 * The candidates table is the set of the siRNAs of the candidates, which cannot be modified
+	 */
+	public void testFindCandidates_Table() {
+		Rna mRna = NaFactory.newRna("caaggugagcugcaacaacuuucggggcacacucaauaag");
+		Set<SiRna> siRnas = new SiRnaFinder(21, 22, 23).findCandidates(mRna);
+		Set<SiRna> expected = new LinkedHashSet<SiRna>();
+		expected.add(new SiRna(mRna, 1, 21));
+		expected.add(new SiRna(mRna, 16, 21));
+		expected.add(new SiRna(mRna, 16, 22));
+		expected.add(new SiRna(mRna, 13, 23));
+		expected.add(new SiRna(mRna, 16, 23));
+		assertEquals(expected, siRnas);
+		assertEquals(siRnas, expected);
+		assertEquals(expected.hashCode(), siRnas.hashCode());
+		assertTrue(siRnas.contains(new SiRna(mRna, 16, 22)));
+		assertFalse(siRnas.contains(new SiRna(mRna, 16, 20)));
+		assertFalse(siRnas.contains(new SiRna(NaFactory.newRna(mRna.toString()), 16, 22)));
+		try {
+			siRnas.add(new SiRna(mRna, 0, 21));
+			fail("The candidates should not be modifiable");
+		} catch(UnsupportedOperationException uoe) {
+			//good
+		}
+		try {
+			siRnas.iterator().remove();
+			fail("The candidates should not be modifiable");
+		} catch(UnsupportedOperationException uoe) {
+			//good
+		}
+	}
+	
+	public void testFindCandidatesSeveralLengths() {
+		Rna mRna = NaFactory.newRna("caaggugagcugcaacaacuuucggggcacacucaauaag");
+		SiRnaFinder finder = new SiRnaFinder(21, 22, 23);
+		Map<Integer,Set<SiRna>> siRnas = finder.findCandidatesByLength(mRna);
+		assertEquals("{21=[1: aaggugagcugcaacaacuuu, 16: aacuuucggggcacacucaau], 22=[16: aacuuucggggcacacucaaua], "
+			+ "23=[13: aacaacuuucggggcacacucaa, 16: aacuuucggggcacacucaauaa]}", siRnas.toString());
+		assertEquals("[1: aaggugagcugcaacaacuuu, 16: aacuuucggggcacacucaau, 16: aacuuucggggcacacucaaua, "
+			+ "13: aacaacuuucggggcacacucaa, 16: aacuuucggggcacacucaauaa]", finder.findCandidates(mRna).toString());
+		
+		// in the order of preference, without duplicates
+		assertEquals("[23, 21]", new SiRnaFinder(23, 21, 23).findCandidatesByLength(mRna).keySet().toString());
+	}
+	
+	public void testLengthBoundaries() {
+		try {
+			new SiRnaFinder(new int[0]);
+			fail("Should have caught missing length");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new SiRnaFinder(21, SiRnaFinder.MAX_LENGTH + 1);
+			fail("Should have caught a length too long");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new SiRnaFinder(2);
+			fail("Should have caught a length too short");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	/**
+	 * Checks the sliding window scan against the rules evaluated on each window, on random mRNAs
+	 */
+	public void testFindCandidatesSameAsRulesOnEachWindow() {
+		Random random = new Random(11);
+		int candidateCount = 0;
+		for (int i = 0; i < 300; ++i) {
+			StringBuilder seq = new StringBuilder();
+			for (int length = random.nextInt(120); length >= 0; --length) {
+				// GC rich to get long GC stretches
+				seq.append(random.nextInt(3) == 0 ? "au".charAt(random.nextInt(2)) : "cg".charAt(random.nextInt(2)));
+				if (random.nextInt(10) == 0) seq.append("aua");
+			}
+			Rna mRna = NaFactory.newRna(seq.toString());
+			Map<Integer,Set<SiRna>> siRnasByLength = new SiRnaFinder(21, 22, 23, 19, 64).findCandidatesByLength(mRna);
+			for (int siRnaLen = 21; siRnaLen <= 23; ++siRnaLen) {
+				Set<SiRna> siRnas = new SiRnaFinder(siRnaLen).findCandidates(mRna);
+				assertEquals(findCandidatesOnEachWindow(mRna, siRnaLen).toString(), siRnas.toString());
+				assertEquals(siRnas.toString(), siRnasByLength.get(siRnaLen).toString());
+				candidateCount += siRnas.size();
+			}
+			assertEquals(findCandidatesOnEachWindow(mRna, 19).toString(), siRnasByLength.get(19).toString());
+			assertEquals(findCandidatesOnEachWindow(mRna, 64).toString(), siRnasByLength.get(64).toString());
+		}
+		assertTrue(candidateCount > 0);
+	}
+	
+	/**
+	 * Checks the windows counted by rule against the rules evaluated on each window, on random mRNAs
+	 */
+	public void testMetrics() {
+		Random random = new Random(23);
+		SiRnaFinder finder = new SiRnaFinder(21, 19);
+		assertNull(finder.getMetrics());
+		ScreenerMetrics metrics = new ScreenerMetrics();
+		finder.setMetrics(metrics);
+		long[] expected = new long[ScreenerMetrics.Rule.values().length];
+		long windowCount = 0;
+		long candidateCount = 0;
+		for (int i = 0; i < 50; ++i) {
+			StringBuilder seq = new StringBuilder();
+			for (int length = random.nextInt(120); length >= 0; --length) {
+				seq.append(random.nextInt(3) == 0 ? "au".charAt(random.nextInt(2)) : "cg".charAt(random.nextInt(2)));
+			}
+			Rna mRna = NaFactory.newRna(seq.toString());
+			candidateCount += finder.findCandidates(mRna).size();
+			for (int siRnaLen: finder.getLengths()) {
+				for (int j = 1; j <= mRna.length() - siRnaLen  + 1; ++j) {
+					NtSequence window = mRna.getSubNtSequence(j, j + siRnaLen - 1);
+					windowCount++;
+					if (!window.hasAorU(siRnaLen)) {
+						expected[0]++;
+					} else if (!window.hasCorG(3)) {
+						expected[1]++;
+					} else if (!window.getSubNtSequence(siRnaLen*2/3 + 1, siRnaLen).isAURich()) {
+						expected[2]++;
+					} else if (window.hasGCStretch(10)) {
+						expected[3]++;
+					}
+				}
+			}
+		}
+		assertEquals(windowCount, metrics.getWindowsScanned());
+		assertEquals(candidateCount, metrics.getCandidatesFound());
+		for (ScreenerMetrics.Rule rule: ScreenerMetrics.Rule.values()) {
+			assertEquals(rule.toString(), expected[rule.ordinal()], metrics.getRuleRejections(rule));
+			assertTrue(rule.toString(), expected[rule.ordinal()] > 0);
+		}
+	}
+	
+	/**
+	 * The rules of SiRnaFinder evaluated from scratch on each window
+	 */
+	private static Set<SiRna> findCandidatesOnEachWindow(Rna mRna, int siRnaLen) {
+		Set<SiRna> candidates = new  LinkedHashSet<SiRna>();
+		for (int i = 1; i <= mRna.length() - siRnaLen  + 1; ++i) {
+			NtSequence siRnaCandidate = mRna.getSubNtSequence(i, i + siRnaLen - 1);
+			if (siRnaCandidate.hasAorU(siRnaLen)
+				&& siRnaCandidate.hasCorG(3)
+				&& siRnaCandidate.getSubNtSequence(siRnaLen*2/3 + 1, siRnaLen).isAURich()
+				&& !siRnaCandidate.hasGCStretch(10)) 
+			{
+				candidates.add(new SiRna(mRna, i-1, siRnaLen));
+			}
+		}
+		return candidates;
+	}
 
 	/**
 	 * Check that the list of candidates found matches exactly with what was expected
@@ -0,0 +1,166 @@
+package com.davidblondeau.cdd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.offtarget.BruteForceOffTargetEngine;
+import com.davidblondeau.cdd.offtarget.OffTargetEngine;
+
+import junit.framework.TestCase;
+
+public class SiRnaRankerTest extends TestCase {
+	private Rna mRna = NaFactory.newRna("aauguacguacugacugacugacgcguacguacugaucg");
+	
+	/**
+	 * Engine counting the checks, that lets every siRNA through but the given ones
+	 */
+	private static class CountingEngine implements OffTargetEngine {
+		private Set<SiRna> _offTargeting;
+		private int _checkCount;
+		
+		CountingEngine(Set<SiRna> offTargeting) {
+			_offTargeting = offTargeting;
+		}
+		
+		public boolean canOffTarget(SiRna siRna) {
+			_checkCount++;
+			return _offTargeting.contains(siRna);
+		}
+		
+		public boolean canEitherStrandOffTarget(SiRna siRna) {
+			return canOffTarget(siRna);
+		}
+	}
+	
+	public void testScore() {
+		// auguacguacugacugacuga has 9 GC out of 21 and 4 AU out of the last 7
+		SiRna siRna = new SiRna(mRna, 1, 21);
+		assertEquals(1.0/7 + 1, SiRnaRanker.DEFAULT.score(siRna), 1e-9);
+		assertEquals(1.0/7, new SiRnaRanker(1, 0, 0).score(siRna), 1e-9);
+		
+		// acugacugacugacgcguacg has 12 GC out of 21 and 2 AU out of the last 7
+		SiRna gcRich = new SiRna(mRna, 9, 21);
+		assertEquals(1 - (12.0/21 - 0.52)/0.30, SiRnaRanker.DEFAULT.score(gcRich), 1e-9);
+		assertTrue(SiRnaRanker.DEFAULT.score(gcRich) < SiRnaRanker.DEFAULT.score(siRna));
+	}
+	
+	public void testSpread() {
+		SiRna first = new SiRna(mRna, 0, 21);
+		List<SiRna> selected = new ArrayList<SiRna>();
+		assertEquals(1.0, SiRnaRanker.DEFAULT.spread(first, selected, 4), 1e-9);
+		selected.add(first);
+		assertEquals(0.0, SiRnaRanker.DEFAULT.spread(new SiRna(mRna, 10, 21), selected, 4), 1e-9);
+		assertEquals(1.0, SiRnaRanker.DEFAULT.spread(new SiRna(mRna, 31, 8), selected, 4), 1e-9);
+	}
+	
+	public void testSelectBestFirst() {
+		Set<SiRna> candidates = new LinkedHashSet<SiRna>();
+		for (int offset = 0; offset + 21 <= mRna.length(); ++offset) {
+			candidates.add(new SiRna(mRna, offset, 21));
+		}
+		CountingEngine engine = new CountingEngine(new LinkedHashSet<SiRna>());
+		Set<SiRna> selected = new SiRnaRanker(1, 1, 0).select(candidates, engine, 4);
+		assertEquals(4, selected.size());
+		// only the selected candidates were checked
+		assertEquals(4, engine._checkCount);
+		
+		double previousScore = Double.MAX_VALUE;
+		for (SiRna siRna: selected) {
+			double score = new SiRnaRanker(1, 1, 0).score(siRna);
+			assertTrue(score <= previousScore);
+			previousScore = score;
+		}
+	}
+	
+	public void testSelectSkipsOffTargeting() {
+		Set<SiRna> candidates = new LinkedHashSet<SiRna>();
+		for (int offset = 0; offset + 21 <= mRna.length(); ++offset) {
+			candidates.add(new SiRna(mRna, offset, 21));
+		}
+		Set<SiRna> best = SiRnaRanker.DEFAULT.select(candidates, new CountingEngine(new LinkedHashSet<SiRna>()), 1);
+		CountingEngine engine = new CountingEngine(best);
+		Set<SiRna> selected = SiRnaRanker.DEFAULT.select(candidates, engine, 1);
+		assertEquals(1, selected.size());
+		assertFalse(selected.equals(best));
+		assertEquals(2, engine._checkCount);
+		
+		// not enough off-targeting free candidates
+		assertEquals(0, SiRnaRanker.DEFAULT.select(candidates, new CountingEngine(candidates), 4).size());
+	}
+	
+	/**
+	 * The selected siRNAs do not overlap as long as there are candidates that do not
+	 */
+	public void testSelectSpreads() {
+		Random random = new Random(17);
+		StringBuilder seq = new StringBuilder();
+		for (int i = 0; i < 600; ++i) {
+			seq.append("acgu".charAt(random.nextInt(4)));
+		}
+		Rna longMRna = NaFactory.newRna(seq.toString());
+		Set<SiRna> candidates = new SiRnaFinder().findCandidates(longMRna);
+		assertTrue(candidates.size() > 10);
+		
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		mRnas.add(longMRna);
+		List<SiRna> selected = new ArrayList<SiRna>(SiRnaRanker.DEFAULT.select(candidates, new BruteForceOffTargetEngine(mRnas), 4));
+		assertEquals(4, selected.size());
+		for (int i = 0; i < selected.size(); ++i) {
+			for (int j = 0; j < i; ++j) {
+				assertTrue(selected.toString(), Math.abs(selected.get(i).getMRnaOffset() - selected.get(j).getMRnaOffset()) >= 21);
+			}
+		}
+	}
+	
+	/**
+	 * The candidates of the preferred length are checked first, whatever the scores of the others
+	 */
+	public void testSelectLengthPreference() {
+		Random random = new Random(19);
+		StringBuilder seq = new StringBuilder();
+		for (int i = 0; i < 600; ++i) {
+			seq.append("acgu".charAt(random.nextInt(4)));
+		}
+		Rna longMRna = NaFactory.newRna(seq.toString());
+		Set<SiRna> candidates = new SiRnaFinder(23, 21).findCandidates(longMRna);
+		Set<SiRna> candidates23 = new SiRnaFinder(23).findCandidates(longMRna);
+		assertTrue(candidates23.size() > 4);
+		
+		Set<SiRna> selected = SiRnaRanker.DEFAULT.select(candidates, new CountingEngine(new LinkedHashSet<SiRna>()), 4);
+		assertEquals(SiRnaRanker.DEFAULT.select(candidates23, new CountingEngine(new LinkedHashSet<SiRna>()), 4), selected);
+		
+		// the 21 nt candidates are only picked once the 23 nt ones off-target
+		Set<SiRna> offTargeting = new LinkedHashSet<SiRna>(candidates23);
+		offTargeting.remove(candidates23.iterator().next());
+		CountingEngine engine = new CountingEngine(offTargeting);
+		selected = SiRnaRanker.DEFAULT.select(candidates, engine, 4);
+		assertEquals(4, selected.size());
+		int count23 = 0;
+		for (SiRna siRna: selected) {
+			count23 += siRna.getLength() == 23 ? 1 : 0;
+		}
+		assertEquals(1, count23);
+		assertTrue(engine._checkCount >= candidates23.size());
+	}
+	
+	public void testBoundaries() {
+		try {
+			new SiRnaRanker(-1, 1, 1);
+			fail("Should have caught negative weight");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			SiRnaRanker.DEFAULT.select(null, new CountingEngine(new LinkedHashSet<SiRna>()), 4);
+			fail("Should have caught null candidates");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.davidblondeau.cdd.na;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+public class FastaReaderTest extends TestCase {
+	private static final String FASTA = ">NM_001 first mRNA\n"
+		+ "AAUGUACGUA\r\n"
+		+ "uugacugacuga\n"
+		+ "\n"
+		+ ">NM_002\n"
+		+ "aatgtcTATG\n"
+		+ "# comment\n"
+		+ "cucacu\n";
+	
+	public void testReadFasta() throws IOException {
+		FastaReader reader = new FastaReader(ByteBuffer.wrap(FASTA.getBytes("US-ASCII")));
+		
+		Rna mRna = reader.read();
+		assertEquals("NM_001", mRna.getName());
+		assertEquals("aauguacguauugacugacuga", mRna.toString());
+		assertEquals(0, mRna.getId());
+		
+		mRna = reader.read();
+		assertEquals("NM_002", mRna.getName());
+		assertEquals("aaugucuaugcucacu", mRna.toString());
+		assertEquals(1, mRna.getId());
+		
+		assertNull(reader.read());
+		assertNull(reader.read());
+	}
+	
+	public void testReadOneSequenceByLine() throws IOException {
+		FastaReader reader = new FastaReader(ByteBuffer.wrap("#mRNA #1\naauguacgua\n\n  \n#mRNA #2\nuugacugacuga".getBytes("US-ASCII")));
+		
+		Rna mRna = reader.read();
+		assertNull(mRna.getName());
+		assertEquals("aauguacgua", mRna.toString());
+		assertEquals(0, mRna.getId());
+		mRna = reader.read();
+		assertEquals("uugacugacuga", mRna.toString());
+		assertEquals(1, mRna.getId());
+		assertNull(reader.read());
+	}
+	
+	public void testUtf8Header() throws IOException {
+		String name = "ARN_\u00e9pissage_\u03b1";
+		FastaReader reader = new FastaReader(ByteBuffer.wrap((">" + name + " \u00e9\r\naugc\n").getBytes("UTF-8")));
+		
+		Rna mRna = reader.read();
+		assertEquals(name, mRna.getName());
+		assertEquals("augc", mRna.toString());
+		assertNull(reader.read());
+	}
+	
+	public void testInvalidNt() throws IOException {
+		FastaReader reader = new FastaReader(ByteBuffer.wrap(">NM_001\naaugu\naxgu\n".getBytes("US-ASCII")));
+		try {
+			reader.read();
+			fail("Accepted an invalid nt");
+		} catch(IOException ioe) {
+			assertTrue(ioe.getMessage(), ioe.getMessage().contains("line 3"));
+		}
+	}
+	
+	public void testOpenFiles() throws IOException {
+		File plain = File.createTempFile("fasta", ".fa");
+		File gzipped = File.createTempFile("fasta", ".fa.gz");
+		try {
+			OutputStream out = new FileOutputStream(plain);
+			out.write(FASTA.getBytes("US-ASCII"));
+			out.close();
+			out = new GZIPOutputStream(new FileOutputStream(gzipped));
+			out.write(FASTA.getBytes("US-ASCII"));
+			out.close();
+			
+			for (File file : new File[] {plain, gzipped}) {
+				FastaReader reader = FastaReader.open(file);
+				try {
+					assertEquals("aauguacguauugacugacuga", reader.read().toString());
+					assertEquals("NM_002", reader.read().getName());
+					assertNull(reader.read());
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			plain.delete();
+			gzipped.delete();
+		}
+	}
+	
+	public void testLongSequenceFromChannel() throws IOException {
+		StringBuilder fasta = new StringBuilder(">long\n");
+		StringBuilder seq = new StringBuilder();
+		for (int i = 0; i < 10000; ++i) {
+			char nt = "acgu".charAt((i * 7 + i / 3) % 4);
+			seq.append(nt);
+			fasta.append(nt);
+			if (i % 60 == 59) fasta.append('\n');
+		}
+		FastaReader reader = new FastaReader(Channels.newChannel(new ByteArrayInputStream(fasta.toString().getBytes("US-ASCII"))));
+		assertEquals(seq.toString(), reader.read().toString());
+		assertNull(reader.read());
+		reader.close();
+	}
+}
@@ -0,0 +1,28 @@
+package com.davidblondeau.cdd.na;
+
+import junit.framework.TestCase;
+
+public class MismatchCountPolicyTest extends TestCase {
+	
+	public void testHybridizeWell() {
+		assertTrue(MismatchCountPolicy.DEFAULT.hybridizeWell(0L, 21));
+		assertTrue(MismatchCountPolicy.DEFAULT.hybridizeWell(1L << 3 | 1L << 20, 21));
+		assertFalse(MismatchCountPolicy.DEFAULT.hybridizeWell(1L | 1L << 3 | 1L << 20, 21));
+		assertTrue(new MismatchCountPolicy(3).hybridizeWell(1L | 1L << 3 | 1L << 20, 21));
+		assertFalse(new MismatchCountPolicy(0).hybridizeWell(1L << 10, 21));
+	}
+	
+	public void testPruning() {
+		assertFalse(MismatchCountPolicy.DEFAULT.requiresSeedMatch());
+		assertEquals(RnaImpl.MAX_DISTANCE_TO_HYBRIDIZE_WELL, MismatchCountPolicy.DEFAULT.getMaxMismatches());
+	}
+	
+	public void testBoundaries() {
+		try {
+			new MismatchCountPolicy(-1);
+			fail("Should have caught negative mismatch count");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.davidblondeau.cdd.na;
+
+import junit.framework.TestCase;
+
+public class NtBitPlanesTest extends TestCase {
+	private NtBitPlanes seq =        new NtBitPlanes(new PackedNtSequence("auguacguacugacugacuga"));
+	private NtBitPlanes seq_2diffs = new NtBitPlanes(new PackedNtSequence("auguauauacugacugacuga"));
+	private NtBitPlanes seq_3diffs = new NtBitPlanes(new NtSequenceImpl("augucuauacugacugacuga"));
+	
+	public void testDistanceTo() {
+		assertEquals(0, seq.distanceTo(seq));
+		assertEquals(2, seq.distanceTo(seq_2diffs));
+		assertEquals(3, seq.distanceTo(seq_3diffs));
+		assertEquals(21, seq.length());
+	}
+	
+	public void testIsWithin() {
+		assertTrue(seq.isWithin(seq_2diffs.getHigh(), seq_2diffs.getLow(), 2));
+		assertFalse(seq.isWithin(seq_3diffs.getHigh(), seq_3diffs.getLow(), 2));
+		assertTrue(seq.isWithin(seq_3diffs.getHigh(), seq_3diffs.getLow(), 3));
+		assertFalse(seq.isWithin(seq_2diffs.getHigh(), seq_2diffs.getLow(), 0));
+	}
+	
+	public void testRoll() {
+		// rolling a 21 nt window along a longer sequence ends up with the planes of its last 21 nt
+		NtSequence longSeq = new PackedNtSequence("ggcauguacguacugacugacuga");
+		long high = 0;
+		long low = 0;
+		for (int pos = 1; pos <= longSeq.length(); ++pos) {
+			int code = NtCodec.encode(longSeq.getNt(pos));
+			high = NtBitPlanes.roll(high, code >>> 1, 21);
+			low = NtBitPlanes.roll(low, code & 1, 21);
+		}
+		assertEquals(0, seq.distanceTo(high, low));
+	}
+	
+	public void testTooLong() {
+		try {
+			new NtBitPlanes(new PackedNtSequence("auguacguacugacugacugaauguacguacugacugacugaauguacguacugacugacugaau"));
+			fail("Encoded more than 64 nt");
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+	}
+}
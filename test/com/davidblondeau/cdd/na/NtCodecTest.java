@@ -0,0 +1,72 @@
+package com.davidblondeau.cdd.na;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class NtCodecTest extends TestCase {
+
+	public void testEncodeDecode() {
+		for (char nt : "aucg".toCharArray()) {
+			assertEquals(nt, NtCodec.decode(NtCodec.encode(nt)));
+		}
+		assertEquals(-1, NtCodec.encode('t'));
+		assertEquals(-1, NtCodec.encode('A'));
+	}
+	
+	public void testComplementIsNegation() {
+		assertEquals(NtCodec.U, ~NtCodec.A & 3);
+		assertEquals(NtCodec.G, ~NtCodec.C & 3);
+	}
+	
+	public void testExtractAcrossWords() {
+		long[] words = new long[2];
+		for (int i = 0; i < 64; ++i) {
+			NtCodec.set(words, i, i % 4);
+		}
+		long packed = NtCodec.extract(words, 30, 4);
+		for (int i = 0; i < 4; ++i) {
+			assertEquals((30 + i) % 4, (int) (packed >>> (2*i)) & 3);
+		}
+		assertEquals(0, NtCodec.extract(words, 0, 3) >>> 6);
+	}
+	
+	public void testReverseComplement() {
+		// a, a, c, g, u
+		long packed = NtCodec.A | NtCodec.A << 2 | NtCodec.C << 4 | NtCodec.G << 6 | NtCodec.U << 8;
+		// a, c, g, u, u
+		long expected = NtCodec.A | NtCodec.C << 2 | NtCodec.G << 4 | NtCodec.U << 6 | NtCodec.U << 8;
+		assertEquals(expected, NtCodec.reverseComplement(packed, 5));
+		assertEquals(packed, NtCodec.reverseComplement(NtCodec.reverseComplement(packed, 5), 5));
+		assertEquals(~0L, NtCodec.reverseComplement(0L, 32));
+		assertEquals(0L, NtCodec.reverseComplement(packed, 0));
+		assertEquals(NtCodec.G, NtCodec.complement(NtCodec.C));
+	}
+	
+	public void testReverseComplementWords() {
+		for (int length = 0; length <= 100; ++length) {
+			long[] words = new long[NtCodec.wordsFor(length)];
+			for (int i = 0; i < length; ++i) {
+				NtCodec.set(words, i, (i * 7 + i / 3) % 4);
+			}
+			long[] reversed = NtCodec.reverseComplement(words, length);
+			assertEquals(words.length, reversed.length);
+			for (int i = 0; i < length; ++i) {
+				assertEquals(NtCodec.complement(NtCodec.get(words, length - 1 - i)), NtCodec.get(reversed, i));
+			}
+			if (length % NtCodec.NTS_PER_WORD != 0) {
+				assertEquals("The unused bits should be cleared", 0L, reversed[reversed.length - 1] >>> (2 * (length % NtCodec.NTS_PER_WORD)));
+			}
+			assertTrue(Arrays.equals(words, NtCodec.reverseComplement(reversed, length)));
+		}
+	}
+	
+	public void testMasks() {
+		// c, a, g, u
+		long packed1 = NtCodec.C | NtCodec.A << 2 | NtCodec.G << 4 | NtCodec.U << 6;
+		// c, u, g, a
+		long packed2 = NtCodec.C | NtCodec.U << 2 | NtCodec.G << 4 | NtCodec.A << 6;
+		assertEquals(2, Long.bitCount(NtCodec.gcMask(packed1)));
+		assertEquals(1L << 2 | 1L << 6, NtCodec.mismatchMask(packed1, packed2));
+	}
+}
@@ -76,6 +76,20 @@ public class NtSequenceImplTest extends TestCase {
 		assertEquals("auguacguac", subSeq.toString());
 	}
 	
+	public void testGetSubSequenceOfSubSequence() {
+		NtSequence subSeq = ntSeq1.getSubNtSequence(5, 15).getSubNtSequence(2, 6);
+		assertEquals("cguac", subSeq.toString());
+		assertTrue(subSeq.hasCorG(1));
+		assertEquals(0, subSeq.distanceTo(new NtSequenceImpl("cguac")));
+		
+		try {
+			ntSeq1.getSubNtSequence(5, 15).getSubNtSequence(2, 12);
+			fail("A subsequence can reach beyond its own boundaries");
+		} catch(IndexOutOfBoundsException ioobe) {
+			// nothing
+		}
+	}
+	
 	public void testGetSubSequenceBoundaries() {
 	
 		// boundary tests
@@ -120,6 +134,30 @@ public class NtSequenceImplTest extends TestCase {
 		assertEquals(0, ntSeq1.distanceTo(ntSeq1));
 	}
 	
+	public void testBoundedDistanceTo() {
+		assertEquals(4, ntSeq2.distanceTo(richGCSeq, 4));
+		assertTrue(ntSeq2.distanceTo(richGCSeq, 2) > 2);
+		assertEquals(0, ntSeq1.distanceTo(ntSeq1, 0));
+		assertEquals(Integer.MAX_VALUE, ntSeq1.distanceTo(ntSeq2, 2));
+	}
+	
+	public void testGetReverseComplement() {
+		assertEquals("aguacauac", ntSeq2.getReverseComplement().toString());
+		assertEquals(FIRST_SEQ, ntSeq1.getReverseComplement().getReverseComplement().toString());
+	}
+	
+	public void testGetNt() {
+		assertEquals('a', ntSeq1.getNt(1));
+		assertEquals('g', ntSeq1.getNt(3));
+		assertEquals('a', ntSeq1.getNt(21));
+		try {
+			ntSeq1.getNt(22);
+			fail("Can reach beyond the sequence");
+		} catch(IndexOutOfBoundsException e) {
+			// nothing
+		}
+	}
+	
 	public void testDistanceToNullArg() {
 		assertEquals(Integer.MAX_VALUE, ntSeq1.distanceTo(null));
 	}
@@ -0,0 +1,226 @@
+package com.davidblondeau.cdd.na;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PackedNtSequenceTest extends TestCase {
+	private static final String FIRST_SEQ = "auguacguacugacugacuga";
+	private static final String SECOND_SEQ = "guauguacu";
+	private static final String THIRD_SEQ =  "ggcgcuacu";
+	private static final String LONG_SEQ = "aauguacguauugacugacugaauacacuauacugacugacucuauuguacguacugacugacuga";
+	
+	private PackedNtSequence ntSeq1,ntSeq2, richGCSeq, longSeq;
+	
+	public void setUp() {
+		ntSeq1 = new PackedNtSequence(FIRST_SEQ);
+		ntSeq2 = new PackedNtSequence(SECOND_SEQ);
+		richGCSeq = new PackedNtSequence(THIRD_SEQ);
+		longSeq = new PackedNtSequence(LONG_SEQ);
+		
+		assertEquals(ntSeq1.length(), FIRST_SEQ.length());
+		assertEquals(ntSeq2.length(), SECOND_SEQ.length());
+		assertEquals(ntSeq1.toString(), FIRST_SEQ);
+		assertEquals(ntSeq2.toString(), SECOND_SEQ);
+		assertEquals(longSeq.toString(), LONG_SEQ);
+	}
+	
+	public void testInvalidSequence() {
+		try {
+			new PackedNtSequence("acgut");
+			fail("Accepted an invalid nt");
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+	}
+	
+	public void testisAorU() {
+		assertTrue(ntSeq1.hasAorU(1));
+		assertTrue(ntSeq1.hasAorU(4));
+		assertFalse(ntSeq1.hasAorU(3));
+		assertFalse(ntSeq1.hasAorU(18));
+	}
+	
+	public void testisCorG() {
+		assertTrue(ntSeq1.hasCorG(3));
+		assertTrue(ntSeq1.hasCorG(20));
+		assertFalse(ntSeq1.hasCorG(19));
+		assertFalse(ntSeq1.hasCorG(5));
+	}
+	
+	public void testBoundaries() {
+		try {
+			ntSeq1.hasAorU(0);
+			fail("Index of NtSequence starts at 1");
+		} catch(IndexOutOfBoundsException e) {
+			// nothing
+		}
+		
+		try {
+			ntSeq1.hasCorG(FIRST_SEQ.length() + 1);
+			fail("Can reach beyond the sequence");
+		} catch(IndexOutOfBoundsException e) {
+			// nothing
+		}
+	}
+	
+	public void testGetSubSequence() {
+		NtSequence subSeq = ntSeq1.getSubNtSequence(1, 10);
+		assertNotNull(subSeq);
+		assertEquals(10, subSeq.length());
+		assertEquals("auguacguac", subSeq.toString());
+		assertEquals(LONG_SEQ.substring(29, 64), longSeq.getSubNtSequence(30, 64).toString());
+	}
+	
+	public void testGetSubSequenceOfSubSequence() {
+		NtSequence subSeq = longSeq.getSubNtSequence(20, 60).getSubNtSequence(5, 40);
+		assertEquals(LONG_SEQ.substring(23, 59), subSeq.toString());
+		assertEquals(LONG_SEQ.charAt(23) == 'a' || LONG_SEQ.charAt(23) == 'u', subSeq.hasAorU(1));
+		assertEquals(new PackedNtSequence(LONG_SEQ.substring(23, 59)).isAURich(), subSeq.isAURich());
+		assertEquals(0, subSeq.distanceTo(new PackedNtSequence(LONG_SEQ.substring(23, 59))));
+		
+		try {
+			longSeq.getSubNtSequence(20, 60).getSubNtSequence(5, 42);
+			fail("A view can reach beyond its own boundaries");
+		} catch(IndexOutOfBoundsException ioobe) {
+			// nothing
+		}
+	}
+	
+	public void testGetSubSequenceBoundaries() {
+		try {
+			ntSeq2.getSubNtSequence(1, 10);
+			fail("Managed to get a subsequence longer than the original sequence");
+		} catch(IndexOutOfBoundsException ioobe) {
+			// nothing
+		}
+		
+		try {
+			ntSeq2.getSubNtSequence(0, 4);
+			fail("Managed to get a subsequence longer than the original sequence");
+		} catch(IndexOutOfBoundsException ioobe) {
+			// nothing
+		}
+	}
+	
+	public void testHasGCStretch() {
+		assertFalse(ntSeq2.hasGCStretch(4));
+		assertTrue(richGCSeq.hasGCStretch(3));
+		assertTrue(richGCSeq.hasGCStretch(4));
+		assertTrue(richGCSeq.hasGCStretch(5));
+		assertFalse(richGCSeq.hasGCStretch(6));
+	}
+	
+	/**
+	 * Stretches of at most 1 nt, as NtSequenceImpl finds them: the last nt is left out of the search
+	 */
+	public void testHasGCStretch_Short() {
+		String[] seqs = {"", "a", "g", "aaaa", "aaag", "aaga", "gaaa", "uu", "gu", "ug"};
+		for (String seq : seqs) {
+			for (int minLength = -1; minLength <= 2; ++minLength) {
+				assertEquals(seq + " " + minLength, new NtSequenceImpl(seq).hasGCStretch(minLength), new PackedNtSequence(seq).hasGCStretch(minLength));
+			}
+		}
+		assertFalse(new PackedNtSequence("aaaa").hasGCStretch(1));
+		assertTrue(new PackedNtSequence("aaaa").hasGCStretch(0));
+	}
+	
+	public void testIsAURich() {
+		assertTrue(ntSeq2.isAURich());
+		assertFalse(richGCSeq.isAURich());
+		assertTrue(ntSeq1.getSubNtSequence(15, 21).isAURich());
+	}
+	
+	public void testDistanceTo() {
+		assertEquals(4, ntSeq2.distanceTo(richGCSeq));
+		assertEquals(0, ntSeq1.distanceTo(ntSeq1));
+		assertEquals(4, ntSeq2.distanceTo(new NtSequenceImpl(THIRD_SEQ)));
+		assertEquals(Integer.MAX_VALUE, ntSeq1.distanceTo(null));
+		assertEquals(Integer.MAX_VALUE, ntSeq1.distanceTo(ntSeq2));
+	}
+	
+	public void testBoundedDistanceTo() {
+		assertEquals(4, ntSeq2.distanceTo(richGCSeq, 4));
+		assertTrue(ntSeq2.distanceTo(richGCSeq, 2) > 2);
+		assertEquals(0, ntSeq1.distanceTo(ntSeq1, 0));
+		assertEquals(Integer.MAX_VALUE, ntSeq1.distanceTo(ntSeq2, 2));
+	}
+	
+	public void testGetReverseComplement() {
+		assertEquals("aguacauac", ntSeq2.getReverseComplement().toString());
+		assertEquals(LONG_SEQ, longSeq.getReverseComplement().getReverseComplement().toString());
+		assertEquals("", new PackedNtSequence("").getReverseComplement().toString());
+	}
+	
+	public void testGetNt() {
+		assertEquals('a', ntSeq1.getNt(1));
+		assertEquals('g', ntSeq1.getNt(3));
+		assertEquals('a', ntSeq1.getNt(21));
+		try {
+			ntSeq1.getNt(22);
+			fail("Can reach beyond the sequence");
+		} catch(IndexOutOfBoundsException e) {
+			// nothing
+		}
+	}
+	
+	/**
+	 * Checks the packed implementation against the CharSequence based one on random sequences
+	 * spanning several words.
+	 */
+	public void testSameAsNtSequenceImpl() {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; ++i) {
+			String seq1 = randomSequence(random, 1 + random.nextInt(150), i % 4);
+			String seq2 = mutate(random, seq1);
+			NtSequence packed1 = new PackedNtSequence(seq1);
+			NtSequence packed2 = new PackedNtSequence(seq2);
+			NtSequence impl1 = new NtSequenceImpl(seq1);
+			NtSequence impl2 = new NtSequenceImpl(seq2);
+			
+			assertEquals(impl1.isAURich(), packed1.isAURich());
+			for (int minLength = 0; minLength <= 40; ++minLength) {
+				assertEquals(seq1 + " " + minLength, impl1.hasGCStretch(minLength), packed1.hasGCStretch(minLength));
+			}
+			assertEquals(impl1.distanceTo(impl2), packed1.distanceTo(packed2));
+			
+			int first = 1 + random.nextInt(seq1.length());
+			int last = first - 1 + random.nextInt(seq1.length() - first + 2);
+			assertEquals(impl1.getSubNtSequence(first, last).toString(), packed1.getSubNtSequence(first, last).toString());
+			assertEquals(impl1.getReverseComplement().toString(), packed1.getReverseComplement().toString());
+			
+			// the view of the reverse complement of a view, read as the other packed sequences
+			NtSequence reverseComplement = packed1.getSubNtSequence(first, last).getReverseComplement();
+			NtSequence expected = new PackedNtSequence(impl1.getSubNtSequence(first, last).getReverseComplement().toString());
+			assertEquals(expected.toString(), reverseComplement.toString());
+			assertEquals(0, expected.distanceTo(reverseComplement));
+			assertEquals(0, reverseComplement.distanceTo(expected));
+			assertEquals(expected.isAURich(), reverseComplement.isAURich());
+			assertEquals(expected.hasGCStretch(4), reverseComplement.hasGCStretch(4));
+			if (last >= first) {
+				int subFirst = 1 + random.nextInt(last - first + 1);
+				assertEquals(expected.getSubNtSequence(subFirst, last - first + 1).toString(), 
+					reverseComplement.getSubNtSequence(subFirst, last - first + 1).toString());
+			}
+		}
+	}
+	
+	/**
+	 * Random sequence, the higher the gcBias the more C and G it contains
+	 */
+	static String randomSequence(Random random, int length, int gcBias) {
+		StringBuilder seq = new StringBuilder(length);
+		for (int i = 0; i < length; ++i) {
+			seq.append(random.nextInt(4 + gcBias) >= 4 ? "cg".charAt(random.nextInt(2)) : "aucg".charAt(random.nextInt(4)));
+		}
+		return seq.toString();
+	}
+	
+	private static String mutate(Random random, String seq) {
+		char[] nts = seq.toCharArray();
+		for (int i = random.nextInt(5); i > 0; --i) {
+			nts[random.nextInt(nts.length)] = "aucg".charAt(random.nextInt(4));
+		}
+		return new String(nts);
+	}
+}
@@ -0,0 +1,65 @@
+package com.davidblondeau.cdd.na;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PackedRnaTest extends TestCase {
+	private Rna rna1 =        new PackedRna("aauguacguacugacugacuga");
+	private Rna rna1_1diff =  new PackedRna("aauguauguacugacugacuga");
+	private Rna rna1_2diffs = new PackedRna("aauguauauacugacugacuga");
+	private Rna rna1_3diffs = new PackedRna("aaugucuauacugacugacuga");
+	private SiRna siRna = new SiRna(rna1, 1, 21); // auguacguacugacugacuga
+	
+	public void testHybridizeWellTargetRna() {
+		assertTrue(rna1.hybridizeWellWith(siRna));
+	}
+	
+	public void testHybridizeWellTarget1Diff() {
+		assertTrue(rna1_1diff.hybridizeWellWith(siRna));
+	}
+	
+	public void testHybridizeWellTarget2Diffs() {
+		assertTrue(rna1_2diffs.hybridizeWellWith(siRna));
+	}
+	
+	public void testHybridizeWellTarget3Diffs() {
+		assertFalse(rna1_3diffs.hybridizeWellWith(siRna));
+	}
+	
+	public void testHybridizeWellWithRnaImpl() {
+		SiRna otherSiRna = new SiRna(new RnaImpl("aauguacguacugacugacuga"), 1, 21);
+		assertTrue(rna1_2diffs.hybridizeWellWith(otherSiRna));
+		assertFalse(rna1_3diffs.hybridizeWellWith(otherSiRna));
+	}
+	
+	/**
+	 * Checks the rolling window search against a sweep of subsequences
+	 */
+	public void testHybridizeWellSameAsSweep() {
+		Random random = new Random(7);
+		for (int i = 0; i < 100; ++i) {
+			String seq = PackedNtSequenceTest.randomSequence(random, 21 + random.nextInt(100), 0);
+			Rna target = new PackedRna(seq);
+			Rna other = new PackedRna(seq.substring(random.nextInt(10)).replace('a', "acgu".charAt(i % 4)));
+			SiRna candidate = new SiRna(target, random.nextInt(seq.length() - 20), 21);
+			
+			boolean expected = false;
+			NtSequence siRnaSeq = candidate.getAntisenseMatchingSequence();
+			for (int offset = 1; offset + 20 <= other.length(); ++offset) {
+				expected |= other.getSubNtSequence(offset, offset + 20).distanceTo(siRnaSeq) <= 2;
+			}
+			assertEquals(expected, other.hybridizeWellWith(candidate));
+			assertEquals(expected, new RnaImpl(other.toString()).hybridizeWellWith(candidate));
+		}
+	}
+	
+	public void testHybridizeWellWithNullArg() {
+		try {
+			rna1.hybridizeWellWith(null);
+			fail("Should throw a IllegalArgumentException");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
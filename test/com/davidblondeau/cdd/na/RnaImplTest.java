@@ -25,6 +25,35 @@ public class RnaImplTest extends TestCase {
 		assertFalse(rna1_3diffs.hybridizeWellWith(siRna));
 	}
 	
+	public void testHybridizeWellWithPolicy() {
+		HybridizationPolicy policy = WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE;
+		assertTrue(rna1_1diff.hybridizeWellWith(siRna, policy));
+		// mismatch in the seed region
+		Rna seedMismatch = new RnaImpl("ccauguacguacugacagacuga");
+		assertTrue(seedMismatch.hybridizeWellWith(siRna));
+		assertFalse(seedMismatch.hybridizeWellWith(siRna, policy));
+		// 3 mismatches away from the seed region and the cleavage site
+		Rna threeMismatches = new RnaImpl("ccaagaagguacugacugacuga");
+		assertFalse(threeMismatches.hybridizeWellWith(siRna));
+		assertTrue(threeMismatches.hybridizeWellWith(siRna, policy));
+		assertTrue(new PackedRna("ccaagaagguacugacugacuga").hybridizeWellWith(siRna, policy));
+		// mismatch at the cleavage site
+		Rna cleavageSiteMismatch = new RnaImpl("agguacguacagacugacuga");
+		assertTrue(cleavageSiteMismatch.hybridizeWellWith(siRna));
+		assertFalse(cleavageSiteMismatch.hybridizeWellWith(siRna, policy));
+		assertTrue(rna1.hybridizeWellWith(siRna, policy));
+	}
+	
+	public void testHybridizeWellInvalidNt() {
+		// an invalid nt is a mismatch
+		assertTrue(new RnaImpl("aauguacgnacugacugacuga").hybridizeWellWith(siRna));
+		assertTrue(new RnaImpl("aauguacgnacugncugacuga").hybridizeWellWith(siRna));
+		assertFalse(new RnaImpl("aauguacgnacugncugacugn").hybridizeWellWith(siRna));
+		assertFalse(new RnaImpl("nnnnnnnnnnnnnnnnnnnnnn").hybridizeWellWith(siRna));
+		// whatever its code would have been
+		assertFalse(new RnaImpl("nnnnnnnnnnnnnnnnnnnnnn").hybridizeWellWith(new SiRna(new RnaImpl("auuuuuuuuuuuuuuuuuuuuu"), 1, 21)));
+	}
+	
 	public void testHybridizeWellWithNullArg() {
 		try {
 			rna1.hybridizeWellWith(null);
@@ -0,0 +1,139 @@
+package com.davidblondeau.cdd.na;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class RnaStoreTest extends TestCase {
+	private static final char[] NTS = {'a', 'c', 'g', 'u'};
+
+	private static String randomSequence(Random random, int length) {
+		char[] nts = new char[length];
+		for (int i = 0; i < length; ++i) {
+			nts[i] = NTS[random.nextInt(4)];
+		}
+		return new String(nts);
+	}
+
+	/**
+	 * The stored RNAs are the same as the appended ones, whatever their alignment on the packed words
+	 */
+	public void testAppend() {
+		Random random = new Random(24);
+		RnaStore store = new RnaStore();
+		List<String> sequences = new ArrayList<String>();
+		for (int i = 0; i < 300; ++i) {
+			String sequence = randomSequence(random, 1 + random.nextInt(100));
+			sequences.add(sequence);
+			Rna stored = store.append(i % 2 == 0 ? new PackedRna(sequence) : new RnaImpl(sequence));
+			assertEquals(sequence, stored.toString());
+		}
+		assertEquals(sequences.size(), store.size());
+
+		int id = 0;
+		int totalLength = 0;
+		for (Rna rna : store) {
+			String sequence = sequences.get(id);
+			PackedRna packed = new PackedRna(sequence);
+			assertEquals(sequence, rna.toString());
+			assertEquals(sequence.length(), rna.length());
+			assertEquals(packed.isAURich(), rna.isAURich());
+			assertEquals(packed.hasGCStretch(3), rna.hasGCStretch(3));
+			assertEquals(0, rna.distanceTo(packed));
+			assertEquals(id, store.getId(rna));
+			assertEquals(rna, store.get(id));
+			assertNull(rna.getName());
+			if (sequence.length() >= 10) {
+				assertEquals(sequence.substring(3, 10), rna.getSubNtSequence(4, 10).toString());
+				assertEquals(packed.getSubNtSequence(4, 10).isAURich(), rna.getSubNtSequence(4, 10).isAURich());
+			}
+			totalLength += sequence.length();
+			id++;
+		}
+		assertEquals(totalLength, store.getTotalLength());
+		assertEquals(totalLength, store.getStarts().get(store.size()));
+		assertEquals(NtCodec.wordsFor(totalLength), store.getWords().limit());
+	}
+
+	public void testHybridizeWell() {
+		RnaStore store = new RnaStore();
+		Rna rna1 = store.append(new PackedRna("aauguacguacugacugacuga"));
+		Rna rna1_2diffs = store.append(new PackedRna("aauguauauacugacugacuga"));
+		Rna rna1_3diffs = store.append(new PackedRna("aaugucuauacugacugacuga"));
+		SiRna siRna = new SiRna(rna1, 1, 21);
+		assertEquals("auguacguacugacugacuga", siRna.getAntisenseMatchingSequence().toString());
+		assertTrue(rna1.hybridizeWellWith(siRna));
+		assertTrue(rna1_2diffs.hybridizeWellWith(siRna));
+		assertFalse(rna1_3diffs.hybridizeWellWith(siRna));
+	}
+
+	public void testRead()
+		throws IOException
+	{
+		String fasta = ">NM_1 first\naauguacguacugacugacuga\n>\nguacgu\n";
+		RnaStore store = RnaStore.read(new FastaReader(ByteBuffer.wrap(fasta.getBytes("UTF-8"))));
+		assertEquals(2, store.size());
+		Iterator<Rna> rnas = store.iterator();
+		Rna first = rnas.next();
+		assertEquals("NM_1", first.getName());
+		assertEquals("aauguacguacugacugacuga", first.toString());
+		assertNull(rnas.next().getName());
+		assertFalse(rnas.hasNext());
+	}
+
+	/**
+	 * The handles of an RNA are equal, but not to the handles of another store
+	 */
+	public void testEquals() {
+		RnaStore store = new RnaStore();
+		Rna rna = store.append(new PackedRna("aauguacguacugacugacuga"));
+		assertEquals(rna, store.iterator().next());
+		assertEquals(rna.hashCode(), store.get(0).hashCode());
+		assertTrue(store.contains(rna));
+
+		RnaStore other = new RnaStore();
+		Rna otherRna = other.append(rna);
+		assertFalse(rna.equals(otherRna));
+		assertFalse(store.contains(otherRna));
+		assertFalse(store.contains(new PackedRna("aauguacguacugacugacuga")));
+		assertEquals(-1, store.getId(otherRna));
+	}
+
+	public void testBoundaries() {
+		RnaStore store = new RnaStore();
+		try {
+			store.append(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			store.get(0);
+			fail("Should have caught invalid id");
+		} catch(IndexOutOfBoundsException ioobe) {
+			//good
+		}
+		try {
+			store.add(new PackedRna("aaug"));
+			fail("RNAs are appended");
+		} catch(UnsupportedOperationException uoe) {
+			//good
+		}
+	}
+
+	public void testAllocateGrown() {
+		assertEquals(24, RnaStore.allocateGrown(2, 3, 8).capacity());
+		assertEquals(8 * 15, RnaStore.allocateGrown(10, 11, 8).capacity());
+		try {
+			RnaStore.allocateGrown(16, Integer.MAX_VALUE / 8 + 1, 8);
+			fail("Allocated a buffer smaller than asked");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
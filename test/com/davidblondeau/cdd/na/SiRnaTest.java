@@ -16,6 +16,52 @@ public class SiRnaTest extends TestCase {
 		assertEquals("auguacguacugacugacuga", siRna.getAntisenseMatchingSequence().toString());
 	}
 	
+	/**
+	 * The siRNAs of the same window of the same mRNA are equal
+	 */
+	public void testEquals() {
+		assertEquals(siRna, new SiRna(rna1, 1, 21));
+		assertEquals(siRna.hashCode(), new SiRna(rna1, 1, 21).hashCode());
+		assertFalse(siRna.equals(new SiRna(rna1, 0, 21)));
+		assertFalse(siRna.equals(new SiRna(rna1, 1, 20)));
+		assertFalse(siRna.equals(new SiRna(rna1_1diff, 1, 21)));
+		assertFalse(siRna.equals(null));
+	}
+	
+	public void testGetStrands() {
+		assertEquals("ucagucagucaguacguacau", siRna.getAntisenseStrand().toString());
+		assertEquals("guacguacugacugacugauu", siRna.getSenseStrand().toString());
+		assertEquals("ucagucagucaguacguacau", siRna.getSenseMatchingSequence().toString());
+		
+		// packed mRNA
+		SiRna packedSiRna = new SiRna(new PackedRna("aauguacguacugacugacuga"), 1, 21);
+		assertEquals("ucagucagucaguacguacau", packedSiRna.getAntisenseStrand().toString());
+		assertEquals("guacguacugacugacugauu", packedSiRna.getSenseStrand().toString());
+		assertEquals("ucagucagucaguacguacau", packedSiRna.getSenseMatchingSequence().toString());
+		String longMRna = "gaguacguacugacugacugaguacguacugacugacugaguacguacugacugacugaguacguacugacugacuga";
+		SiRna longSiRna = new SiRna(new PackedRna(longMRna), 3, 70);
+		assertEquals(new SiRna(new RnaImpl(longMRna), 3, 70).getSenseStrand().toString(), longSiRna.getSenseStrand().toString());
+		assertEquals("uu", new SiRna(new PackedRna("aauguac"), 1, 2).getSenseStrand().toString());
+	}
+	
+	public void testCanEitherStrandOffTargetOtherMRnas() {
+		Set<Rna> mRnas = new HashSet<Rna>();
+		mRnas.add(rna1);
+		mRnas.add(new RnaImpl("ggucagucagucagaacguacauaa"));
+		assertFalse(siRna.canOffTargetOtherMRnas(mRnas));
+		assertTrue(siRna.canEitherStrandOffTargetOtherMRnas(mRnas));
+		mRnas.add(rna1_1diff);
+		assertTrue(siRna.canEitherStrandOffTargetOtherMRnas(mRnas));
+	}
+	
+	public void testCanEitherStrandOffTargetOtherMRnas_Cannot() {
+		Set<Rna> mRnas = new HashSet<Rna>();
+		mRnas.add(rna1);
+		mRnas.add(rna1_3diffs);
+		mRnas.add(new RnaImpl("ggucagucagucagaacguucguaa"));
+		assertFalse(siRna.canEitherStrandOffTargetOtherMRnas(mRnas));
+	}
+	
 	public void testCanOffTargetOtherMRnas_Can() {
 		Set<Rna> mRnas = new HashSet<Rna>();
 		mRnas.add(rna1);
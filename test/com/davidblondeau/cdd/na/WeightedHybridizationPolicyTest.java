@@ -0,0 +1,74 @@
+package com.davidblondeau.cdd.na;
+
+import junit.framework.TestCase;
+
+public class WeightedHybridizationPolicyTest extends TestCase {
+	private HybridizationPolicy policy = WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE;
+	
+	/**
+	 * Mask of the given mismatching guide positions
+	 */
+	private static long mismatches(int... guidePositions) {
+		long mismatches = 0;
+		for (int position: guidePositions) {
+			mismatches |= 1L << (position - 1);
+		}
+		return mismatches;
+	}
+	
+	public void testSeedMatch() {
+		assertTrue(policy.hybridizeWell(mismatches(), 21));
+		assertFalse(policy.hybridizeWell(mismatches(2), 21));
+		assertFalse(policy.hybridizeWell(mismatches(8), 21));
+		assertTrue(policy.hybridizeWell(mismatches(9, 12, 20), 21));
+	}
+	
+	public void testWeights() {
+		// the first nt is not scored
+		assertTrue(policy.hybridizeWell(mismatches(1, 9, 12, 20), 21));
+		assertFalse(policy.hybridizeWell(mismatches(9, 12, 15, 20), 21));
+		// cleavage site
+		assertTrue(policy.hybridizeWell(mismatches(10), 21));
+		assertFalse(policy.hybridizeWell(mismatches(11, 20), 21));
+		// beyond the weights
+		assertFalse(policy.hybridizeWell(mismatches(20, 21, 22, 23), 23));
+	}
+	
+	public void testWithoutSeedMatch() {
+		HybridizationPolicy weighted = new WeightedHybridizationPolicy(new int[] {2, 2}, 2, false);
+		assertFalse(weighted.requiresSeedMatch());
+		assertTrue(weighted.hybridizeWell(mismatches(2), 21));
+		assertTrue(weighted.hybridizeWell(mismatches(5, 8), 21));
+		assertFalse(weighted.hybridizeWell(mismatches(1, 8), 21));
+		assertEquals(2, weighted.getMaxMismatches());
+	}
+	
+	public void testPruning() {
+		assertTrue(policy.requiresSeedMatch());
+		// a free mismatch at the first position
+		assertEquals(4, policy.getMaxMismatches());
+		assertEquals(5, new WeightedHybridizationPolicy(new int[] {0, 1, 0, 2}, 3, false).getMaxMismatches());
+		assertEquals(NtBitPlanes.MAX_LENGTH, new WeightedHybridizationPolicy(new int[] {0}, 100, false).getMaxMismatches());
+	}
+	
+	public void testBoundaries() {
+		try {
+			new WeightedHybridizationPolicy(null, 2, true);
+			fail("Should have caught null weights");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new WeightedHybridizationPolicy(new int[] {1, -1}, 2, true);
+			fail("Should have caught negative weight");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new WeightedHybridizationPolicy(new int[] {1}, -1, true);
+			fail("Should have caught negative score");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+}
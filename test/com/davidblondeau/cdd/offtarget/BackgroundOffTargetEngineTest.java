@@ -0,0 +1,153 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.na.WeightedHybridizationPolicy;
+
+import junit.framework.TestCase;
+
+public class BackgroundOffTargetEngineTest extends TestCase {
+	private String fasta;
+	private File directory;
+	
+	@Override
+	public void setUp() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		int index = 0;
+		for (Rna mRna : SeedIndexOffTargetEngineTest.randomFamilies(new Random(8), 10, 200)) {
+			builder.append(">T").append(index++).append(" transcript\n");
+			// wrapped lines and DNA alphabet, as in the usual transcriptome files
+			String seq = mRna.toString().toUpperCase().replace('U', 'T');
+			builder.append(seq.substring(0, 100)).append('\n').append(seq.substring(100)).append('\n');
+		}
+		fasta = builder.toString();
+		directory = File.createTempFile("background", "");
+		directory.delete();
+	}
+	
+	@Override
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+	
+	public void testBuildInMemory() throws IOException {
+		BackgroundOffTargetEngine background = BackgroundOffTargetEngine.build(reader(), 1000);
+		assertEquals("200 nt transcripts in shards of 1000 nt", 6, background.getEngines().size());
+		assertSameAsBruteForce(background);
+	}
+	
+	/**
+	 * The shards check the siRNAs with the given policy, whether built in memory or opened from a directory
+	 */
+	public void testWithHybridizationPolicy() throws IOException {
+		HybridizationPolicy policy = WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE;
+		assertSameAsBruteForce(BackgroundOffTargetEngine.build(reader(), 1000).withHybridizationPolicy(policy), policy);
+		assertSameAsBruteForce(BackgroundOffTargetEngine.build(reader(), 1000, directory).withHybridizationPolicy(policy), policy);
+	}
+	
+	public void testBuildToDirectory() throws IOException {
+		BackgroundOffTargetEngine background = BackgroundOffTargetEngine.build(reader(), 1000, directory);
+		assertEquals(6, directory.listFiles().length);
+		assertSameAsBruteForce(background);
+		
+		assertSameAsBruteForce(BackgroundOffTargetEngine.open(directory));
+		assertSameAsBruteForce(BackgroundOffTargetEngine.load(directory));
+		
+		// rebuilding replaces the shards
+		BackgroundOffTargetEngine.build(reader(), 3000, directory);
+		assertEquals(2, directory.listFiles().length);
+		assertSameAsBruteForce(BackgroundOffTargetEngine.open(directory));
+	}
+	
+	public void testLoadFasta() throws IOException {
+		directory.mkdir();
+		File file = new File(directory, "background.fa");
+		OutputStream out = new FileOutputStream(file);
+		out.write(fasta.getBytes("US-ASCII"));
+		out.close();
+		BackgroundOffTargetEngine background = BackgroundOffTargetEngine.load(file);
+		assertEquals(1, background.getEngines().size());
+		assertSameAsBruteForce(background);
+	}
+	
+	public void testBoundaries() throws IOException {
+		try {
+			BackgroundOffTargetEngine.build(null, 1000);
+			fail();
+		} catch (IllegalArgumentException iae) {
+			// good
+		}
+		try {
+			BackgroundOffTargetEngine.build(reader(), 0);
+			fail();
+		} catch (IllegalArgumentException iae) {
+			// good
+		}
+	}
+	
+	private FastaReader reader() throws IOException {
+		return new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII")));
+	}
+	
+	/**
+	 * Checks the candidates of the transcripts, read again as distinct objects, against a brute force sweep
+	 * of the transcripts with another name 
+	 */
+	private void assertSameAsBruteForce(OffTargetEngine background) throws IOException {
+		assertSameAsBruteForce(background, MismatchCountPolicy.DEFAULT);
+	}
+	
+	/**
+	 * Same as assertSameAsBruteForce(OffTargetEngine), the brute force sweep using the given policy. Checks that 
+	 * the policy gives other answers than the default one on the test data.
+	 */
+	private void assertSameAsBruteForce(OffTargetEngine background, HybridizationPolicy policy) throws IOException {
+		List<Rna> transcripts = new ArrayList<Rna>();
+		FastaReader reader = reader();
+		for (Rna transcript = reader.read(); transcript != null; transcript = reader.read()) {
+			transcripts.add(transcript);
+		}
+		
+		int offTargeting = 0;
+		int otherPolicyAnswers = 0;
+		for (Rna target : transcripts.subList(0, 6)) {
+			Set<Rna> others = new LinkedHashSet<Rna>();
+			for (Rna transcript : transcripts) {
+				if (!transcript.getName().equals(target.getName())) {
+					others.add(transcript);
+				}
+			}
+			OffTargetEngine bruteForce = new BruteForceOffTargetEngine(others, policy);
+			OffTargetEngine defaultBruteForce = new BruteForceOffTargetEngine(others);
+			for (SiRna candidate : new SiRnaFinder().findCandidates(target)) {
+				boolean expected = bruteForce.canOffTarget(candidate);
+				assertEquals(candidate.toString(), expected, background.canOffTarget(candidate));
+				offTargeting += expected ? 1 : 0;
+				otherPolicyAnswers += expected != defaultBruteForce.canOffTarget(candidate) ? 1 : 0;
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+		assertEquals("The policy should change some answers", policy != MismatchCountPolicy.DEFAULT, otherPolicyAnswers > 0);
+	}
+}
@@ -0,0 +1,53 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class CompositeOffTargetEngineTest extends TestCase {
+	private Rna rna1 =       new RnaImpl("aauguacguacugacugacuga");
+	private Rna rna1_1diff = new RnaImpl("aauguauguacugacugacuga");
+	private Rna rna2 =       new RnaImpl("ccccccccccaaaaaaaaaaaa");
+	private SiRna siRna = new SiRna(rna1, 1, 21);
+	
+	public void testCanOffTarget() {
+		OffTargetEngine first = new BruteForceOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna2));
+		OffTargetEngine second = new BruteForceOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1_1diff));
+		
+		assertFalse(new CompositeOffTargetEngine(first).canOffTarget(siRna));
+		assertTrue(new CompositeOffTargetEngine(first, second).canOffTarget(siRna));
+		assertTrue(new CompositeOffTargetEngine(second, first).canOffTarget(siRna));
+		assertFalse(new CompositeOffTargetEngine().canOffTarget(siRna));
+	}
+	
+	public void testCanEitherStrandOffTarget() {
+		OffTargetEngine first = new BruteForceOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna2));
+		OffTargetEngine second = new BruteForceOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(new RnaImpl("ggucagucagucagaacguacauaa")));
+		
+		assertFalse(new CompositeOffTargetEngine(first, second).canOffTarget(siRna));
+		assertTrue(new CompositeOffTargetEngine(first, second).canEitherStrandOffTarget(siRna));
+		assertFalse(new CompositeOffTargetEngine(first).canEitherStrandOffTarget(siRna));
+	}
+	
+	public void testBoundaries() {
+		try {
+			new CompositeOffTargetEngine((List<OffTargetEngine>) null);
+			fail();
+		} catch (IllegalArgumentException iae) {
+			// good
+		}
+		List<OffTargetEngine> engines = new ArrayList<OffTargetEngine>();
+		engines.add(null);
+		try {
+			new CompositeOffTargetEngine(engines);
+			fail();
+		} catch (IllegalArgumentException iae) {
+			// good
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.davidblondeau.cdd.offtarget;
+
+import junit.framework.TestCase;
+
+public class LongIntMultiMapTest extends TestCase {
+
+	public void testPutAndGet() {
+		LongIntMultiMap map = new LongIntMultiMap(1);
+		for (long key = 0; key < 1000; ++key) {
+			map.put(key * 31, (int) key);
+			map.put(key * 31, (int) key + 1);
+			// same as the last value added: ignored
+			map.put(key * 31, (int) key + 1);
+		}
+		assertEquals(1000, map.size());
+		for (long key = 0; key < 1000; ++key) {
+			int entry = map.first(key * 31);
+			assertEquals(key + 1, map.value(entry));
+			entry = map.next(entry);
+			assertEquals(key, map.value(entry));
+			assertEquals(-1, map.next(entry));
+		}
+		assertEquals(-1, map.first(1));
+	}
+	
+	public void testNegativeKey() {
+		try {
+			new LongIntMultiMap(1).put(-1, 0);
+			fail("Accepted a negative key");
+		} catch(IllegalArgumentException iae) {
+			// good
+		}
+	}
+}
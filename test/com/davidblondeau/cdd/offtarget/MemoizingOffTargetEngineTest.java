@@ -0,0 +1,140 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class MemoizingOffTargetEngineTest extends TestCase {
+	private Rna rna1 =        new RnaImpl("aauguacguacugacugacuga");
+	private Rna rna1_1diff =  new RnaImpl("aauguauguacugacugacuga");
+	private Rna rna1_3diffs = NaFactory.newRna("aaugucuauacugacugacuga");
+
+	public void testCanOffTarget() {
+		Rna isoform = NaFactory.newRna("gauguacguacugacugacuga");
+		MemoizingOffTargetEngine engine = new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, isoform, rna1_3diffs)));
+		assertTrue(engine.canOffTarget(new SiRna(rna1, 1, 21)));
+		assertEquals(0, engine.getHitCount());
+		assertEquals(1, engine.getMissCount());
+
+		// same window, other target: the hits are shared
+		assertTrue(engine.canOffTarget(new SiRna(isoform, 1, 21)));
+		assertEquals(1, engine.getHitCount());
+		assertEquals(1, engine.size());
+	}
+
+	/**
+	 * Both strands of a window are searched once, under a single entry shared with the reverse complement window
+	 */
+	public void testCanEitherStrandOffTarget() {
+		// the reverse complement of the sequence matched by the siRNA, with 1 mismatch
+		Rna antisense = NaFactory.newRna("ggucagucagucagaacguacauaa");
+		Rna reverseComplement = NaFactory.newRna("aucagucagucaguacguacaua");
+		MemoizingOffTargetEngine engine = new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, antisense, reverseComplement)));
+		SiRna siRna = new SiRna(rna1, 1, 21);
+		assertTrue(engine.canEitherStrandOffTarget(siRna));
+		assertEquals(1, engine.getMissCount());
+		assertEquals(1, engine.size());
+
+		// the siRNA of the reverse complement window has the same pair of strands
+		assertTrue(engine.canEitherStrandOffTarget(new SiRna(reverseComplement, 1, 21)));
+		assertEquals(1, engine.getHitCount());
+		assertEquals(1, engine.size());
+
+		// the antisense strand alone is another entry
+		assertFalse(engine.canOffTarget(siRna));
+		assertEquals(2, engine.getMissCount());
+	}
+
+	public void testCannotOffTarget() {
+		MemoizingOffTargetEngine engine = new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_3diffs)));
+		assertFalse(engine.canOffTarget(new SiRna(rna1, 1, 21)));
+		assertFalse(engine.canOffTarget(new SiRna(rna1, 1, 21)));
+		assertEquals(1, engine.getHitCount());
+		assertFalse(new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(new LinkedHashSet<Rna>())).canOffTarget(new SiRna(rna1, 1, 21)));
+	}
+
+	/**
+	 * The isoforms of the same transcript are one target when the targets are recognized by name
+	 */
+	public void testTargetsByName()
+		throws IOException
+	{
+		String fasta = ">t1\naauguacguacugacugacuga\n>t1\naauguacguacugacugacuga\n>t2\naaugucuauacugacugacuga\n";
+		FastaReader reader = new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII")));
+		Set<Rna> transcripts = new LinkedHashSet<Rna>();
+		for (Rna transcript = reader.read(); transcript != null; transcript = reader.read()) {
+			transcripts.add(transcript);
+		}
+		MemoizingOffTargetEngine engine = new MemoizingOffTargetEngine(SeedIndexOffTargetEngine.matchingTargetsByName(transcripts));
+		Rna t1 = transcripts.iterator().next();
+		assertFalse(engine.canOffTarget(new SiRna(t1, 1, 21)));
+		assertTrue(engine.canOffTarget(new SiRna(rna1, 1, 21)));
+		assertEquals(1, engine.getHitCount());
+	}
+
+	public void testEviction() {
+		MemoizingOffTargetEngine engine = new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_1diff)), 1);
+		SiRna siRna1 = new SiRna(rna1, 1, 21);
+		SiRna siRna2 = new SiRna(rna1, 0, 21);
+		assertTrue(engine.canOffTarget(siRna1));
+		assertTrue(engine.canOffTarget(siRna2));
+		assertTrue(engine.canOffTarget(siRna1));
+		assertEquals(0, engine.getHitCount());
+		assertEquals(3, engine.getMissCount());
+		assertEquals(1, engine.size());
+	}
+
+	public void testBoundaries() {
+		try {
+			new MemoizingOffTargetEngine(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(new LinkedHashSet<Rna>()), 0);
+			fail("Should have caught invalid capacity");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+
+	/**
+	 * Checks the memoized hits against the brute force sweep, on random families whose members share most of
+	 * their windows, with a capacity forcing evictions
+	 */
+	public void testSameAsBruteForce() {
+		Random random = new Random(19);
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.withReverseComplements(SeedIndexOffTargetEngineTest.randomFamilies(random, 10, 150));
+		OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas);
+		MemoizingOffTargetEngine memo = new MemoizingOffTargetEngine(new SeedIndexOffTargetEngine(mRnas), 500);
+		// the pairs of strands are other entries
+		MemoizingOffTargetEngine eitherStrandMemo = new MemoizingOffTargetEngine(memo.getEngine(), 500);
+		int offTargeting = 0;
+		for (Rna mRna : mRnas) {
+			for (SiRna candidate : new SiRnaFinder(19, 21).findCandidates(mRna)) {
+				boolean expected = bruteForce.canOffTarget(candidate);
+				assertEquals(candidate.toString(), expected, memo.canOffTarget(candidate));
+				assertEquals(candidate.toString(), bruteForce.canEitherStrandOffTarget(candidate), eitherStrandMemo.canEitherStrandOffTarget(candidate));
+				offTargeting += expected ? 1 : 0;
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+		// a third of the windows are shared by several members of a family
+		assertTrue("The families should share windows", 3 * memo.getHitCount() > memo.getHitCount() + memo.getMissCount());
+		assertTrue("The families should share windows", 3 * eitherStrandMemo.getHitCount() > eitherStrandMemo.getHitCount() + eitherStrandMemo.getMissCount());
+		assertTrue(memo.size() <= 500);
+		assertTrue(eitherStrandMemo.size() <= 500);
+	}
+}
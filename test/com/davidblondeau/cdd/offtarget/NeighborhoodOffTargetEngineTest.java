@@ -0,0 +1,97 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class NeighborhoodOffTargetEngineTest extends TestCase {
+	private Rna rna1 =        new RnaImpl("aauguacguacugacugacuga");
+	private Rna rna1_1diff =  new RnaImpl("aauguauguacugacugacuga");
+	private Rna rna1_2diffs = NaFactory.newRna("ccaauguauauacugacugacuga");
+	private Rna rna1_3diffs = NaFactory.newRna("aaugucuauacugacugacuga");
+	private SiRna siRna = new SiRna(rna1, 1, 21); // auguacguacugacugacuga
+	
+	public void testCanOffTarget() {
+		assertTrue(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_1diff)).canOffTarget(siRna));
+		assertTrue(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_2diffs)).canOffTarget(siRna));
+	}
+	
+	public void testCannotOffTarget() {
+		assertFalse(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_3diffs)).canOffTarget(siRna));
+		assertFalse(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1)).canOffTarget(siRna));
+		assertFalse(new NeighborhoodOffTargetEngine(new LinkedHashSet<Rna>()).canOffTarget(siRna));
+	}
+	
+	public void testCanEitherStrandOffTarget() {
+		// the reverse complement of the sequence matched by the siRNA, with 1 mismatch
+		Rna antisense = NaFactory.newRna("ggucagucagucagaacguacauaa");
+		assertFalse(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, antisense)).canOffTarget(siRna));
+		assertTrue(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, antisense)).canEitherStrandOffTarget(siRna));
+		assertFalse(new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_3diffs)).canEitherStrandOffTarget(siRna));
+	}
+	
+	public void testOtherLength() {
+		SiRna longerSiRna = new SiRna(rna1, 0, 22);
+		NeighborhoodOffTargetEngine engine = new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, rna1_1diff));
+		// the seed index is only built for the siRNAs of another length
+		engine.canOffTarget(new SiRna(rna1, 0, 21));
+		assertFalse(engine.hasFallback());
+		assertTrue(engine.canOffTarget(longerSiRna));
+		assertTrue(engine.hasFallback());
+	}
+	
+	public void testBoundaries() {
+		try {
+			new NeighborhoodOffTargetEngine(new LinkedHashSet<Rna>(), 32);
+			fail("Accepted windows that do not fit in a long");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new NeighborhoodOffTargetEngine(SeedIndexOffTargetEngineTest.setOf(rna1, new RnaImpl("aauguacgnacugacugacuga")));
+			fail("Indexed an invalid nt");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	public void testSameAsBruteForce() {
+		Random random = new Random(5);
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.randomFamilies(random, 20, 150);
+		OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas);
+		OffTargetEngine neighborhood = new NeighborhoodOffTargetEngine(mRnas);
+		int offTargeting = 0;
+		for (Rna mRna : mRnas) {
+			for (SiRna candidate : new SiRnaFinder().findCandidates(mRna)) {
+				boolean expected = bruteForce.canOffTarget(candidate);
+				assertEquals(candidate.toString(), expected, neighborhood.canOffTarget(candidate));
+				offTargeting += expected ? 1 : 0;
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+	}
+	
+	public void testEitherStrandSameAsBruteForce() {
+		Random random = new Random(11);
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.withReverseComplements(SeedIndexOffTargetEngineTest.randomFamilies(random, 10, 150));
+		OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas);
+		OffTargetEngine neighborhood = new NeighborhoodOffTargetEngine(mRnas);
+		int senseOffTargeting = 0;
+		for (Rna mRna : mRnas) {
+			for (SiRna candidate : new SiRnaFinder().findCandidates(mRna)) {
+				boolean expected = bruteForce.canEitherStrandOffTarget(candidate);
+				assertEquals(candidate.toString(), expected, neighborhood.canEitherStrandOffTarget(candidate));
+				senseOffTargeting += expected && !bruteForce.canOffTarget(candidate) ? 1 : 0;
+			}
+		}
+		assertTrue("The test data should contain siRNAs off-targeting with their sense strand only", senseOffTargeting > 0);
+	}
+}
@@ -0,0 +1,121 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.SiRna;
+
+import junit.framework.TestCase;
+
+public class SeedIndexFileTest extends TestCase {
+	private File file;
+	
+	@Override
+	public void setUp() throws IOException {
+		file = File.createTempFile("seedindex", ".idx");
+	}
+	
+	@Override
+	public void tearDown() {
+		file.delete();
+	}
+	
+	public void testSaveAndOpen() throws IOException {
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.randomFamilies(new Random(5), 10, 150);
+		SeedIndexOffTargetEngine built = new SeedIndexOffTargetEngine(mRnas);
+		built.save(file);
+		
+		SeedIndexOffTargetEngine opened = SeedIndexOffTargetEngine.open(file, mRnas);
+		assertEquals(built.getSourceChecksum(), opened.getSourceChecksum());
+		int offTargeting = 0;
+		for (Rna mRna : mRnas) {
+			for (int length = 19; length <= 23; length += 2) {
+				for (SiRna candidate : new SiRnaFinder(length).findCandidates(mRna)) {
+					boolean expected = built.canOffTarget(candidate);
+					assertEquals(candidate.toString(), expected, opened.canOffTarget(candidate));
+					offTargeting += expected ? 1 : 0;
+				}
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+	}
+	
+	public void testOpenWithoutMRnas() throws IOException {
+		String fasta = ">NM_1\naauguacguacugacugacugaaa\n>NM_2\naauguauguacugacugacugaaa\n>NM_3\nccccccccccccccccccccccccccc\n";
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		FastaReader reader = new FastaReader(ByteBuffer.wrap(fasta.getBytes("US-ASCII")));
+		for (Rna mRna = reader.read(); mRna != null; mRna = reader.read()) {
+			mRnas.add(mRna);
+		}
+		Rna[] array = mRnas.toArray(new Rna[3]);
+		new SeedIndexOffTargetEngine(mRnas).save(file);
+		
+		SeedIndexOffTargetEngine opened = SeedIndexOffTargetEngine.open(file);
+		// the targets are recognized by their names
+		assertTrue(opened.canOffTarget(new SiRna(array[0], 1, 21)));
+		assertFalse(opened.canOffTarget(new SiRna(array[2], 1, 21)));
+		// short siRNAs are checked by sweeping the packed mRNAs
+		assertTrue(opened.canOffTarget(new SiRna(array[1], 1, 12)));
+		assertFalse(opened.canOffTarget(new SiRna(array[2], 1, 12)));
+	}
+	
+	public void testStaleIndex() throws IOException {
+		Random random = new Random(6);
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.randomFamilies(random, 3, 100);
+		new SeedIndexOffTargetEngine(mRnas).save(file);
+		
+		Set<Rna> otherMRnas = new LinkedHashSet<Rna>(mRnas);
+		otherMRnas.addAll(SeedIndexOffTargetEngineTest.randomFamilies(random, 1, 100));
+		try {
+			SeedIndexOffTargetEngine.open(file, otherMRnas);
+			fail("Opened an index built over other mRNAs");
+		} catch (IOException ioe) {
+			assertTrue(ioe.getMessage(), ioe.getMessage().contains("stale"));
+		}
+	}
+	
+	public void testInvalidFiles() throws IOException {
+		Set<Rna> mRnas = SeedIndexOffTargetEngineTest.randomFamilies(new Random(7), 3, 100);
+		new SeedIndexOffTargetEngine(mRnas).save(file);
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// version
+			raf.seek(8);
+			raf.write(99);
+			assertOpenFails();
+			raf.seek(8);
+			raf.write(SeedIndexFile.VERSION);
+			SeedIndexOffTargetEngine.open(file, mRnas);
+			
+			raf.setLength(raf.length() - 1);
+			assertOpenFails();
+			
+			raf.seek(0);
+			raf.write('x');
+			assertOpenFails();
+			
+			raf.setLength(10);
+			assertOpenFails();
+		} finally {
+			raf.close();
+		}
+	}
+	
+	private void assertOpenFails() {
+		try {
+			SeedIndexOffTargetEngine.open(file);
+			fail("Opened an invalid index");
+		} catch (IOException ioe) {
+			// good
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package com.davidblondeau.cdd.offtarget;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.davidblondeau.cdd.SiRnaFinder;
+import com.davidblondeau.cdd.na.FastaReader;
+import com.davidblondeau.cdd.na.HybridizationPolicy;
+import com.davidblondeau.cdd.na.MismatchCountPolicy;
+import com.davidblondeau.cdd.na.NaFactory;
+import com.davidblondeau.cdd.na.Rna;
+import com.davidblondeau.cdd.na.RnaImpl;
+import com.davidblondeau.cdd.na.RnaStore;
+import com.davidblondeau.cdd.na.SiRna;
+import com.davidblondeau.cdd.na.WeightedHybridizationPolicy;
+
+import junit.framework.TestCase;
+
+public class SeedIndexOffTargetEngineTest extends TestCase {
+	private Rna rna1 =        new RnaImpl("aauguacguacugacugacuga");
+	private Rna rna1_1diff =  new RnaImpl("aauguauguacugacugacuga");
+	private Rna rna1_2diffs = NaFactory.newRna("ccaauguauauacugacugacuga");
+	private Rna rna1_3diffs = NaFactory.newRna("aaugucuauacugacugacuga");
+	private SiRna siRna = new SiRna(rna1, 1, 21); // auguacguacugacugacuga
+	
+	public void testCanOffTarget() {
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, rna1_1diff)).canOffTarget(siRna));
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, rna1_2diffs)).canOffTarget(siRna));
+	}
+	
+	public void testCannotOffTarget() {
+		assertFalse(new SeedIndexOffTargetEngine(setOf(rna1, rna1_3diffs)).canOffTarget(siRna));
+		assertFalse(new SeedIndexOffTargetEngine(setOf(rna1)).canOffTarget(siRna));
+		assertFalse(new SeedIndexOffTargetEngine(new LinkedHashSet<Rna>()).canOffTarget(siRna));
+	}
+	
+	public void testCanEitherStrandOffTarget() {
+		// the reverse complement of the sequence matched by the siRNA, with 1 mismatch
+		Rna antisense = NaFactory.newRna("ggucagucagucagaacguacauaa");
+		assertFalse(new SeedIndexOffTargetEngine(setOf(rna1, antisense)).canOffTarget(siRna));
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, antisense)).canEitherStrandOffTarget(siRna));
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, rna1_1diff)).canEitherStrandOffTarget(siRna));
+		assertFalse(new SeedIndexOffTargetEngine(setOf(rna1, rna1_3diffs)).canEitherStrandOffTarget(siRna));
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, antisense)).canEitherStrandOffTarget(new SiRna(rna1, 1, 12)));
+	}
+	
+	public void testShortSiRna() {
+		SiRna shortSiRna = new SiRna(rna1, 1, 12);
+		assertTrue(new SeedIndexOffTargetEngine(setOf(rna1, rna1_1diff)).canOffTarget(shortSiRna));
+	}
+	
+	public void testBoundaries() {
+		try {
+			new SeedIndexOffTargetEngine(null);
+			fail("Should have caught null argument");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			new SeedIndexOffTargetEngine(setOf(rna1, new RnaImpl("aauguacgnacugacugacuga")));
+			fail("Indexed an invalid nt");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+		try {
+			SeedIndexOffTargetEngine.allocateDirectInts(Integer.MAX_VALUE / 4 + 1);
+			fail("Allocated a buffer smaller than asked");
+		} catch(IllegalArgumentException iae) {
+			//good
+		}
+	}
+	
+	/**
+	 * Checks the index against the brute force sweep on random families of similar mRNAs
+	 */
+	public void testSameAsBruteForce() {
+		Random random = new Random(3);
+		Set<Rna> mRnas = randomFamilies(random, 20, 150);
+		OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas);
+		OffTargetEngine seedIndex = new SeedIndexOffTargetEngine(mRnas);
+		int offTargeting = 0;
+		for (Rna mRna : mRnas) {
+			for (int length = 21; length <= 23; ++length) {
+				for (SiRna candidate : new SiRnaFinder(length).findCandidates(mRna)) {
+					boolean expected = bruteForce.canOffTarget(candidate);
+					assertEquals(candidate.toString(), expected, seedIndex.canOffTarget(candidate));
+					offTargeting += expected ? 1 : 0;
+				}
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+	}
+	
+	/**
+	 * Checks the index against the brute force sweep on mRNAs read from a FASTA input, whose ids are their indices, 
+	 * then on a subset of them, whose ids are not
+	 */
+	public void testSameAsBruteForce_ReadMRnas() throws IOException {
+		Random random = new Random(25);
+		StringBuilder fasta = new StringBuilder();
+		for (Rna mRna : randomFamilies(random, 10, 150)) {
+			fasta.append(mRna).append('\n');
+		}
+		FastaReader reader = new FastaReader(ByteBuffer.wrap(fasta.toString().getBytes("US-ASCII")));
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		Rna read;
+		while ((read = reader.read()) != null) {
+			mRnas.add(read);
+		}
+		Set<Rna> subset = new LinkedHashSet<Rna>(mRnas);
+		subset.remove(mRnas.iterator().next());
+		
+		for (int i = 0; i < 2; ++i) {
+			Set<Rna> indexed = i == 0 ? mRnas : subset;
+			OffTargetEngine bruteForce = new BruteForceOffTargetEngine(indexed);
+			OffTargetEngine seedIndex = new SeedIndexOffTargetEngine(indexed);
+			int offTargeting = 0;
+			for (Rna mRna : mRnas) {
+				for (SiRna candidate : new SiRnaFinder(21).findCandidates(mRna)) {
+					boolean expected = bruteForce.canOffTarget(candidate);
+					assertEquals(candidate.toString(), expected, seedIndex.canOffTarget(candidate));
+					offTargeting += expected ? 1 : 0;
+				}
+			}
+			assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+		}
+	}
+	
+	/**
+	 * Checks the index against the brute force sweep with other hybridization policies, pruned by seed region or not
+	 */
+	public void testPoliciesSameAsBruteForce() {
+		Random random = new Random(13);
+		Set<Rna> mRnas = randomFamilies(random, 10, 150);
+		HybridizationPolicy[] policies = {
+			WeightedHybridizationPolicy.SEED_AND_CLEAVAGE_SITE,
+			new WeightedHybridizationPolicy(new int[] {1, 2, 2, 2, 2, 2, 2, 2, 1, 2, 2}, 3, false),
+			// a free mismatch, pruned by seeds all the same
+			new WeightedHybridizationPolicy(new int[] {0, 1, 1, 1, 1, 1, 1, 1, 1, 2, 2}, 1, false),
+			new MismatchCountPolicy(1)
+		};
+		for (HybridizationPolicy policy : policies) {
+			OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas, policy);
+			OffTargetEngine seedIndex = new SeedIndexOffTargetEngine(mRnas).withHybridizationPolicy(policy);
+			int offTargeting = 0;
+			for (Rna mRna : mRnas) {
+				for (int length = 19; length <= 23; ++length) {
+					for (SiRna candidate : new SiRnaFinder(length).findCandidates(mRna)) {
+						boolean expected = bruteForce.canOffTarget(candidate);
+						assertEquals(policy + " " + candidate, expected, seedIndex.canOffTarget(candidate));
+						assertEquals(policy + " " + candidate, bruteForce.canEitherStrandOffTarget(candidate), seedIndex.canEitherStrandOffTarget(candidate));
+						offTargeting += expected ? 1 : 0;
+					}
+				}
+			}
+			assertTrue("The test data should contain off-targeting siRNAs for " + policy, offTargeting > 0);
+		}
+	}
+	
+	/**
+	 * Checks both strands against the brute force sweep, on random families that also contain reverse complements
+	 */
+	public void testEitherStrandSameAsBruteForce() {
+		Random random = new Random(7);
+		Set<Rna> mRnas = withReverseComplements(randomFamilies(random, 10, 150));
+		OffTargetEngine bruteForce = new BruteForceOffTargetEngine(mRnas);
+		OffTargetEngine seedIndex = new SeedIndexOffTargetEngine(mRnas);
+		int senseOffTargeting = 0;
+		for (Rna mRna : mRnas) {
+			// the windows longer than 32 nt are read one word at a time
+			for (int length: new int[] {19, 20, 21, 22, 40}) {
+				for (SiRna candidate : new SiRnaFinder(length).findCandidates(mRna)) {
+					boolean expected = bruteForce.canEitherStrandOffTarget(candidate);
+					assertEquals(candidate.toString(), expected, seedIndex.canEitherStrandOffTarget(candidate));
+					senseOffTargeting += expected && !bruteForce.canOffTarget(candidate) ? 1 : 0;
+				}
+			}
+		}
+		assertTrue("The test data should contain siRNAs off-targeting with their sense strand only", senseOffTargeting > 0);
+	}
+	
+	/**
+	 * Returns random mRNAs, grouped in families of mRNAs that only differ by a few mutations
+	 */
+	/**
+	 * An index over mRNAs kept off the heap finds the same hits as one over the same mRNAs on the heap
+	 */
+	public void testRnaStore() {
+		Random random = new Random(24);
+		Set<Rna> mRnas = withReverseComplements(randomFamilies(random, 10, 150));
+		RnaStore store = new RnaStore();
+		for (Rna mRna : mRnas) {
+			store.append(mRna);
+		}
+		SeedIndexOffTargetEngine heapEngine = new SeedIndexOffTargetEngine(mRnas);
+		SeedIndexOffTargetEngine storeEngine = new SeedIndexOffTargetEngine(store);
+		assertTrue(storeEngine.getSeedPositions().isDirect());
+		assertEquals(heapEngine.getSourceChecksum(), storeEngine.getSourceChecksum());
+		Iterator<Rna> stored = store.iterator();
+		int offTargeting = 0;
+		for (Rna mRna : mRnas) {
+			Rna storedMRna = stored.next();
+			for (SiRna candidate : new SiRnaFinder(19, 21).findCandidates(storedMRna)) {
+				SiRna heapCandidate = new SiRna(mRna, candidate.getMRnaOffset(), candidate.getLength());
+				boolean expected = heapEngine.canOffTarget(heapCandidate);
+				assertEquals(candidate.toString(), expected, storeEngine.canOffTarget(candidate));
+				offTargeting += expected ? 1 : 0;
+			}
+		}
+		assertTrue("The test data should contain off-targeting siRNAs", offTargeting > 0);
+	}
+
+	static Set<Rna> randomFamilies(Random random, int familyCount, int length) {
+		Set<Rna> mRnas = new LinkedHashSet<Rna>();
+		for (int family = 0; family < familyCount; ++family) {
+			char[] nts = new char[length];
+			for (int i = 0; i < length; ++i) {
+				nts[i] = "aucg".charAt(random.nextInt(4));
+			}
+			for (int member = 0; member < 3; ++member) {
+				char[] memberNts = nts.clone();
+				for (int mutation = random.nextInt(4 * (member + 1)); mutation > 0; --mutation) {
+					memberNts[random.nextInt(length)] = "aucg".charAt(random.nextInt(4));
+				}
+				mRnas.add(NaFactory.newRna(new String(memberNts)));
+			}
+		}
+		return mRnas;
+	}
+	
+	/**
+	 * Returns the given mRNAs followed by the reverse complement of one mRNA out of three, slightly mutated
+	 */
+	static Set<Rna> withReverseComplements(Set<Rna> mRnas) {
+		Set<Rna> withReverseComplements = new LinkedHashSet<Rna>(mRnas);
+		int index = 0;
+		for (Rna mRna : mRnas) {
+			if (index++ % 3 == 0) {
+				char[] nts = mRna.getReverseComplement().toString().toCharArray();
+				nts[index % nts.length] = nts[index % nts.length] == 'a' ? 'c' : 'a';
+				withReverseComplements.add(NaFactory.newRna(new String(nts)));
+			}
+		}
+		return withReverseComplements;
+	}
+	
+	static Set<Rna> setOf(Rna... mRnas) {
+		Set<Rna> set = new LinkedHashSet<Rna>();
+		for (Rna mRna : mRnas) {
+			set.add(mRna);
+		}
+		return set;
+	}
+}